@@ -0,0 +1,80 @@
+package memory;
+
+/**
+ * Cache-blocked matrix multiplication kernel over raw contiguous buffers.
+ * The innermost loops run on the VectorKernels backend selected at startup.
+ * The left operand is row-major (m x k, row i at i * k) and the right operand is
+ * column-major (k x n, column j at j * k), so both are read contiguously along k.
+ * The output is row-major (m x n, row i at i * n).
+ */
+public final class GemmKernel {
+
+    public static final int TILE_ROWS = 64; // output rows per tile task
+    public static final int TILE_COLS = 64; // output columns per tile task
+    static final int BLOCK_DEPTH = 256; // k-block so that 4 left rows + 4 right columns stay in L1
+
+    private GemmKernel() {}
+
+    /**
+     * Computes out[rowFrom..rowTo) x [colFrom..colTo) = left x right for one output tile.
+     * The tile is walked in BLOCK_DEPTH slices of k, and every slice is processed by a
+     * 4 x 4 register-blocked micro-kernel with dot products for the leftover edges.
+     */
+    static void multiplyTile(double[] left, double[] right, double[] out, int k, int n,
+                             int rowFrom, int rowTo, int colFrom, int colTo) {
+        //clear the tile first, the k-blocks below accumulate into it
+        for (int i = rowFrom; i < rowTo; i++) {
+            java.util.Arrays.fill(out, i * n + colFrom, i * n + colTo, 0.0);
+        }
+        VectorKernels kernels = VectorKernels.active();
+        double[] acc = new double[16];
+        for (int p0 = 0; p0 < k; p0 += BLOCK_DEPTH) {
+            int p1 = Math.min(p0 + BLOCK_DEPTH, k);
+            int i = rowFrom;
+            for (; i + 4 <= rowTo; i += 4) {
+                int j = colFrom;
+                for (; j + 4 <= colTo; j += 4) {
+                    microKernel4x4(kernels, acc, left, right, out, k, n, i, j, p0, p1);
+                }
+                for (; j < colTo; j++) {
+                    for (int r = i; r < i + 4; r++) {
+                        out[r * n + j] += kernels.dot(left, r * k + p0, right, j * k + p0, p1 - p0);
+                    }
+                }
+            }
+            for (; i < rowTo; i++) {
+                for (int j = colFrom; j < colTo; j++) {
+                    out[i * n + j] += kernels.dot(left, i * k + p0, right, j * k + p0, p1 - p0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes out tile = left x right + addend, with addend row-major in out's shape.
+     * The addend is added once the tile's product is complete, while the tile is still in cache,
+     * so the result is the same as a separate multiplication followed by an addition.
+     */
+    static void multiplyAddTile(double[] left, double[] right, double[] addend, double[] out, int k, int n,
+                                int rowFrom, int rowTo, int colFrom, int colTo) {
+        multiplyTile(left, right, out, k, n, rowFrom, rowTo, colFrom, colTo);
+        VectorKernels kernels = VectorKernels.active();
+        for (int i = rowFrom; i < rowTo; i++) {
+            kernels.add(out, i * n + colFrom, addend, i * n + colFrom, colTo - colFrom);
+        }
+    }
+
+    // copies the 16 results of the active backend's 4 x 4 micro-kernel into the output tile
+    private static void microKernel4x4(VectorKernels kernels, double[] acc, double[] a, double[] b, double[] out,
+                                       int k, int n, int i, int j, int p0, int p1) {
+        java.util.Arrays.fill(acc, 0.0);
+        kernels.dot4x4(a, i * k, k, b, j * k, k, p0, p1, acc);
+        for (int r = 0; r < 4; r++) {
+            int o = (i + r) * n + j;
+            out[o] += acc[r * 4];
+            out[o + 1] += acc[r * 4 + 1];
+            out[o + 2] += acc[r * 4 + 2];
+            out[o + 3] += acc[r * 4 + 3];
+        }
+    }
+}
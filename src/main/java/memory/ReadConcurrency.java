@@ -0,0 +1,24 @@
+package memory;
+
+/**
+ * Selects how SharedVector and SharedMatrix serve their read-only accessors
+ * (get, length, getOrientation).
+ * In optimistic mode (the default) they read under a StampedLock optimistic stamp and only
+ * fall back to a real read lock when validation fails, because a writer was active.
+ * In locked mode they take read locks on every call, as before.
+ * The initial mode comes from -Dlae.reads=optimistic|locked.
+ */
+public final class ReadConcurrency {
+
+    private static volatile boolean optimistic = !"locked".equals(System.getProperty("lae.reads"));
+
+    private ReadConcurrency() {}
+
+    public static boolean isOptimistic() {
+        return optimistic;
+    }
+
+    public static void setOptimistic(boolean enabled) {
+        optimistic = enabled;
+    }
+}
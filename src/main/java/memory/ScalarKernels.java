@@ -0,0 +1,61 @@
+package memory;
+
+/**
+ * Portable scalar implementation of VectorKernels, the fallback backend.
+ */
+final class ScalarKernels implements VectorKernels {
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void add(double[] dst, int dstOffset, double[] src, int srcOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] += src[srcOffset + i];
+        }
+    }
+
+    @Override
+    public void subtract(double[] dst, int dstOffset, double[] src, int srcOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] -= src[srcOffset + i];
+        }
+    }
+
+    @Override
+    public void negate(double[] a, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            a[i] = -a[i];
+        }
+    }
+
+    @Override
+    public void dot4x4(double[] a, int aOffset, int aStride, double[] b, int bOffset, int bStride,
+                       int from, int to, double[] out) {
+        // 16 accumulators live in registers, each loaded element is reused 4 times
+        int a0 = aOffset, a1 = a0 + aStride, a2 = a1 + aStride, a3 = a2 + aStride;
+        int b0 = bOffset, b1 = b0 + bStride, b2 = b1 + bStride, b3 = b2 + bStride;
+        double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+        double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+        double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+        double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+        for (int p = from; p < to; p++) {
+            double x0 = a[a0 + p], x1 = a[a1 + p], x2 = a[a2 + p], x3 = a[a3 + p];
+            double y0 = b[b0 + p], y1 = b[b1 + p], y2 = b[b2 + p], y3 = b[b3 + p];
+            c00 += x0 * y0; c01 += x0 * y1; c02 += x0 * y2; c03 += x0 * y3;
+            c10 += x1 * y0; c11 += x1 * y1; c12 += x1 * y2; c13 += x1 * y3;
+            c20 += x2 * y0; c21 += x2 * y1; c22 += x2 * y2; c23 += x2 * y3;
+            c30 += x3 * y0; c31 += x3 * y1; c32 += x3 * y2; c33 += x3 * y3;
+        }
+        out[0] += c00; out[1] += c01; out[2] += c02; out[3] += c03;
+        out[4] += c10; out[5] += c11; out[6] += c12; out[7] += c13;
+        out[8] += c20; out[9] += c21; out[10] += c22; out[11] += c23;
+        out[12] += c30; out[13] += c31; out[14] += c32; out[15] += c33;
+    }
+}
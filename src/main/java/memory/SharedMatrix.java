@@ -1,8 +1,35 @@
 package memory;
 
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+import metrics.Counter;
+import metrics.MetricsRegistry;
+
+/**
+ * A matrix stored in a single contiguous double[] buffer, laid out either row-by-row
+ * or column-by-column. The SharedVectors handed out by get() are lightweight views
+ * over consecutive slices of that buffer, vector i starting at i * stride.
+ *
+ * The structure (buffer, stride and vector views) is guarded by a StampedLock that loads
+ * hold in write mode. In optimistic mode (see ReadConcurrency) length, get and getOrientation
+ * validate an optimistic stamp instead of read-locking every vector, and only fall back to
+ * the real read lock when a load was in progress.
+ */
 public class SharedMatrix {
 
-    private volatile SharedVector[] vectors = {}; // underlying vectors
+    private volatile SharedVector[] vectors = {}; // views over the contiguous storage
+    private volatile double[] data = {}; // contiguous backing storage of all vectors
+    private volatile int stride = 0; // distance between the starts of consecutive vectors in data
+    private final StampedLock structureLock = new StampedLock(); // write-held while a load replaces the structure
+
+    // side of the square blocks a physical transpose copies at a time, 32x32 doubles fit in L1 twice over
+    public static final int TRANSPOSE_BLOCK = 32;
+
+    // bytes copied into matrices by loads, out of them by reads, and between layouts by relayouts
+    private static final Counter LOADED_BYTES = MetricsRegistry.global().counter("memory.load.bytes");
+    private static final Counter READ_BYTES = MetricsRegistry.global().counter("memory.read.bytes");
+    private static final Counter RELAYOUT_BYTES = MetricsRegistry.global().counter("memory.relayout.bytes");
 
     public SharedMatrix() {
         // Done: initialize empty matrix
@@ -15,26 +42,22 @@ public class SharedMatrix {
     }
 
     //helper method to check if this==other
+    //Compares vector by vector, each comparison locks just the two vectors in global lock order
     @Override 
     public boolean equals(Object other){
-        acquireAllVectorReadLocks(vectors);
-
-        try{
-            if(this == other) return true;
-            else { 
-                if(other == null || !(this.getClass() == other.getClass()) ) 
-                    return false;
-                SharedMatrix otherMatrix = (SharedMatrix) other;
-                for (int index = 0; index < otherMatrix.length(); index++) {
-                    if(!this.get(index).equals(otherMatrix.get(index)))
-                        return false;
-                }
-                return true;
-            }
-        }
-        finally{
-            releaseAllVectorReadLocks(vectors);
+        if(this == other) return true;
+        if(other == null || !(this.getClass() == other.getClass()) ) 
+            return false;
+        SharedMatrix otherMatrix = (SharedMatrix) other;
+        SharedVector[] mine = vectors;
+        SharedVector[] theirs = otherMatrix.vectors;
+        if(mine.length != theirs.length)
+            return false;
+        for (int index = 0; index < mine.length; index++) {
+            if(!mine[index].equals(theirs[index]))
+                return false;
         }
+        return true;
     }
 
     //helper method to print matrix
@@ -58,9 +81,10 @@ public class SharedMatrix {
     
     public void loadRowMajor(double[][] matrix) {
     // Done: replace internal data with new row-major matrix
+        long stamp = structureLock.writeLock();
         SharedVector[] oldVectors = vectors;
     
-        acquireAllVectorWriteLocks(vectors);
+        acquireAllVectorWriteLocks(oldVectors);
         try {
             if(matrix==null || matrix.length==0 || matrix[0].length==0) 
                 throw new IllegalArgumentException("Input matrix cannot be null or empty");
@@ -72,26 +96,30 @@ public class SharedMatrix {
             }
             
             int rows = matrix.length;
-            SharedVector[] newVectors = new SharedVector[rows];
+            int columns = matrix[0].length;
+            double[] newData = new double[rows * columns];
 
+            //Copy every row into its slot of the row-major buffer
             for(int i=0; i<rows;i++){
-                SharedVector vector = new SharedVector(matrix[i], VectorOrientation.ROW_MAJOR);
-                newVectors[i]=vector;
+                System.arraycopy(matrix[i], 0, newData, i * columns, columns);
             }
-            vectors = newVectors;
+            publish(newData, rows, columns, VectorOrientation.ROW_MAJOR);
+            LOADED_BYTES.add((long) newData.length * Double.BYTES);
         }
         finally{
             releaseAllVectorWriteLocks(oldVectors);
+            structureLock.unlockWrite(stamp);
         }
     }
 
     public void loadColumnMajor(double[][] matrix) {
         // Done: replace internal data with new column-major matrix
         
+        long stamp = structureLock.writeLock();
         //create a local copy of old vectors to release locks later
         SharedVector[] oldVectors = vectors;
 
-        acquireAllVectorWriteLocks(vectors);
+        acquireAllVectorWriteLocks(oldVectors);
     
         try{
             if(matrix==null || matrix.length==0 || matrix[0].length==0) 
@@ -103,20 +131,23 @@ public class SharedMatrix {
                     throw new IllegalArgumentException("Input matrix rows have inconsistent lengths");
             }
             
+            int rows = matrix.length;
             int columns = matrix[0].length;
-            SharedVector[] newVectors = new SharedVector[columns];
+            double[] newData = new double[rows * columns];
 
-            for (int col = 0; col < columns; col++) {
-                double[] colData = new double[matrix.length];
-                for (int row = 0; row < matrix.length; row++) {
-                    colData[row] = matrix[row][col];
+            //Scatter every row into the column-major buffer, column col starts at col * rows
+            for (int row = 0; row < rows; row++) {
+                double[] curRow = matrix[row];
+                for (int col = 0; col < columns; col++) {
+                    newData[col * rows + row] = curRow[col];
                 }
-                newVectors[col] = new SharedVector(colData, VectorOrientation.COLUMN_MAJOR);
             }
-            vectors = newVectors;
+            publish(newData, columns, rows, VectorOrientation.COLUMN_MAJOR);
+            LOADED_BYTES.add((long) newData.length * Double.BYTES);
         }
         finally{
             releaseAllVectorWriteLocks(oldVectors);
+            structureLock.unlockWrite(stamp);
         }
     }
 
@@ -129,23 +160,23 @@ public class SharedMatrix {
             if(vectors == null || vectors.length==0 || vectors[0]==null || vectors[0].length()==0)
                 throw new IllegalStateException("Matrix is undefined");
 
+            //Read the vectors' own slices, a vector may have been detached from data by vecMatMul
+            SharedVector[] vecs = vectors;
+            int vecLength = vecs[0].length();
             //check orientation
-            if(getOrientation() == VectorOrientation.ROW_MAJOR){ //row major
-                matrixContents = new double[length()][vectors[0].length()];
-                for(int row=0;row< length();row++){
-                    for(int col=0;col<vectors[0].length();col++){
-                        matrixContents[row][col]=this.get(row).get(col);
-                    }
+            if(vecs[0].getOrientation() == VectorOrientation.ROW_MAJOR){ //row major
+                matrixContents = new double[vecs.length][];
+                for(int row=0;row< vecs.length;row++){
+                    matrixContents[row] = new double[vecLength];
+                    vecs[row].copyInto(matrixContents[row], 0);
                 }
             }
             else{ //column major
-                matrixContents = new double[vectors[0].length()][length()];
-                for(int col=0;col< length();col++){
-                    for(int row=0;row<vectors[0].length();row++){
-                        matrixContents[row][col]=this.get(col).get(row);
-                    }
-                }
+                double[][] rowsContents = new double[vecLength][vecs.length];
+                transposeBlocks(vecs, rowsContents, 0, vecs.length);
+                matrixContents = rowsContents;
             }
+            READ_BYTES.add((long) vecs.length * vecLength * Double.BYTES);
             return matrixContents;
         } 
         //use finally to ensure locks are released even if exception occurs
@@ -154,8 +185,383 @@ public class SharedMatrix {
         }
     }
 
+    /**
+     * Returns this matrix laid out with the given orientation, without going through double[][].
+     * If the layout already matches and the storage is contiguous this matrix itself is returned,
+     * otherwise a new matrix is built straight from the vectors' slices.
+     */
+    public SharedMatrix toOrientation(VectorOrientation orientation) {
+        return relayout(orientation, false);
+    }
+
+    /**
+     * Returns a new matrix with the same content and orientation, in storage of its own.
+     * Used when a result is shared and its consumer works in place.
+     */
+    public SharedMatrix copy() {
+        return relayout(getOrientation(), true);
+    }
+
+    private SharedMatrix relayout(VectorOrientation orientation, boolean alwaysCopy) {
+        if(orientation == null)
+            throw new NullPointerException("Orientation is null");
+        SharedVector[] vecs = vectors;
+        acquireAllVectorReadLocks(vecs);
+        try{
+            if(vecs.length==0 || vecs[0].length()==0)
+                throw new IllegalStateException("Matrix is undefined");
+            int count = vecs.length;
+            int vecLength = vecs[0].length();
+            boolean sameOrientation = vecs[0].getOrientation() == orientation;
+            if(!alwaysCopy && sameOrientation && vecs == vectors && isContiguous(0, count))
+                return this;
+
+            double[] newData = new double[count * vecLength];
+            for(int i=0;i<count;i++){
+                if(vecs[i].length() != vecLength)
+                    throw new IllegalStateException("Matrix vectors have inconsistent lengths");
+                if(sameOrientation){
+                    vecs[i].copyInto(newData, i * vecLength);
+                }
+            }
+            if(!sameOrientation){
+                //element j of vector i becomes element i of vector j, block by block
+                for(int iBlock=0;iBlock<count;iBlock+=TRANSPOSE_BLOCK){
+                    int iEnd = Math.min(iBlock + TRANSPOSE_BLOCK, count);
+                    for(int jBlock=0;jBlock<vecLength;jBlock+=TRANSPOSE_BLOCK){
+                        int jEnd = Math.min(jBlock + TRANSPOSE_BLOCK, vecLength);
+                        for(int i=iBlock;i<iEnd;i++){
+                            double[] vecData = vecs[i].storage();
+                            int vecOffset = vecs[i].offset();
+                            for(int j=jBlock;j<jEnd;j++){
+                                newData[j * count + i] = vecData[vecOffset + j];
+                            }
+                        }
+                    }
+                }
+            }
+            RELAYOUT_BYTES.add((long) newData.length * Double.BYTES);
+            SharedMatrix converted = new SharedMatrix();
+            if(sameOrientation)
+                converted.publish(newData, count, vecLength, orientation);
+            else
+                converted.publish(newData, vecLength, count, orientation);
+            return converted;
+        }
+        finally{
+            releaseAllVectorReadLocks(vecs);
+        }
+    }
+
+    /**
+     * Transposes this matrix in place without moving any data: the row-major storage of a
+     * matrix is the column-major storage of its transpose, so only the orientation of the
+     * vectors is flipped. Kernels that take the new orientation read the same buffer as is,
+     * the elements are only moved if another layout is asked for, or for output.
+     */
+    public void transpose() {
+        long stamp = structureLock.writeLock();
+        SharedVector[] vecs = vectors;
+        acquireAllVectorWriteLocks(vecs);
+        try{
+            if(vecs.length==0)
+                throw new IllegalStateException("Matrix is undefined");
+            for(SharedVector vec : vecs){
+                vec.transpose();
+            }
+        }
+        finally{
+            releaseAllVectorWriteLocks(vecs);
+            structureLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Copies vectors [from, to) of a column-major matrix into the given rows, rows[j][i]
+     * being element j of vector i. The table must have one row per element of a vector and
+     * one column per vector. Tasks over disjoint vector ranges can fill the same table.
+     */
+    public void transposeInto(double[][] rows, int from, int to) {
+        if(rows == null)
+            throw new NullPointerException("Output table is null");
+        SharedVector[] vecs = readStructure();
+        if(vecs.length == 0 || vecs[0].getOrientation() != VectorOrientation.COLUMN_MAJOR)
+            throw new IllegalStateException("Only a column-major matrix is transposed into rows");
+        if(from < 0 || to > vecs.length || from >= to)
+            throw new IndexOutOfBoundsException("Vectors ["+from+","+to+") out of bounds");
+        if(rows.length != vecs[0].length() || rows[0].length != vecs.length)
+            throw new IllegalArgumentException("Output table does not match the transposed dimensions");
+        acquireVectorReadLocks(vecs, from, to);
+        try{
+            transposeBlocks(vecs, rows, from, to);
+            READ_BYTES.add((long) (to - from) * rows.length * Double.BYTES);
+        }
+        finally{
+            releaseVectorReadLocks(vecs, from, to);
+        }
+    }
+
+    // scatters vectors [from, to) into the rows by TRANSPOSE_BLOCK squares, the caller holds their read locks
+    private static void transposeBlocks(SharedVector[] vecs, double[][] rows, int from, int to) {
+        int vecLength = rows.length;
+        for(int iBlock=from;iBlock<to;iBlock+=TRANSPOSE_BLOCK){
+            int iEnd = Math.min(iBlock + TRANSPOSE_BLOCK, to);
+            for(int jBlock=0;jBlock<vecLength;jBlock+=TRANSPOSE_BLOCK){
+                int jEnd = Math.min(jBlock + TRANSPOSE_BLOCK, vecLength);
+                for(int i=iBlock;i<iEnd;i++){
+                    //the vector may have been detached from data by vecMatMul, read its own slice
+                    double[] vecData = vecs[i].storage();
+                    int vecOffset = vecs[i].offset();
+                    for(int j=jBlock;j<jEnd;j++){
+                        rows[j][i] = vecData[vecOffset + j];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces internal data with a zero-filled row-major matrix of the given shape,
+     * used as the destination of multiplyTile.
+     */
+    public void allocateRowMajor(int rows, int columns) {
+        if(rows <= 0 || columns <= 0)
+            throw new IllegalArgumentException("Matrix dimensions must be positive");
+        long stamp = structureLock.writeLock();
+        SharedVector[] oldVectors = vectors;
+        acquireAllVectorWriteLocks(oldVectors);
+        try{
+            publish(new double[rows * columns], rows, columns, VectorOrientation.ROW_MAJOR);
+        }
+        finally{
+            releaseAllVectorWriteLocks(oldVectors);
+            structureLock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Computes one tile of left x right into this matrix, rows [rowFrom, rowTo) and
+     * columns [colFrom, colTo). Left must be row-major, right column-major and this
+     * matrix a row-major destination created by allocateRowMajor.
+     * Only the left rows and right columns of the tile are read-locked. Concurrent
+     * tiles write disjoint cells of this matrix, so its vectors are not locked.
+     */
+    public void multiplyTile(SharedMatrix left, SharedMatrix right, int rowFrom, int rowTo, int colFrom, int colTo) {
+        multiplyTile(left, right, null, rowFrom, rowTo, colFrom, colTo);
+    }
+
+    /**
+     * Computes one tile of left x right + addend into this matrix in a single pass, the fused
+     * form of a multiplication followed by an addition. The addend must be a row-major matrix
+     * of this matrix's shape, its rows of the tile are read-locked along with the operands.
+     */
+    public void multiplyAddTile(SharedMatrix left, SharedMatrix right, SharedMatrix addend, int rowFrom, int rowTo, int colFrom, int colTo) {
+        if(addend == null)
+            throw new NullPointerException("Input matrix is null");
+        multiplyTile(left, right, addend, rowFrom, rowTo, colFrom, colTo);
+    }
+
+    private void multiplyTile(SharedMatrix left, SharedMatrix right, SharedMatrix addend, int rowFrom, int rowTo, int colFrom, int colTo) {
+        if(left == null || right == null)
+            throw new NullPointerException("Input matrix is null");
+        SharedVector[] leftVecs = left.vectors;
+        SharedVector[] rightVecs = right.vectors;
+        SharedVector[] addendVecs = addend == null ? null : addend.vectors;
+        if(leftVecs.length == 0 || rightVecs.length == 0 || vectors.length == 0 || (addendVecs != null && addendVecs.length == 0))
+            throw new IllegalArgumentException("Matrices cannot be empty");
+        if(leftVecs[0].getOrientation() != VectorOrientation.ROW_MAJOR || rightVecs[0].getOrientation() != VectorOrientation.COLUMN_MAJOR)
+            throw new UnsupportedOperationException("Tiled multiplication requires a row-major left and a column-major right matrix");
+        int k = left.stride;
+        int n = rightVecs.length;
+        if(k != right.stride)
+            throw new IllegalArgumentException("Matrices dimensions do not match for multiplication");
+        if(vectors.length != leftVecs.length || stride != n)
+            throw new IllegalArgumentException("Destination matrix has the wrong shape for this product");
+        if(addendVecs != null && (addendVecs[0].getOrientation() != VectorOrientation.ROW_MAJOR
+                || addendVecs.length != leftVecs.length || addend.stride != n))
+            throw new IllegalArgumentException("Matrices dimensions do not match for addition");
+        if(rowFrom < 0 || rowTo > leftVecs.length || rowFrom >= rowTo || colFrom < 0 || colTo > n || colFrom >= colTo)
+            throw new IndexOutOfBoundsException("Tile ["+rowFrom+","+rowTo+")x["+colFrom+","+colTo+") out of bounds");
+
+        SharedVector[][] locked = addendVecs == null ? new SharedVector[][]{leftVecs, rightVecs} : new SharedVector[][]{leftVecs, rightVecs, addendVecs};
+        int[][] ranges = addendVecs == null ? new int[][]{{rowFrom, rowTo}, {colFrom, colTo}} : new int[][]{{rowFrom, rowTo}, {colFrom, colTo}, {rowFrom, rowTo}};
+        Integer[] order = acquireInLockOrder(locked, ranges);
+        try{
+            //a vector resized by vecMatMul no longer lives in data, the kernel cannot read it
+            if(!left.isContiguous(rowFrom, rowTo) || !right.isContiguous(colFrom, colTo)
+                    || (addend != null && !addend.isContiguous(rowFrom, rowTo)))
+                throw new IllegalStateException("Matrix storage is not contiguous");
+            if(addend == null)
+                GemmKernel.multiplyTile(left.data, right.data, data, k, n, rowFrom, rowTo, colFrom, colTo);
+            else
+                GemmKernel.multiplyAddTile(left.data, right.data, addend.data, data, k, n, rowFrom, rowTo, colFrom, colTo);
+        }
+        finally{
+            releaseInLockOrder(locked, ranges, order);
+        }
+    }
+
+    /**
+     * Computes rows [rowFrom, rowTo) of left x right (+ addend) into this matrix, for a sparse
+     * CSR left operand. Every output row is the sum of the right rows picked by the left row's
+     * nonzeros, scaled by them, so zeros cost nothing. Right must be row-major, the addend
+     * (or null) row-major in this matrix's shape, and this matrix a row-major destination
+     * created by allocateRowMajor. All right rows and the addend rows of the band are read-locked.
+     */
+    public void multiplySparseRows(SparseMatrix left, SharedMatrix right, SharedMatrix addend, int rowFrom, int rowTo) {
+        if(left == null || right == null)
+            throw new NullPointerException("Input matrix is null");
+        SharedVector[] rightVecs = right.vectors;
+        SharedVector[] addendVecs = addend == null ? null : addend.vectors;
+        if(left.getOrientation() != VectorOrientation.ROW_MAJOR || rightVecs.length == 0 || rightVecs[0].getOrientation() != VectorOrientation.ROW_MAJOR)
+            throw new UnsupportedOperationException("Sparse multiplication requires a CSR left and a row-major right matrix");
+        int n = right.stride;
+        if(left.columns() != rightVecs.length)
+            throw new IllegalArgumentException("Matrices dimensions do not match for multiplication");
+        if(vectors.length != left.rows() || stride != n)
+            throw new IllegalArgumentException("Destination matrix has the wrong shape for this product");
+        checkAddend(addendVecs, addend, left.rows(), n);
+        if(rowFrom < 0 || rowTo > left.rows() || rowFrom >= rowTo)
+            throw new IndexOutOfBoundsException("Rows ["+rowFrom+","+rowTo+") out of bounds");
+
+        SharedVector[][] locked = addendVecs == null ? new SharedVector[][]{rightVecs} : new SharedVector[][]{rightVecs, addendVecs};
+        int[][] ranges = addendVecs == null ? new int[][]{{0, rightVecs.length}} : new int[][]{{0, rightVecs.length}, {rowFrom, rowTo}};
+        Integer[] order = acquireInLockOrder(locked, ranges);
+        try{
+            if(!right.isContiguous(0, rightVecs.length) || (addend != null && !addend.isContiguous(rowFrom, rowTo)))
+                throw new IllegalStateException("Matrix storage is not contiguous");
+            int[] pointers = left.pointers();
+            int[] indices = left.indices();
+            double[] values = left.values();
+            double[] rightData = right.data;
+            for(int i = rowFrom; i < rowTo; i++){
+                int out = i * n;
+                Arrays.fill(data, out, out + n, 0.0);
+                for(int p = pointers[i]; p < pointers[i + 1]; p++){
+                    double a = values[p];
+                    int in = indices[p] * n;
+                    for(int j = 0; j < n; j++){
+                        data[out + j] += a * rightData[in + j];
+                    }
+                }
+                //added last, like multiplyAddTile, so a -0.0 addend sums the same
+                if(addend != null){
+                    for(int j = 0; j < n; j++){
+                        data[out + j] += addend.data[out + j];
+                    }
+                }
+            }
+        }
+        finally{
+            releaseInLockOrder(locked, ranges, order);
+        }
+    }
+
+    /**
+     * Computes rows [rowFrom, rowTo) of left x right (+ addend) into this matrix, for a sparse
+     * CSC right operand: every output element is the dot product of a left row with the
+     * nonzeros of one right column. Left must be row-major, the addend (or null) row-major in
+     * this matrix's shape, and this matrix a row-major destination created by allocateRowMajor.
+     */
+    public void multiplyBySparseRows(SharedMatrix left, SparseMatrix right, SharedMatrix addend, int rowFrom, int rowTo) {
+        if(left == null || right == null)
+            throw new NullPointerException("Input matrix is null");
+        SharedVector[] leftVecs = left.vectors;
+        SharedVector[] addendVecs = addend == null ? null : addend.vectors;
+        if(right.getOrientation() != VectorOrientation.COLUMN_MAJOR || leftVecs.length == 0 || leftVecs[0].getOrientation() != VectorOrientation.ROW_MAJOR)
+            throw new UnsupportedOperationException("Sparse multiplication requires a row-major left and a CSC right matrix");
+        int k = left.stride;
+        int n = right.columns();
+        if(k != right.rows())
+            throw new IllegalArgumentException("Matrices dimensions do not match for multiplication");
+        if(vectors.length != leftVecs.length || stride != n)
+            throw new IllegalArgumentException("Destination matrix has the wrong shape for this product");
+        checkAddend(addendVecs, addend, leftVecs.length, n);
+        if(rowFrom < 0 || rowTo > leftVecs.length || rowFrom >= rowTo)
+            throw new IndexOutOfBoundsException("Rows ["+rowFrom+","+rowTo+") out of bounds");
+
+        SharedVector[][] locked = addendVecs == null ? new SharedVector[][]{leftVecs} : new SharedVector[][]{leftVecs, addendVecs};
+        int[][] ranges = addendVecs == null ? new int[][]{{rowFrom, rowTo}} : new int[][]{{rowFrom, rowTo}, {rowFrom, rowTo}};
+        Integer[] order = acquireInLockOrder(locked, ranges);
+        try{
+            if(!left.isContiguous(rowFrom, rowTo) || (addend != null && !addend.isContiguous(rowFrom, rowTo)))
+                throw new IllegalStateException("Matrix storage is not contiguous");
+            int[] pointers = right.pointers();
+            int[] indices = right.indices();
+            double[] values = right.values();
+            double[] leftData = left.data;
+            for(int i = rowFrom; i < rowTo; i++){
+                int in = i * k;
+                int out = i * n;
+                for(int j = 0; j < n; j++){
+                    double sum = 0.0;
+                    for(int p = pointers[j]; p < pointers[j + 1]; p++){
+                        sum += leftData[in + indices[p]] * values[p];
+                    }
+                    data[out + j] = addend == null ? sum : sum + addend.data[out + j];
+                }
+            }
+        }
+        finally{
+            releaseInLockOrder(locked, ranges, order);
+        }
+    }
+
+    /**
+     * Adds sign times vectors [from, to) of a sparse matrix into the same vectors of this
+     * matrix, in place. The sparse matrix must have this matrix's shape and orientation,
+     * CSR for a row-major matrix and CSC for a column-major one. Sign 1 adds, -1 subtracts.
+     */
+    public void addSparse(SparseMatrix other, double sign, int from, int to) {
+        if(other == null)
+            throw new NullPointerException("Input matrix is null");
+        SharedVector[] vecs = readStructure();
+        if(vecs.length != other.majorLength() || vecs.length == 0 || vecs[0].length() * (long) vecs.length != (long) other.rows() * other.columns())
+            throw new IllegalArgumentException("Matrices dimensions do not match for addition");
+        if(vecs[0].getOrientation() != other.getOrientation())
+            throw new UnsupportedOperationException("Sparse addition requires operands of the same orientation");
+        if(from < 0 || to > vecs.length || from >= to)
+            throw new IndexOutOfBoundsException("Vectors ["+from+","+to+") out of bounds");
+        int[] pointers = other.pointers();
+        for(int m = from; m < to; m++){
+            vecs[m].addSparse(other.indices(), other.values(), pointers[m], pointers[m + 1], sign);
+        }
+    }
+
+    private static void checkAddend(SharedVector[] addendVecs, SharedMatrix addend, int rows, int columns) {
+        if(addendVecs != null && (addendVecs.length == 0 || addendVecs[0].getOrientation() != VectorOrientation.ROW_MAJOR
+                || addendVecs.length != rows || addend.stride != columns))
+            throw new IllegalArgumentException("Matrices dimensions do not match for addition");
+    }
+
+    // read-locks the given vector ranges of several matrices in increasing lockOrder, see SharedVector for the global lock order
+    private static Integer[] acquireInLockOrder(SharedVector[][] locked, int[][] ranges) {
+        Integer[] order = new Integer[locked.length];
+        for(int m = 0; m < order.length; m++){
+            order[m] = m;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(locked[a][0].lockOrder(), locked[b][0].lockOrder()));
+        for(int m : order){
+            acquireVectorReadLocks(locked[m], ranges[m][0], ranges[m][1]);
+        }
+        return order;
+    }
+
+    private static void releaseInLockOrder(SharedVector[][] locked, int[][] ranges, Integer[] order) {
+        for(int i = order.length - 1; i >= 0; i--){
+            int m = order[i];
+            releaseVectorReadLocks(locked[m], ranges[m][0], ranges[m][1]);
+        }
+    }
+
     public SharedVector get(int index) {
         // Done: return vector at index
+        if(ReadConcurrency.isOptimistic()){
+            SharedVector[] vecs = readStructure();
+            if(index<0 || index >= vecs.length)
+                throw new IndexOutOfBoundsException("index "+index+" out of bounds for length "+vecs.length);
+            return vecs[index];
+        }
         acquireAllVectorReadLocks(vectors);
 
         try {    
@@ -172,6 +578,9 @@ public class SharedMatrix {
 
     public int length() {
         // Done: return number of stored vectors
+        if(ReadConcurrency.isOptimistic()){
+            return readStructure().length;
+        }
         acquireAllVectorReadLocks(vectors);
         
         try {
@@ -184,6 +593,13 @@ public class SharedMatrix {
 
     public VectorOrientation getOrientation() {
         // Done: return orientation
+        if(ReadConcurrency.isOptimistic()){
+            SharedVector[] vecs = readStructure();
+            if(vecs.length==0 || vecs[0].length()==0)
+                throw new IllegalStateException("Matrix is undefined");
+            //the vector validates its own optimistic stamp for the orientation flag
+            return vecs[0].getOrientation();
+        }
         acquireAllVectorReadLocks(vectors);
         
         try {
@@ -196,6 +612,63 @@ public class SharedMatrix {
         }
     }
 
+    /**
+     * Returns the current vector views, validated against concurrent loads.
+     * Tries an optimistic stamp first and takes the real read lock only if a load interfered.
+     */
+    private SharedVector[] readStructure() {
+        long stamp = structureLock.tryOptimisticRead();
+        SharedVector[] vecs = vectors;
+        if(structureLock.validate(stamp)){
+            return vecs;
+        }
+        stamp = structureLock.readLock();
+        try{
+            return vectors;
+        }
+        finally{
+            structureLock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Installs a new contiguous buffer holding count vectors of the given length,
+     * and creates the vector views over it. Callers hold the write locks of the old vectors.
+     */
+    private void publish(double[] newData, int count, int vecLength, VectorOrientation orientation) {
+        SharedVector[] newVectors = new SharedVector[count];
+        //one consecutive block of lockOrders, so locking by increasing index follows the global lock order
+        long firstLockOrder = SharedVector.reserveLockOrders(count);
+        for (int i = 0; i < count; i++) {
+            newVectors[i] = new SharedVector(newData, i * vecLength, vecLength, orientation, firstLockOrder + i);
+        }
+        data = newData;
+        stride = vecLength;
+        vectors = newVectors;
+    }
+
+    // checks that vectors [from, to) are still views over data at their original slots
+    private boolean isContiguous(int from, int to) {
+        SharedVector[] vecs = vectors;
+        for (int i = from; i < to; i++) {
+            if(vecs[i].storage() != data || vecs[i].offset() != i * stride || vecs[i].length() != stride)
+                return false;
+        }
+        return true;
+    }
+
+    private static void acquireVectorReadLocks(SharedVector[] vecs, int from, int to) {
+        for (int i = from; i < to; i++) {
+            vecs[i].readLock();
+        }
+    }
+
+    private static void releaseVectorReadLocks(SharedVector[] vecs, int from, int to) {
+        for (int i = to - 1; i >= from; i--) {
+            vecs[i].readUnlock();
+        }
+    }
+
     private void acquireAllVectorReadLocks(SharedVector[] vecs) {
         // Done: acquire read lock for each vector
         for (int i = 0; i < vecs.length; i++) {
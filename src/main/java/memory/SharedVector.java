@@ -1,12 +1,49 @@
 package memory;
 
-import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
 
+/**
+ * A row or column vector guarded by a read-write lock.
+ *
+ * Lock order: every vector gets a unique lockOrder when it is created. A thread that holds
+ * the locks of several vectors at once must have acquired them in ascending lockOrder.
+ * The vectors of a SharedMatrix receive one consecutive block of lockOrders in index order,
+ * so locking a matrix's vectors by increasing index respects the order. Locking two whole
+ * matrices means locking the one with the smaller lockOrders first.
+ * Single-vector bulk access (withReadView, copyInto) holds only one lock and needs no ordering.
+ * Ranged writes (add, subtract and negate of [from, to)) hold only the read lock, so the
+ * column blocks of one vector run in parallel; like tile writes, they are not isolated
+ * from readers of the same elements.
+ *
+ * Reads of a single element, the length or the orientation are optimistic by default (see
+ * ReadConcurrency): a StampedLock is write-locked for as long as a writer holds the
+ * write lock, so a reader that validates its stamp knows that no writer interfered.
+ */
 public class SharedVector {
 
-    private double[] vector;
+    private static final VectorKernels KERNELS = VectorKernels.active(); // scalar or SIMD, chosen at startup
+    private static final AtomicLong NEXT_LOCK_ORDER = new AtomicLong(0); // source of unique lockOrders
+
+    /**
+     * Read-only access to a vector's raw slice, data[offset .. offset + length).
+     * The array must not be modified or kept after the callback returns.
+     */
+    @FunctionalInterface
+    public interface ReadView<R> {
+        R read(double[] data, int offset, int length);
+    }
+
+    private final long lockOrder; // position of this vector in the global lock order
+
+    private double[] vector; // backing storage, either owned or a slice of a SharedMatrix buffer
+    private int offset; // index of the first element of this vector inside the backing storage
+    private int length; // number of elements of this vector
     private VectorOrientation orientation;
-    private ReadWriteLock lock = new java.util.concurrent.locks.ReentrantReadWriteLock();
+    private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final StampedLock version = new StampedLock(); // write-held while lock's write lock is held, for optimistic reads
+    private long versionStamp; // stamp of the version write lock, only touched by the write lock holder
 
     public SharedVector(double[] vector, VectorOrientation orientation) {
         // Done: store vector data and its orientation
@@ -14,8 +51,11 @@ public class SharedVector {
         if (orientation == null){throw new IllegalArgumentException("Input orientation is null");}
         if(vector.length == 0){throw new IllegalArgumentException("Input vector has zero length");}
 
+        this.lockOrder = NEXT_LOCK_ORDER.getAndIncrement();
         this.orientation = orientation;
         this.vector = new double[vector.length];
+        this.offset = 0;
+        this.length = vector.length;
 
         //Deep copy input vector
         for (int i = 0; i< vector.length; i++) {
@@ -24,14 +64,41 @@ public class SharedVector {
     
     }
 
+    /**
+     * Creates a lightweight view over a slice of a shared backing array, without copying.
+     * Used by SharedMatrix to expose its contiguous storage one vector at a time,
+     * with lockOrder taken from a block returned by reserveLockOrders.
+     */
+    SharedVector(double[] storage, int offset, int length, VectorOrientation orientation, long lockOrder) {
+        this.lockOrder = lockOrder;
+        this.vector = storage;
+        this.offset = offset;
+        this.length = length;
+        this.orientation = orientation;
+    }
+
     public double get(int index) {
         // Done: return element at index (read-locked)
+        if(ReadConcurrency.isOptimistic()){
+            long stamp = version.tryOptimisticRead();
+            double[] data = vector;
+            int curOffset = offset;
+            int curLength = length;
+            //fields may be torn if a writer interfered, so check the array bounds before reading
+            if(index >= 0 && index < curLength && curOffset + index < data.length){
+                double value = data[curOffset + index];
+                if(version.validate(stamp)){
+                    return value;
+                }
+            }
+            //validation failed or the index is illegal, take the real read lock below
+        }
         readLock();
         try{
-            if (index < 0 || index >= vector.length){
+            if (index < 0 || index >= length){
             throw new IndexOutOfBoundsException("Illegal index");
             }
-            return vector[index];
+            return vector[offset + index];
         } finally {
             // Ensures that the lock is released even if an exception occurs
             readUnlock();
@@ -40,9 +107,16 @@ public class SharedVector {
 
     public int length() {
         // Done: return vector length
+        if(ReadConcurrency.isOptimistic()){
+            long stamp = version.tryOptimisticRead();
+            int curLength = length;
+            if(version.validate(stamp)){
+                return curLength;
+            }
+        }
         readLock();
         try{
-            return vector.length;
+            return length;
         } finally {
             //Unlocks after the return value is stored, right before exiting the method
             readUnlock();
@@ -51,6 +125,13 @@ public class SharedVector {
 
     public VectorOrientation getOrientation() {
         // Done: return vector orientation
+        if(ReadConcurrency.isOptimistic()){
+            long stamp = version.tryOptimisticRead();
+            VectorOrientation curOrientation = orientation;
+            if(version.validate(stamp)){
+                return curOrientation;
+            }
+        }
         readLock();
         try{
             return orientation;
@@ -62,17 +143,43 @@ public class SharedVector {
 
     public void writeLock() {
         // Done: acquire write lock
-        lock.writeLock().lock();
+        if(!lock.writeLock().tryLock()){
+            awaitLock(true);
+        }
+        //the write lock is reentrant but StampedLock is not, only the outermost hold takes it
+        if(lock.getWriteHoldCount() == 1){
+            versionStamp = version.writeLock();
+        }
     }
 
     public void writeUnlock() {
         // Done: release write lock
+        if(lock.getWriteHoldCount() == 1){
+            version.unlockWrite(versionStamp);
+        }
         lock.writeLock().unlock();
     }
 
     public void readLock() {
         // Done: acquire read lock
-        lock.readLock().lock();
+        //tryLock would barge past queued writers, which lock() lets go first
+        if(lock.hasQueuedThreads() || !lock.readLock().tryLock()){
+            awaitLock(false);
+        }
+    }
+
+    // contended path of readLock and writeLock, timed as a JFR event that is kept above its threshold
+    private void awaitLock(boolean write) {
+        VectorLockWaitEvent event = new VectorLockWaitEvent();
+        event.begin();
+        if(write) lock.writeLock().lock(); else lock.readLock().lock();
+        event.end();
+        if(event.shouldCommit()){
+            event.write = write;
+            event.lockOrder = lockOrder;
+            event.length = length;
+            event.commit();
+        }
     }
 
     public void readUnlock() {
@@ -90,81 +197,263 @@ public class SharedVector {
 
     public void add(SharedVector other) {
         // Done: add two vectors
+        if(other == null){throw new NullPointerException("Other vector is null");}
+        //Both locks are taken once, in global lock order
+        lockPair(other, true);
         try{
-            writeLock();
-            if(other == null){throw new NullPointerException("Other vector is null");}
-            if(vector.length != other.length()){throw new IllegalArgumentException("other vector has different length from this vector");}
-            if(orientation != other.getOrientation()){throw new IllegalArgumentException("other vector has different orientation from this vector");}
+            if(length != other.length){throw new IllegalArgumentException("other vector has different length from this vector");}
+            if(orientation != other.orientation){throw new IllegalArgumentException("other vector has different orientation from this vector");}
 
             //Summing the result into this
-            for (int i = 0; i < vector.length; i++) {
-                // No deadlock risk: In the engine we always write to the Left Matrix and read from the Right Matrix.
-                vector[i] = vector[i]+ other.get(i);
+            KERNELS.add(vector, offset, other.vector, other.offset, length);
+        }
+        finally{
+            unlockPair(other, true);
+        }
+        
+    }
+
+    /**
+     * Subtracts other from this vector in one pass, the fused form of add(-other).
+     */
+    public void subtract(SharedVector other) {
+        if(other == null){throw new NullPointerException("Other vector is null");}
+        //Both locks are taken once, in global lock order
+        lockPair(other, true);
+        try{
+            if(length != other.length){throw new IllegalArgumentException("other vector has different length from this vector");}
+            if(orientation != other.orientation){throw new IllegalArgumentException("other vector has different orientation from this vector");}
+
+            KERNELS.subtract(vector, offset, other.vector, other.offset, length);
+        }
+        finally{
+            unlockPair(other, true);
+        }
+    }
+
+    /**
+     * Adds elements [from, to) of other to the same elements of this vector, for tasks
+     * that split long vectors into column blocks.
+     * Only the read lock of this vector is taken, so that it keeps its storage and shape:
+     * concurrent blocks write disjoint elements, like the tiles of multiplyTile, and run
+     * at the same time. Callers must not let two ranged writes of one vector overlap.
+     */
+    public void add(SharedVector other, int from, int to) {
+        combineRange(other, from, to, false);
+    }
+
+    // subtracts elements [from, to) of other from the same elements of this vector
+    public void subtract(SharedVector other, int from, int to) {
+        combineRange(other, from, to, true);
+    }
+
+    private void combineRange(SharedVector other, int from, int to, boolean subtract) {
+        if(other == null){throw new NullPointerException("Other vector is null");}
+        //Both locks are taken once, in global lock order, shared with the other blocks of this vector
+        lockPair(other, false);
+        try{
+            if(length != other.length){throw new IllegalArgumentException("other vector has different length from this vector");}
+            if(orientation != other.orientation){throw new IllegalArgumentException("other vector has different orientation from this vector");}
+            checkRange(from, to);
+            if(subtract)
+                KERNELS.subtract(vector, offset + from, other.vector, other.offset + from, to - from);
+            else
+                KERNELS.add(vector, offset + from, other.vector, other.offset + from, to - from);
+        }
+        finally{
+            unlockPair(other, false);
+        }
+    }
+
+    /**
+     * Adds sign times the nonzeros values[from, to) at positions indices[from, to), the
+     * slice of one major vector of a SparseMatrix. Only those elements are touched.
+     */
+    void addSparse(int[] indices, double[] values, int from, int to, double sign) {
+        writeLock();
+        try{
+            for (int p = from; p < to; p++) {
+                if(indices[p] >= length){throw new IllegalArgumentException("other vector has different length from this vector");}
+                vector[offset + indices[p]] += sign * values[p];
             }
         }
         finally{
             writeUnlock();
         }
-        
     }
 
     public void negate() {
         // Done: negate vector
         try{
             writeLock();
-            for (int i = 0; i < vector.length; i++) {
-            vector[i] = -vector[i];
-        }
+            KERNELS.negate(vector, offset, length);
         } finally {
             writeUnlock();
         }
     }
 
+    // negates elements [from, to) only, under the shared lock like the ranged add
+    public void negate(int from, int to) {
+        readLock();
+        try{
+            checkRange(from, to);
+            KERNELS.negate(vector, offset + from, to - from);
+        } finally {
+            readUnlock();
+        }
+    }
+
+    // the caller holds a lock of this vector
+    private void checkRange(int from, int to) {
+        if(from < 0 || to > length || from >= to){throw new IndexOutOfBoundsException("Range ["+from+","+to+") out of bounds for length "+length);}
+    }
+
     public double dot(SharedVector other) {
         // Done: compute dot product (row · column)
+        if(other == null){throw new NullPointerException("Other vector is null");}
+        //Both locks are taken once, in global lock order
+        lockPair(other, false);
         try{
-            readLock();
-            if(other == null){throw new NullPointerException("Other vector is null");}
-            if(vector.length != other.length()){throw new IllegalArgumentException("other vector has different length from this vector");}
-            if(this.orientation != VectorOrientation.ROW_MAJOR || other.getOrientation() != VectorOrientation.COLUMN_MAJOR){
+            if(length != other.length){throw new IllegalArgumentException("other vector has different length from this vector");}
+            if(this.orientation != VectorOrientation.ROW_MAJOR || other.orientation != VectorOrientation.COLUMN_MAJOR){
                 throw new UnsupportedOperationException("Dot product only supported for row · column vectors");
             }
-
-            double sum = 0;
-            for (int i = 0; i < vector.length; i++) {
-                // Using get() per iteration incurs overhead but prevents deadlocks
-                // by avoiding nested locks without global ordering.
-                sum += vector[i]*other.get(i);
-            }
-            return sum;
+            return KERNELS.dot(vector, offset, other.vector, other.offset, length);
         }
         finally{
-            readUnlock();
+            unlockPair(other, false);
         }
     }
 
     public void vecMatMul(SharedMatrix matrix) {
         //Done: compute row-vector × matrix 
+        //validate orientations and dimensions
+        if(matrix == null){ throw new NullPointerException("Input matrix is null");}
+        if(matrix.length() == 0 || matrix.get(0).length() == 0){ throw new IllegalArgumentException("Input matrix has zero length");}
+        if(this.getOrientation() != VectorOrientation.ROW_MAJOR){ throw new UnsupportedOperationException("vecMatMul not supported for non-row major vectors");}
+        if(matrix.getOrientation() != VectorOrientation.COLUMN_MAJOR){ throw new UnsupportedOperationException("vecMatMul not supported for non-column major matrices");}
+
+        //Snapshot this row, then read every column under its own lock only.
+        //At most one lock is held at any time, so no lock order is needed.
+        double[] row = toArray();
+        if(row.length != matrix.get(0).length()){ throw new IllegalArgumentException("Vector and Matrix dimensions do not match for multiplication");}
+        double[] result = new double[matrix.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = matrix.get(i).withReadView((data, colOffset, colLength) -> {
+                if(colLength != row.length){ throw new IllegalArgumentException("Vector and Matrix dimensions do not match for multiplication");}
+                return KERNELS.dot(row, 0, data, colOffset, colLength);
+            });
+        }
+
         try{
             writeLock();
-            //validate orientations and dimensions
-            if(matrix == null){ throw new NullPointerException("Input matrix is null");}
-            if(matrix.length() == 0 || matrix.get(0).length() == 0){ throw new IllegalArgumentException("Input matrix has zero length");}
-            if(this.orientation != VectorOrientation.ROW_MAJOR){ throw new UnsupportedOperationException("vecMatMul not supported for non-row major vectors");}
-            if(matrix.getOrientation() != VectorOrientation.COLUMN_MAJOR){ throw new UnsupportedOperationException("vecMatMul not supported for non-column major matrices");}
-            if(this.length() != matrix.get(0).length()){ throw new IllegalArgumentException("Vector and Matrix dimensions do not match for multiplication");}
-
-            double[] result = new double[matrix.length()];
-            for (int i = 0; i < result.length; i++) {
-                result[i] = dot(matrix.get(i));
+            if(result.length == length){
+                //Same shape: write back into the slice so a matrix-backed view stays a view
+                System.arraycopy(result, 0, vector, offset, length);
+            }
+            else{
+                //Shape changed: detach from the shared storage and own the result
+                this.vector = result;
+                this.offset = 0;
+                this.length = result.length;
             }
-            this.vector = result;
         }
         finally{
             writeUnlock();
         }
     }
 
+    /**
+     * Runs view over this vector's raw slice while holding the read lock once,
+     * instead of taking it for every get().
+     */
+    public <R> R withReadView(ReadView<R> view) {
+        readLock();
+        try{
+            return view.read(vector, offset, length);
+        }
+        finally{
+            readUnlock();
+        }
+    }
+
+    /**
+     * Copies the whole vector into dst starting at dstOffset, under a single read lock.
+     */
+    public void copyInto(double[] dst, int dstOffset) {
+        if(dst == null){throw new NullPointerException("Destination array is null");}
+        readLock();
+        try{
+            if(dstOffset < 0 || dstOffset + length > dst.length){
+                throw new IndexOutOfBoundsException("Destination too small for vector of length " + length);
+            }
+            System.arraycopy(vector, offset, dst, dstOffset, length);
+        }
+        finally{
+            readUnlock();
+        }
+    }
+
+    /**
+     * Returns a copy of this vector's elements, taken under a single read lock.
+     */
+    public double[] toArray() {
+        readLock();
+        try{
+            double[] copy = new double[length];
+            System.arraycopy(vector, offset, copy, 0, length);
+            return copy;
+        }
+        finally{
+            readUnlock();
+        }
+    }
+
+    /**
+     * Reserves count consecutive lockOrders and returns the first one.
+     * SharedMatrix uses one block per load so its vectors are ordered by index.
+     */
+    static long reserveLockOrders(int count) {
+        return NEXT_LOCK_ORDER.getAndAdd(count);
+    }
+
+    long lockOrder() {
+        return lockOrder;
+    }
+
+    // Locks this (for writing if writeThis, else reading) and other (for reading), in global lock order
+    private void lockPair(SharedVector other, boolean writeThis) {
+        if(other == this){
+            //A write lock also covers reading, a second read lock would just be reentrant
+            if(writeThis) writeLock(); else readLock();
+            return;
+        }
+        if(lockOrder < other.lockOrder){
+            if(writeThis) writeLock(); else readLock();
+            other.readLock();
+        }
+        else{
+            other.readLock();
+            if(writeThis) writeLock(); else readLock();
+        }
+    }
+
+    private void unlockPair(SharedVector other, boolean writeThis) {
+        if(other != this){
+            other.readUnlock();
+        }
+        if(writeThis) writeUnlock(); else readUnlock();
+    }
+
+    // Raw accessors used by SharedMatrix to check a view still points into its buffer, callers must hold this vector's lock
+    double[] storage() {
+        return vector;
+    }
+
+    int offset() {
+        return offset;
+    }
+
     @Override
     public boolean equals(Object other) {
         
@@ -173,17 +462,18 @@ public class SharedVector {
         if (other == null || getClass() != other.getClass()) return false;
         
         SharedVector otherVector = (SharedVector) other;
-        readLock();
+        //Both locks are taken once, in global lock order
+        lockPair(otherVector, false);
         try{
-            if (orientation != otherVector.getOrientation() || length() != otherVector.length()){return false;}
-        for (int i = 0; i < vector.length; i++) {
-            if(vector[i]!= otherVector.get(i)){
-                return false;
+            if (orientation != otherVector.orientation || length != otherVector.length){return false;}
+            for (int i = 0; i < length; i++) {
+                if(vector[offset + i]!= otherVector.vector[otherVector.offset + i]){
+                    return false;
+                }
             }
-        }
-        return true;
+            return true;
         } finally {
-            readUnlock();
+            unlockPair(otherVector, false);
         }
         
     }
@@ -195,17 +485,17 @@ public class SharedVector {
             StringBuilder sb = new StringBuilder();
             if (orientation == VectorOrientation.ROW_MAJOR) {
                 sb.append("[");
-                for (int i = 0; i < vector.length; i++) {
-                    sb.append(vector[i]);
-                    if (i < vector.length - 1) {
+                for (int i = 0; i < length; i++) {
+                    sb.append(vector[offset + i]);
+                    if (i < length - 1) {
                         sb.append(" ");
                     }
                 }
                 sb.append("]");
             } else { // column major
                 sb.append("|");
-                for (int i = 0; i < vector.length; i++) {
-                    sb.append(" ").append(vector[i]).append(" |");
+                for (int i = 0; i < length; i++) {
+                    sb.append(" ").append(vector[offset + i]).append(" |");
                 }
             }
             return sb.toString();
@@ -0,0 +1,117 @@
+package memory;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorKernels backend built on the incubating Vector API.
+ * Uses the widest species the CPU supports (AVX2: 4 lanes, AVX-512: 8 lanes),
+ * with a scalar loop for the tail that does not fill a whole vector.
+ * Only instantiated reflectively by VectorKernels when jdk.incubator.vector is available.
+ */
+final class SimdKernels implements VectorKernels {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        DoubleVector acc = DoubleVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector va = DoubleVector.fromArray(SPECIES, a, aOffset + i);
+            DoubleVector vb = DoubleVector.fromArray(SPECIES, b, bOffset + i);
+            acc = va.fma(vb, acc);
+        }
+        double sum = acc.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    @Override
+    public void add(double[] dst, int dstOffset, double[] src, int srcOffset, int length) {
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector vd = DoubleVector.fromArray(SPECIES, dst, dstOffset + i);
+            DoubleVector vs = DoubleVector.fromArray(SPECIES, src, srcOffset + i);
+            vd.add(vs).intoArray(dst, dstOffset + i);
+        }
+        for (; i < length; i++) {
+            dst[dstOffset + i] += src[srcOffset + i];
+        }
+    }
+
+    @Override
+    public void subtract(double[] dst, int dstOffset, double[] src, int srcOffset, int length) {
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector vd = DoubleVector.fromArray(SPECIES, dst, dstOffset + i);
+            DoubleVector vs = DoubleVector.fromArray(SPECIES, src, srcOffset + i);
+            vd.sub(vs).intoArray(dst, dstOffset + i);
+        }
+        for (; i < length; i++) {
+            dst[dstOffset + i] -= src[srcOffset + i];
+        }
+    }
+
+    @Override
+    public void negate(double[] a, int offset, int length) {
+        int bound = SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += SPECIES.length()) {
+            DoubleVector.fromArray(SPECIES, a, offset + i).neg().intoArray(a, offset + i);
+        }
+        for (; i < length; i++) {
+            a[offset + i] = -a[offset + i];
+        }
+    }
+
+    @Override
+    public void dot4x4(double[] a, int aOffset, int aStride, double[] b, int bOffset, int bStride,
+                       int from, int to, double[] out) {
+        int a0 = aOffset, a1 = a0 + aStride, a2 = a1 + aStride, a3 = a2 + aStride;
+        int b0 = bOffset, b1 = b0 + bStride, b2 = b1 + bStride, b3 = b2 + bStride;
+        DoubleVector c00 = DoubleVector.zero(SPECIES), c01 = c00, c02 = c00, c03 = c00;
+        DoubleVector c10 = c00, c11 = c00, c12 = c00, c13 = c00;
+        DoubleVector c20 = c00, c21 = c00, c22 = c00, c23 = c00;
+        DoubleVector c30 = c00, c31 = c00, c32 = c00, c33 = c00;
+        int bound = from + SPECIES.loopBound(to - from);
+        int p = from;
+        for (; p < bound; p += SPECIES.length()) {
+            DoubleVector x0 = DoubleVector.fromArray(SPECIES, a, a0 + p);
+            DoubleVector x1 = DoubleVector.fromArray(SPECIES, a, a1 + p);
+            DoubleVector x2 = DoubleVector.fromArray(SPECIES, a, a2 + p);
+            DoubleVector x3 = DoubleVector.fromArray(SPECIES, a, a3 + p);
+            DoubleVector y0 = DoubleVector.fromArray(SPECIES, b, b0 + p);
+            DoubleVector y1 = DoubleVector.fromArray(SPECIES, b, b1 + p);
+            DoubleVector y2 = DoubleVector.fromArray(SPECIES, b, b2 + p);
+            DoubleVector y3 = DoubleVector.fromArray(SPECIES, b, b3 + p);
+            c00 = x0.fma(y0, c00); c01 = x0.fma(y1, c01); c02 = x0.fma(y2, c02); c03 = x0.fma(y3, c03);
+            c10 = x1.fma(y0, c10); c11 = x1.fma(y1, c11); c12 = x1.fma(y2, c12); c13 = x1.fma(y3, c13);
+            c20 = x2.fma(y0, c20); c21 = x2.fma(y1, c21); c22 = x2.fma(y2, c22); c23 = x2.fma(y3, c23);
+            c30 = x3.fma(y0, c30); c31 = x3.fma(y1, c31); c32 = x3.fma(y2, c32); c33 = x3.fma(y3, c33);
+        }
+        out[0] += c00.reduceLanes(VectorOperators.ADD); out[1] += c01.reduceLanes(VectorOperators.ADD);
+        out[2] += c02.reduceLanes(VectorOperators.ADD); out[3] += c03.reduceLanes(VectorOperators.ADD);
+        out[4] += c10.reduceLanes(VectorOperators.ADD); out[5] += c11.reduceLanes(VectorOperators.ADD);
+        out[6] += c12.reduceLanes(VectorOperators.ADD); out[7] += c13.reduceLanes(VectorOperators.ADD);
+        out[8] += c20.reduceLanes(VectorOperators.ADD); out[9] += c21.reduceLanes(VectorOperators.ADD);
+        out[10] += c22.reduceLanes(VectorOperators.ADD); out[11] += c23.reduceLanes(VectorOperators.ADD);
+        out[12] += c30.reduceLanes(VectorOperators.ADD); out[13] += c31.reduceLanes(VectorOperators.ADD);
+        out[14] += c32.reduceLanes(VectorOperators.ADD); out[15] += c33.reduceLanes(VectorOperators.ADD);
+        // tail of [from, to) that does not fill a whole vector
+        for (; p < to; p++) {
+            double x0 = a[a0 + p], x1 = a[a1 + p], x2 = a[a2 + p], x3 = a[a3 + p];
+            double y0 = b[b0 + p], y1 = b[b1 + p], y2 = b[b2 + p], y3 = b[b3 + p];
+            out[0] += x0 * y0; out[1] += x0 * y1; out[2] += x0 * y2; out[3] += x0 * y3;
+            out[4] += x1 * y0; out[5] += x1 * y1; out[6] += x1 * y2; out[7] += x1 * y3;
+            out[8] += x2 * y0; out[9] += x2 * y1; out[10] += x2 * y2; out[11] += x2 * y3;
+            out[12] += x3 * y0; out[13] += x3 * y1; out[14] += x3 * y2; out[15] += x3 * y3;
+        }
+    }
+}
@@ -0,0 +1,485 @@
+package memory;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoublePredicate;
+
+/**
+ * An immutable matrix that stores only its nonzero elements, in compressed form.
+ * A row-major matrix is CSR: the nonzeros of row i are values[pointers[i] .. pointers[i + 1]),
+ * with their columns in indices. A column-major matrix is CSC, the same per column.
+ * The vectors along the orientation are called major vectors below, as in SharedMatrix.
+ *
+ * Nothing is ever written after construction, so kernels read it from any number of tasks
+ * without locks. The transpose of a CSR matrix is the CSC matrix over the same arrays,
+ * so transpose() copies nothing.
+ */
+public final class SparseMatrix {
+
+    private final int rows;
+    private final int columns;
+    private final VectorOrientation orientation;
+    private final int[] pointers; // start of every major vector in indices and values, plus the end
+    private final int[] indices; // minor index of every nonzero, ascending within a major vector
+    private final double[] values;
+
+    private SparseMatrix(int rows, int columns, VectorOrientation orientation, int[] pointers, int[] indices, double[] values) {
+        this.rows = rows;
+        this.columns = columns;
+        this.orientation = orientation;
+        this.pointers = pointers;
+        this.indices = indices;
+        this.values = values;
+    }
+
+    // fraction of nonzero elements, 0 for an empty matrix
+    public static double density(double[][] matrix) {
+        if (matrix == null) {
+            throw new NullPointerException("Input matrix is null");
+        }
+        long elements = 0;
+        long nonZeros = 0;
+        for (double[] row : matrix) {
+            elements += row.length;
+            for (double value : row) {
+                if (value != 0.0) {
+                    nonZeros++;
+                }
+            }
+        }
+        return elements == 0 ? 0.0 : (double) nonZeros / elements;
+    }
+
+    // same for a matrix in engine layout, each vector is read under its own read lock
+    public static double density(SharedMatrix matrix) {
+        if (matrix == null) {
+            throw new NullPointerException("Input matrix is null");
+        }
+        long elements = 0;
+        long nonZeros = 0;
+        for (int i = 0; i < matrix.length(); i++) {
+            SharedVector vector = matrix.get(i);
+            elements += vector.length();
+            nonZeros += vector.withReadView((data, offset, length) -> {
+                long count = 0;
+                for (int j = offset; j < offset + length; j++) {
+                    if (data[j] != 0.0) {
+                        count++;
+                    }
+                }
+                return count;
+            });
+        }
+        return elements == 0 ? 0.0 : (double) nonZeros / elements;
+    }
+
+    /**
+     * Whether a value can be left out as an implicit zero or multiply one without changing
+     * a result: finite and not -0.0. The dense kernels give NaN for 0 * Inf and 0.0 for
+     * -0.0 + 0.0, which skipping the zeros would not.
+     */
+    public static boolean isPlain(double value) {
+        return Double.isFinite(value) && Double.doubleToRawLongBits(value) != Long.MIN_VALUE;
+    }
+
+    // whether every element passes the test
+    public static boolean allMatch(double[][] matrix, DoublePredicate test) {
+        if (matrix == null || test == null) {
+            throw new NullPointerException("Input matrix or test is null");
+        }
+        for (double[] row : matrix) {
+            for (double value : row) {
+                if (!test.test(value)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    // same for a matrix in engine layout, each vector is read under its own read lock
+    public static boolean allMatch(SharedMatrix matrix, DoublePredicate test) {
+        if (matrix == null || test == null) {
+            throw new NullPointerException("Input matrix or test is null");
+        }
+        for (int i = 0; i < matrix.length(); i++) {
+            boolean match = matrix.get(i).withReadView((data, offset, length) -> {
+                for (int j = offset; j < offset + length; j++) {
+                    if (!test.test(data[j])) {
+                        return false;
+                    }
+                }
+                return true;
+            });
+            if (!match) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // whether every stored nonzero passes the test, the implicit zeros are not tested
+    public boolean allMatch(DoublePredicate test) {
+        if (test == null) {
+            throw new NullPointerException("Test is null");
+        }
+        for (double value : values) {
+            if (!test.test(value)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Compresses a dense matrix, CSR for ROW_MAJOR and CSC for COLUMN_MAJOR.
+     */
+    public static SparseMatrix fromDense(double[][] matrix, VectorOrientation orientation) {
+        if (matrix == null || orientation == null) {
+            throw new NullPointerException("Input matrix or orientation is null");
+        }
+        if (matrix.length == 0 || matrix[0].length == 0) {
+            throw new IllegalArgumentException("Matrix is empty");
+        }
+        int rows = matrix.length;
+        int columns = matrix[0].length;
+        for (double[] row : matrix) {
+            if (row.length != columns) {
+                throw new IllegalArgumentException("Inconsistent row sizes in matrix.");
+            }
+        }
+        boolean rowMajor = orientation == VectorOrientation.ROW_MAJOR;
+        int majors = rowMajor ? rows : columns;
+        int minors = rowMajor ? columns : rows;
+        int[] pointers = new int[majors + 1];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                if (matrix[i][j] != 0.0) {
+                    pointers[(rowMajor ? i : j) + 1]++;
+                }
+            }
+        }
+        for (int m = 0; m < majors; m++) {
+            pointers[m + 1] += pointers[m];
+        }
+        int[] indices = new int[pointers[majors]];
+        double[] values = new double[pointers[majors]];
+        int[] next = Arrays.copyOf(pointers, majors);
+        for (int m = 0; m < majors; m++) {
+            for (int n = 0; n < minors; n++) {
+                double value = rowMajor ? matrix[m][n] : matrix[n][m];
+                if (value != 0.0) {
+                    indices[next[m]] = n;
+                    values[next[m]++] = value;
+                }
+            }
+        }
+        return new SparseMatrix(rows, columns, orientation, pointers, indices, values);
+    }
+
+    /**
+     * Compresses a matrix in engine layout, keeping its orientation: row-major vectors
+     * become CSR and column-major vectors CSC, without transposing anything.
+     */
+    public static SparseMatrix fromShared(SharedMatrix matrix) {
+        if (matrix == null) {
+            throw new NullPointerException("Input matrix is null");
+        }
+        VectorOrientation orientation = matrix.getOrientation();
+        int majors = matrix.length();
+        int minors = matrix.get(0).length();
+        int[] pointers = new int[majors + 1];
+        double[] vector = new double[minors];
+        int[] indices = new int[16];
+        double[] values = new double[16];
+        int nonZeros = 0;
+        for (int m = 0; m < majors; m++) {
+            SharedVector shared = matrix.get(m);
+            if (shared.length() != minors) {
+                throw new IllegalStateException("Matrix vectors have inconsistent lengths");
+            }
+            shared.copyInto(vector, 0);
+            for (int n = 0; n < minors; n++) {
+                if (vector[n] != 0.0) {
+                    if (nonZeros == indices.length) {
+                        indices = Arrays.copyOf(indices, nonZeros * 2);
+                        values = Arrays.copyOf(values, nonZeros * 2);
+                    }
+                    indices[nonZeros] = n;
+                    values[nonZeros++] = vector[n];
+                }
+            }
+            pointers[m + 1] = nonZeros;
+        }
+        int rows = orientation == VectorOrientation.ROW_MAJOR ? majors : minors;
+        int columns = orientation == VectorOrientation.ROW_MAJOR ? minors : majors;
+        return new SparseMatrix(rows, columns, orientation, pointers,
+            Arrays.copyOf(indices, nonZeros), Arrays.copyOf(values, nonZeros));
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+    public int nonZeros() {
+        return pointers[pointers.length - 1];
+    }
+
+    public double density() {
+        return (double) nonZeros() / ((long) rows * columns);
+    }
+
+    public VectorOrientation getOrientation() {
+        return orientation;
+    }
+
+    // number of major vectors, rows for CSR and columns for CSC
+    public int majorLength() {
+        return pointers.length - 1;
+    }
+
+    // the same arrays read the other way round, CSR of A is CSC of T(A)
+    public SparseMatrix transpose() {
+        VectorOrientation flipped = orientation == VectorOrientation.ROW_MAJOR
+            ? VectorOrientation.COLUMN_MAJOR : VectorOrientation.ROW_MAJOR;
+        return new SparseMatrix(columns, rows, flipped, pointers, indices, values);
+    }
+
+    /**
+     * Returns this matrix compressed along the given orientation, CSR to CSC or back,
+     * or this matrix itself if it already is. Conversion is a counting sort over the nonzeros.
+     */
+    public SparseMatrix toOrientation(VectorOrientation target) {
+        if (target == null) {
+            throw new NullPointerException("Orientation is null");
+        }
+        if (target == orientation) {
+            return this;
+        }
+        int majors = majorLength();
+        int minors = orientation == VectorOrientation.ROW_MAJOR ? columns : rows;
+        int[] newPointers = new int[minors + 1];
+        for (int p = 0; p < nonZeros(); p++) {
+            newPointers[indices[p] + 1]++;
+        }
+        for (int n = 0; n < minors; n++) {
+            newPointers[n + 1] += newPointers[n];
+        }
+        int[] newIndices = new int[nonZeros()];
+        double[] newValues = new double[nonZeros()];
+        int[] next = Arrays.copyOf(newPointers, minors);
+        //walking the old major vectors in order keeps the new indices ascending
+        for (int m = 0; m < majors; m++) {
+            for (int p = pointers[m]; p < pointers[m + 1]; p++) {
+                int slot = next[indices[p]]++;
+                newIndices[slot] = m;
+                newValues[slot] = values[p];
+            }
+        }
+        return new SparseMatrix(rows, columns, target, newPointers, newIndices, newValues);
+    }
+
+    // the structure is shared, only the values are copied
+    public SparseMatrix negate() {
+        double[] negated = new double[values.length];
+        for (int p = 0; p < values.length; p++) {
+            negated[p] = -values[p];
+        }
+        return new SparseMatrix(rows, columns, orientation, pointers, indices, negated);
+    }
+
+    public double[][] toDense() {
+        double[][] dense = new double[rows][columns];
+        boolean rowMajor = orientation == VectorOrientation.ROW_MAJOR;
+        for (int m = 0; m < majorLength(); m++) {
+            for (int p = pointers[m]; p < pointers[m + 1]; p++) {
+                if (rowMajor) {
+                    dense[m][indices[p]] = values[p];
+                } else {
+                    dense[indices[p]][m] = values[p];
+                }
+            }
+        }
+        return dense;
+    }
+
+    // a dense copy in engine layout, with the given orientation
+    public SharedMatrix toShared(VectorOrientation target) {
+        SharedMatrix shared = new SharedMatrix();
+        if (target == VectorOrientation.COLUMN_MAJOR) {
+            shared.loadColumnMajor(toDense());
+        } else {
+            shared.loadRowMajor(toDense());
+        }
+        return shared;
+    }
+
+    /**
+     * Computes rows [rowFrom, rowTo) of left x right as a CSR band, both operands CSR.
+     * Each output row is accumulated in a dense scratch row (Gustavson's algorithm),
+     * touching only the right rows selected by the left row's nonzeros.
+     */
+    public static SparseMatrix multiplyRows(SparseMatrix left, SparseMatrix right, int rowFrom, int rowTo) {
+        if (left == null || right == null) {
+            throw new NullPointerException("Input matrix is null");
+        }
+        if (left.orientation != VectorOrientation.ROW_MAJOR || right.orientation != VectorOrientation.ROW_MAJOR) {
+            throw new UnsupportedOperationException("Sparse multiplication requires CSR operands");
+        }
+        if (left.columns != right.rows) {
+            throw new IllegalArgumentException("Matrices dimensions do not match for multiplication");
+        }
+        checkRange(rowFrom, rowTo, left.rows);
+        int columns = right.columns;
+        double[] accumulator = new double[columns];
+        boolean[] touched = new boolean[columns];
+        int[] touchedColumns = new int[columns];
+        int[] pointers = new int[rowTo - rowFrom + 1];
+        Band band = new Band();
+        for (int i = rowFrom; i < rowTo; i++) {
+            int count = 0;
+            for (int p = left.pointers[i]; p < left.pointers[i + 1]; p++) {
+                int k = left.indices[p];
+                double a = left.values[p];
+                for (int q = right.pointers[k]; q < right.pointers[k + 1]; q++) {
+                    int j = right.indices[q];
+                    if (!touched[j]) {
+                        touched[j] = true;
+                        touchedColumns[count++] = j;
+                    }
+                    accumulator[j] += a * right.values[q];
+                }
+            }
+            Arrays.sort(touchedColumns, 0, count);
+            for (int c = 0; c < count; c++) {
+                int j = touchedColumns[c];
+                band.append(j, accumulator[j]);
+                accumulator[j] = 0.0;
+                touched[j] = false;
+            }
+            pointers[i - rowFrom + 1] = band.size;
+        }
+        return band.build(rowTo - rowFrom, columns, VectorOrientation.ROW_MAJOR, pointers);
+    }
+
+    /**
+     * Computes major vectors [from, to) of left + sign * right as a band, where right
+     * must have left's shape and orientation. Sign 1 adds, -1 subtracts.
+     */
+    public static SparseMatrix addVectors(SparseMatrix left, SparseMatrix right, double sign, int from, int to) {
+        if (left == null || right == null) {
+            throw new NullPointerException("Input matrix is null");
+        }
+        if (left.rows != right.rows || left.columns != right.columns) {
+            throw new IllegalArgumentException("Matrices dimensions do not match for addition");
+        }
+        if (left.orientation != right.orientation) {
+            throw new UnsupportedOperationException("Sparse addition requires operands of the same orientation");
+        }
+        checkRange(from, to, left.majorLength());
+        int[] pointers = new int[to - from + 1];
+        Band band = new Band();
+        for (int m = from; m < to; m++) {
+            //both index lists are ascending, so they are merged like sorted lists
+            int p = left.pointers[m];
+            int q = right.pointers[m];
+            while (p < left.pointers[m + 1] || q < right.pointers[m + 1]) {
+                int pIndex = p < left.pointers[m + 1] ? left.indices[p] : Integer.MAX_VALUE;
+                int qIndex = q < right.pointers[m + 1] ? right.indices[q] : Integer.MAX_VALUE;
+                if (pIndex < qIndex) {
+                    band.append(pIndex, left.values[p++]);
+                } else if (qIndex < pIndex) {
+                    band.append(qIndex, sign * right.values[q++]);
+                } else {
+                    band.append(pIndex, left.values[p++] + sign * right.values[q++]);
+                }
+            }
+            pointers[m - from + 1] = band.size;
+        }
+        boolean rowMajor = left.orientation == VectorOrientation.ROW_MAJOR;
+        return band.build(rowMajor ? to - from : left.rows, rowMajor ? left.columns : to - from, left.orientation, pointers);
+    }
+
+    /**
+     * Stacks bands computed by multiplyRows or addVectors along their major dimension,
+     * in list order, into one matrix.
+     */
+    public static SparseMatrix concat(List<SparseMatrix> bands) {
+        if (bands == null || bands.isEmpty()) {
+            throw new IllegalArgumentException("No bands to concatenate");
+        }
+        SparseMatrix first = bands.get(0);
+        boolean rowMajor = first.orientation == VectorOrientation.ROW_MAJOR;
+        int majors = 0;
+        int nonZeros = 0;
+        for (SparseMatrix band : bands) {
+            if (band.orientation != first.orientation || (rowMajor ? band.columns != first.columns : band.rows != first.rows)) {
+                throw new IllegalArgumentException("Bands do not line up");
+            }
+            majors += band.majorLength();
+            nonZeros += band.nonZeros();
+        }
+        int[] pointers = new int[majors + 1];
+        int[] indices = new int[nonZeros];
+        double[] values = new double[nonZeros];
+        int major = 0;
+        int offset = 0;
+        for (SparseMatrix band : bands) {
+            for (int m = 0; m < band.majorLength(); m++) {
+                pointers[++major] = offset + band.pointers[m + 1];
+            }
+            System.arraycopy(band.indices, 0, indices, offset, band.nonZeros());
+            System.arraycopy(band.values, 0, values, offset, band.nonZeros());
+            offset += band.nonZeros();
+        }
+        return new SparseMatrix(rowMajor ? majors : first.rows, rowMajor ? first.columns : majors,
+            first.orientation, pointers, indices, values);
+    }
+
+    // raw access for the dense kernels of SharedMatrix and SharedVector
+    int[] pointers() {
+        return pointers;
+    }
+
+    int[] indices() {
+        return indices;
+    }
+
+    double[] values() {
+        return values;
+    }
+
+    private static void checkRange(int from, int to, int length) {
+        if (from < 0 || to > length || from >= to) {
+            throw new IndexOutOfBoundsException("Range [" + from + "," + to + ") out of bounds for length " + length);
+        }
+    }
+
+    // growing nonzero buffers of a band under construction, exact zeros are dropped
+    private static final class Band {
+        int[] indices = new int[16];
+        double[] values = new double[16];
+        int size = 0;
+
+        void append(int index, double value) {
+            if (value == 0.0) {
+                return;
+            }
+            if (size == indices.length) {
+                indices = Arrays.copyOf(indices, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            indices[size] = index;
+            values[size++] = value;
+        }
+
+        SparseMatrix build(int rows, int columns, VectorOrientation orientation, int[] pointers) {
+            return new SparseMatrix(rows, columns, orientation, pointers,
+                Arrays.copyOf(indices, size), Arrays.copyOf(values, size));
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package memory;
+
+/**
+ * Raw array kernels used by SharedVector and GemmKernel once the relevant locks are held.
+ * Two backends exist: plain scalar loops, and a SIMD backend built on jdk.incubator.vector.
+ * The SIMD backend is selected once at startup when the incubator module is in the boot
+ * layer (run with --add-modules jdk.incubator.vector), otherwise the scalar loops are used.
+ * Setting -Dlae.kernels=scalar forces the scalar backend.
+ */
+public interface VectorKernels {
+
+    /** Returns sum of a[aOffset + i] * b[bOffset + i] for i in [0, length). */
+    double dot(double[] a, int aOffset, double[] b, int bOffset, int length);
+
+    /** dst[dstOffset + i] += src[srcOffset + i] for i in [0, length). */
+    void add(double[] dst, int dstOffset, double[] src, int srcOffset, int length);
+
+    /** dst[dstOffset + i] -= src[srcOffset + i] for i in [0, length). */
+    void subtract(double[] dst, int dstOffset, double[] src, int srcOffset, int length);
+
+    /** a[offset + i] = -a[offset + i] for i in [0, length). */
+    void negate(double[] a, int offset, int length);
+
+    /**
+     * Computes the 16 dot products between 4 rows of a (starting at aOffset, aStride apart)
+     * and 4 rows of b (starting at bOffset, bStride apart) over [from, to),
+     * and adds them to out[0..16) in row-major order.
+     */
+    void dot4x4(double[] a, int aOffset, int aStride, double[] b, int bOffset, int bStride,
+                int from, int to, double[] out);
+
+    /** Returns the backend chosen at startup. */
+    static VectorKernels active() {
+        return Backend.ACTIVE;
+    }
+
+    /** Returns the scalar backend, always available. */
+    static VectorKernels scalar() {
+        return Backend.SCALAR;
+    }
+
+    final class Backend {
+        private static final VectorKernels SCALAR = new ScalarKernels();
+        private static final VectorKernels ACTIVE = select();
+
+        private Backend() {}
+
+        private static VectorKernels select() {
+            if ("scalar".equals(System.getProperty("lae.kernels"))) {
+                return SCALAR;
+            }
+            if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+                return SCALAR;
+            }
+            try {
+                // loaded reflectively so the scalar path never links against the incubator module
+                return (VectorKernels) Class.forName("memory.SimdKernels").getDeclaredConstructor().newInstance();
+            }
+            catch (ReflectiveOperationException | LinkageError e) {
+                return SCALAR;
+            }
+        }
+    }
+}
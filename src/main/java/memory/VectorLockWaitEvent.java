@@ -0,0 +1,32 @@
+package memory;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A SharedVector lock that was not free on the first try. Uncontended acquisitions take the
+ * tryLock fast path and never create an event.
+ */
+@Name("lae.VectorLockWait")
+@Label("Vector Lock Wait")
+@Description("A thread waited for a SharedVector read or write lock")
+@Category({"Linear Algebra Engine", "Memory"})
+@StackTrace(true)
+@Threshold("1 ms")
+class VectorLockWaitEvent extends Event {
+
+    @Label("Write")
+    boolean write;
+
+    @Label("Lock Order")
+    @Description("The vector's position in the global lock order")
+    long lockOrder;
+
+    @Label("Length")
+    int length;
+}
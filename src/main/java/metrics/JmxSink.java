@@ -0,0 +1,132 @@
+package metrics;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Exposes a registry as a read-only MBean, lae:type=Metrics by default, with one attribute per
+ * flattened metric (see MetricsRegistry.flatten). The attributes are read live, so publish()
+ * only has to register the MBean once, later calls do nothing.
+ */
+public class JmxSink implements MetricsSink {
+
+    public static final String DEFAULT_NAME = "lae:type=Metrics";
+
+    private final ObjectName name;
+    private volatile boolean registered = false;
+
+    public JmxSink() {
+        this(DEFAULT_NAME);
+    }
+
+    public JmxSink(String objectName) {
+        try {
+            this.name = new ObjectName(objectName);
+        } catch (JMException e) {
+            throw new IllegalArgumentException("Invalid MBean name: " + objectName, e);
+        }
+    }
+
+    public ObjectName getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized void publish(MetricsRegistry registry) throws IOException {
+        if (registered) {
+            return;
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            server.registerMBean(new RegistryMBean(registry), name);
+        } catch (InstanceAlreadyExistsException e) {
+            //another sink of the same name already serves a registry
+            throw new IOException("MBean " + name + " is already registered", e);
+        } catch (JMException e) {
+            throw new IOException("Failed to register MBean " + name, e);
+        }
+        registered = true;
+    }
+
+    // unregisters the MBean if this sink registered it
+    public synchronized void unregister() {
+        if (!registered) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            //already gone
+        }
+        registered = false;
+    }
+
+    private static class RegistryMBean implements DynamicMBean {
+        private final MetricsRegistry registry;
+
+        RegistryMBean(MetricsRegistry registry) {
+            this.registry = registry;
+        }
+
+        @Override
+        public Object getAttribute(String attribute) throws AttributeNotFoundException {
+            Number value = registry.flatten().get(attribute);
+            if (value == null) {
+                throw new AttributeNotFoundException("No metric named " + attribute);
+            }
+            return value;
+        }
+
+        @Override
+        public AttributeList getAttributes(String[] attributes) {
+            Map<String, Number> values = registry.flatten();
+            AttributeList list = new AttributeList();
+            for (String attribute : attributes) {
+                if (values.containsKey(attribute)) {
+                    list.add(new Attribute(attribute, values.get(attribute)));
+                }
+            }
+            return list;
+        }
+
+        @Override
+        public void setAttribute(Attribute attribute) {
+            throw new UnsupportedOperationException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(String actionName, Object[] params, String[] signature) {
+            throw new UnsupportedOperationException("Metrics have no operations");
+        }
+
+        // built on every call, metrics created since the last call show up as new attributes
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            Map<String, Number> values = registry.flatten();
+            MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[values.size()];
+            int i = 0;
+            for (Map.Entry<String, Number> entry : values.entrySet()) {
+                attributes[i++] = new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(),
+                    entry.getKey(), true, false, false);
+            }
+            return new MBeanInfo(getClass().getName(), "Linear algebra engine metrics", attributes, null, null, null);
+        }
+    }
+}
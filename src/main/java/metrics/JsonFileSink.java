@@ -0,0 +1,42 @@
+package metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * Writes the registry's snapshot() as a JSON file, replacing it on every publish.
+ */
+public class JsonFileSink implements MetricsSink {
+
+    private static final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    private final Path path;
+
+    public JsonFileSink(Path path) {
+        if (path == null) {
+            throw new NullPointerException("Path is null");
+        }
+        this.path = path;
+    }
+
+    // the metrics file of an output file, written next to it: out.json gets out.metrics.json
+    public static JsonFileSink nextTo(String outputFilePath) {
+        Path output = Path.of(outputFilePath);
+        String name = output.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        return new JsonFileSink(output.resolveSibling(base + ".metrics.json"));
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    @Override
+    public void publish(MetricsRegistry registry) throws IOException {
+        mapper.writeValue(path.toFile(), registry.snapshot());
+    }
+}
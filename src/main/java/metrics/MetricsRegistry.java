@@ -0,0 +1,133 @@
+package metrics;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Named counters, histograms and timers, created on first use and kept for the life of the
+ * registry, so hot paths can hold on to them. Names are dotted, e.g. node.MULTIPLY.latency.
+ * The engine and the matrices record into the global registry, and the sinks added to a
+ * registry get its contents on publish(): a JSON file, the JMX MBean, or anything else.
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private final List<MetricsSink> sinks = new CopyOnWriteArrayList<>();
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public Histogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, key -> new Timer());
+    }
+
+    /**
+     * Clears every metric in place, the ones handed out stay registered.
+     * Values recorded while it runs may be partly kept.
+     */
+    public void reset() {
+        counters.values().forEach(Counter::reset);
+        histograms.values().forEach(Histogram::reset);
+        timers.values().forEach(Timer::reset);
+    }
+
+    public void addSink(MetricsSink sink) {
+        if (sink == null) {
+            throw new NullPointerException("Sink is null");
+        }
+        sinks.add(sink);
+    }
+
+    public void removeSink(MetricsSink sink) {
+        sinks.remove(sink);
+    }
+
+    // hands the current metrics to every sink, the first failure is thrown after all sinks ran
+    public void publish() throws IOException {
+        IOException failure = null;
+        for (MetricsSink sink : sinks) {
+            try {
+                sink.publish(this);
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * The metrics as nested maps, sorted by name: counters map to their value, histograms to
+     * count, mean, p50, p90, p99 and max, timers to the same in microseconds plus totalMillis.
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        Map<String, Object> counterValues = new TreeMap<>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.get()));
+        Map<String, Object> histogramValues = new TreeMap<>();
+        histograms.forEach((name, histogram) -> histogramValues.put(name, summarize(histogram, "")));
+        Map<String, Object> timerValues = new TreeMap<>();
+        timers.forEach((name, timer) -> {
+            Map<String, Object> summary = summarize(timer.getHistogram(), "Micros");
+            summary.put("totalMillis", timer.getTotalNanos() / 1e6);
+            timerValues.put(name, summary);
+        });
+        snapshot.put("counters", counterValues);
+        snapshot.put("histograms", histogramValues);
+        snapshot.put("timers", timerValues);
+        return snapshot;
+    }
+
+    /**
+     * The same values as snapshot() under flat names, e.g. timers.node.ADD.latency.p99Micros,
+     * for sinks that only take scalar attributes.
+     */
+    public Map<String, Number> flatten() {
+        Map<String, Number> flat = new TreeMap<>();
+        flatten("", snapshot(), flat);
+        return flat;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void flatten(String prefix, Map<String, Object> values, Map<String, Number> flat) {
+        values.forEach((name, value) -> {
+            if (value instanceof Map) {
+                flatten(prefix + name + ".", (Map<String, Object>) value, flat);
+            } else {
+                flat.put(prefix + name, (Number) value);
+            }
+        });
+    }
+
+    private static Map<String, Object> summarize(Histogram histogram, String unit) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", histogram.getCount());
+        summary.put("mean" + unit, histogram.getMean());
+        summary.put("p50" + unit, histogram.getPercentile(50));
+        summary.put("p90" + unit, histogram.getPercentile(90));
+        summary.put("p99" + unit, histogram.getPercentile(99));
+        summary.put("max" + unit, histogram.getMax());
+        return summary;
+    }
+}
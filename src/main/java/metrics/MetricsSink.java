@@ -0,0 +1,11 @@
+package metrics;
+
+import java.io.IOException;
+
+/**
+ * Receives the contents of a MetricsRegistry when it is published, e.g. at the end of a run.
+ */
+@FunctionalInterface
+public interface MetricsSink {
+    void publish(MetricsRegistry registry) throws IOException;
+}
@@ -0,0 +1,46 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Durations measured with System.nanoTime(). The distribution is kept in microseconds,
+ * the total in nanoseconds so that many short events still add up exactly.
+ */
+public class Timer {
+
+    private final Histogram micros = new Histogram();
+    private final LongAdder totalNanos = new LongAdder();
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        micros.record(nanos / 1000);
+        totalNanos.add(nanos);
+    }
+
+    // records the time elapsed since start, a System.nanoTime() value, and returns the elapsed nanos
+    public long recordSince(long start) {
+        long elapsed = System.nanoTime() - start;
+        record(elapsed);
+        return elapsed;
+    }
+
+    public long getCount() {
+        return micros.getCount();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    // the distribution in microseconds
+    public Histogram getHistogram() {
+        return micros;
+    }
+
+    public void reset() {
+        micros.reset();
+        totalNanos.reset();
+    }
+}
@@ -1,12 +1,21 @@
 package parser;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+
+import memory.SharedMatrix;
+import memory.SparseMatrix;
 
 public class ComputationNode {
 
     private ComputationNodeType nodeType;
     private List<ComputationNode> children = null;
     private double[][] matrix = null; // only used for MATRIX nodes
+    private SharedMatrix computed = null; // result kept in engine layout, only used for resolved MATRIX nodes
+    private SparseMatrix sparse = null; // result kept compressed, instead of computed, when it is mostly zeros
 
     public ComputationNode(String operatorStr, List<ComputationNode> children) throws IllegalArgumentException {
         this.nodeType = mapOperator(operatorStr);
@@ -46,6 +55,16 @@ public class ComputationNode {
         return children;
     }
 
+    /**
+     * Replaces the operands of this operator node, used by planning passes that restructure the tree.
+     */
+    public void setChildren(List<ComputationNode> children) {
+        if (nodeType == ComputationNodeType.MATRIX) {
+            throw new IllegalStateException("A matrix node has no operands.");
+        }
+        this.children = children;
+    }
+
     /**
      * Recursively finds the first resolvable node in the tree.
      * A resolvable node is defined as a node that is not of type MATRIX,
@@ -66,18 +85,56 @@ public class ComputationNode {
         return this;
     }
 
+    /**
+     * Recursively collects every resolvable node in the tree.
+     * These nodes do not depend on each other, so they can be computed at the same time.
+     */
+    public List<ComputationNode> findAllResolvable() {
+        List<ComputationNode> ready = new ArrayList<>();
+        //a node shared by several parents is reported once
+        collectResolvable(ready, Collections.newSetFromMap(new IdentityHashMap<>()));
+        return ready;
+    }
+
+    // returns true if this node is already a matrix
+    private boolean collectResolvable(List<ComputationNode> ready, Set<ComputationNode> visited) {
+        if (nodeType == ComputationNodeType.MATRIX) {
+            return true;
+        }
+        if (!visited.add(this)) {
+            return false;
+        }
+        boolean childrenReady = true;
+        for (ComputationNode child : children) {
+            //every child is visited, so ready nodes in other subtrees are found too
+            if (!child.collectResolvable(ready, visited)) {
+                childrenReady = false;
+            }
+        }
+        if (childrenReady) {
+            ready.add(this);
+        }
+        return false;
+    }
+
     /**
      * Restructures the tree to ensure that operations with more than two operands
      * are nested in a left-associative manner.
      * For example, A + B + C becomes (A + B) + C.
      * Effectively, this converts n-ary operations (n > 2) into binary operations.
+     * The whole subtree is restructured, not only this node.
      */
     public void associativeNesting() {
-        if (children != null && children.size() > 2) {
+        if (children == null) {
+            return;
+        }
+        if (children.size() > 2) {
             ComputationNode lastChild = children.remove(children.size() - 1);
             ComputationNode newNode = new ComputationNode(nodeType, children);
             children = List.of(newNode, lastChild);
-            newNode.associativeNesting();
+        }
+        for (ComputationNode child : children) {
+            child.associativeNesting();
         }
     }
 
@@ -88,9 +145,54 @@ public class ComputationNode {
         this.nodeType = ComputationNodeType.MATRIX;
         this.children = null;
         this.matrix = matrix;
+        this.computed = null;
+        this.sparse = null;
+    }
+
+    /**
+     * Resolves this node with a result that stays in the engine's internal layout.
+     * The double[][] form is only built if getMatrix() is called.
+     */
+    public void resolve(SharedMatrix computed) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.children = null;
+        this.matrix = null;
+        this.computed = computed;
+        this.sparse = null;
+    }
+
+    /**
+     * Resolves this node with a result kept in compressed sparse form.
+     * The double[][] form is only built if getMatrix() is called.
+     */
+    public void resolve(SparseMatrix sparse) {
+        this.nodeType = ComputationNodeType.MATRIX;
+        this.children = null;
+        this.matrix = null;
+        this.computed = null;
+        this.sparse = sparse;
+    }
+
+    /**
+     * Returns the result in the engine's internal layout, or null if this node
+     * holds a plain double[][] (e.g. an input matrix).
+     */
+    public SharedMatrix getComputedMatrix() {
+        return computed;
+    }
+
+    // the result in sparse form, or null if this node holds a dense result or an input matrix
+    public SparseMatrix getComputedSparse() {
+        return sparse;
     }
 
     public double[][] getMatrix() {
+        if (matrix == null && computed != null) {
+            matrix = computed.readRowMajor();
+        }
+        if (matrix == null && sparse != null) {
+            matrix = sparse.toDense();
+        }
         if (matrix == null) {
             throw new IllegalStateException("This node does not contain a matrix.");
         }
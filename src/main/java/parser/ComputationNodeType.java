@@ -3,11 +3,15 @@ package parser;
 /**
  * Computation nodes hold either an operation to be applied, or a matrix (2D array).
  * Matrices are always leaf nodes, while operation nodes have children.
+ * MULTIPLY_ADD (A*B + C) and SUBTRACT (A + -(B)) are fused operations created by the
+ * engine's planner, they have no operator in the input format.
  */
 public enum ComputationNodeType {
     ADD,
     MULTIPLY,
     NEGATE,
     TRANSPOSE,
+    MULTIPLY_ADD,
+    SUBTRACT,
     MATRIX,
 }
\ No newline at end of file
@@ -1,8 +1,13 @@
 package parser;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.StreamReadFeature;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.File;
 import java.io.IOException;
@@ -12,8 +17,88 @@ import java.util.*;
 public class InputParser {
 
     private final ObjectMapper mapper = new ObjectMapper();
+    // the streaming path parses numbers with Jackson's fast double parser instead of Double.parseDouble
+    private final ObjectMapper streamingMapper = new ObjectMapper(
+        JsonFactory.builder().enable(StreamReadFeature.USE_FAST_DOUBLE_PARSER).build());
 
+    /**
+     * Parses the input file with Jackson's streaming token API.
+     * Numbers are written straight into the primitive matrix rows, no JsonNode tree is built.
+     */
     public ComputationNode parse(String inputPath) throws ParseException {
+        try (JsonParser parser = streamingMapper.createParser(new File(inputPath))) {
+            return parseStream(parser);
+        } catch (IOException e) {
+            throw new ParseException("Failed to read the input JSON file: " + e.getMessage(), 0);
+        } catch (ConsumedOperandsException e) {
+            //the operands were consumed, only a second read through the tree gives the full message
+            throw treeError(e, () -> parseTree(inputPath));
+        }
+    }
+
+    /**
+     * Parses one expression tree given as JSON text, e.g. one line of a batch file,
+     * with the same streaming path and error messages as parse().
+     */
+    public ComputationNode parseExpression(String json) throws ParseException {
+        try (JsonParser parser = streamingMapper.createParser(json)) {
+            return parseStream(parser);
+        } catch (IOException e) {
+            throw new ParseException("Failed to read the input JSON: " + e.getMessage(), 0);
+        } catch (ConsumedOperandsException e) {
+            throw treeError(e, () -> {
+                try {
+                    return parseJsonNode(mapper.readTree(json));
+                } catch (IOException readFailure) {
+                    throw e;
+                }
+            });
+        }
+    }
+
+    private interface TreeParse {
+        ComputationNode parse() throws ParseException;
+    }
+
+    // an invalid node whose operands the stream already consumed, so its message lacks them
+    private static final class ConsumedOperandsException extends ParseException {
+        private static final long serialVersionUID = 1L;
+
+        ConsumedOperandsException(String message) {
+            super(message, 0);
+        }
+    }
+
+    /**
+     * Error path of the streaming parser for a node without an operator: it is reported with
+     * its whole JSON text, operands included, but the stream has already consumed them.
+     * Only then is the input parsed again through the tree, and its message is the one
+     * reported, as before streaming. Every other streaming error has its full message already.
+     * The streaming message is kept if the tree fails in another way or not at all.
+     */
+    private ParseException treeError(ParseException streaming, TreeParse tree) {
+        try {
+            tree.parse();
+        } catch (ParseException e) {
+            return e;
+        } catch (RuntimeException e) {
+            //e.g. an unknown operator the stream never reached
+        }
+        return streaming;
+    }
+
+    private ComputationNode parseStream(JsonParser parser) throws IOException, ParseException {
+        if (parser.nextToken() == null) {
+            throw new ParseException("Invalid node structure: ", 0);
+        }
+        return parseStreamNode(parser);
+    }
+
+    /**
+     * Parses the input file through a full JsonNode tree.
+     * Kept as the reference path for tests and benchmarks of the streaming parser.
+     */
+    public ComputationNode parseTree(String inputPath) throws ParseException {
         try {
             File inputFile = new File(inputPath);
             JsonNode rootJsonNode = mapper.readTree(inputFile);
@@ -24,6 +109,119 @@ public class InputParser {
         }
     }
 
+    // parses the value at the parser's current token, and leaves the parser on its last token
+    private ComputationNode parseStreamNode(JsonParser parser) throws IOException, ParseException {
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            return parseStreamOperator(parser);
+        }
+        else if (token == JsonToken.START_ARRAY) {
+            return parseStreamMatrix(parser);
+        }
+        // a scalar is small, so it is read as a tree only to build the same message
+        else { throw new ParseException("Invalid node structure: " + parser.readValueAsTree(), 0); }
+    }
+
+    private ComputationNode parseStreamOperator(JsonParser parser) throws IOException, ParseException {
+        List<ComputationNode> operands = null;
+        // every field but the operands is small, they are kept as a tree to report an invalid node
+        ObjectNode fields = streamingMapper.createObjectNode();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (field.equals("operands")) {
+                if (value != JsonToken.START_ARRAY) {
+                    throw new ParseException("Invalid operands: " + parser.readValueAsTree(), 0);
+                }
+                operands = new ArrayList<>();
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    operands.add(parseStreamNode(parser));
+                }
+            }
+            else {
+                fields.set(field, parser.readValueAsTree());
+            }
+        }
+        if (!fields.has("operator") || operands == null) {
+            if (operands != null) {
+                throw new ConsumedOperandsException("Invalid node structure: " + fields.toString());
+            }
+            throw new ParseException("Invalid node structure: " + fields.toString(), 0);
+        }
+        return new ComputationNode(fields.get("operator").asText(), operands);
+    }
+
+    private ComputationNode parseStreamMatrix(JsonParser parser) throws IOException, ParseException {
+        JsonToken first = parser.nextToken();
+        if (first == JsonToken.END_ARRAY) {
+            throw new ParseException("Empty array cannot be parsed as DataNode.", 0);
+        }
+        // Check if it's a vector (1D array)
+        if (first.isNumeric()) {
+            throw new ParseException("Vectors (1D arrays) are not supported as standalone nodes.", 0);
+        }
+        // Otherwise, it's a matrix (2D array), the first row fixes the width
+        if (first != JsonToken.START_ARRAY) {
+            throw new ParseException("Invalid matrix row: " + parser.readValueAsTree(), 0);
+        }
+        List<double[]> rows = new ArrayList<>();
+        double[] firstRow = readFirstRow(parser);
+        int width = firstRow.length;
+        rows.add(firstRow);
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (parser.currentToken() != JsonToken.START_ARRAY) {
+                JsonNode rowJsonNode = parser.readValueAsTree();
+                if (rowJsonNode.size() != width) {
+                    throw new ParseException("Inconsistent row sizes in matrix.", 0);
+                }
+                throw new ParseException("Invalid matrix row: " + rowJsonNode.toString(), 0);
+            }
+            rows.add(readRow(parser, width));
+        }
+        return new ComputationNode(rows.toArray(new double[0][]));
+    }
+
+    // reads a row of unknown length into a growing buffer
+    private double[] readFirstRow(JsonParser parser) throws IOException {
+        double[] row = new double[16];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == row.length) {
+                row = Arrays.copyOf(row, size * 2);
+            }
+            row[size++] = readElement(parser);
+        }
+        return Arrays.copyOf(row, size);
+    }
+
+    // reads a row that must have exactly width elements
+    private double[] readRow(JsonParser parser, int width) throws IOException, ParseException {
+        double[] row = new double[width];
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            if (size == width) {
+                throw new ParseException("Inconsistent row sizes in matrix.", 0);
+            }
+            row[size++] = readElement(parser);
+        }
+        if (size != width) {
+            throw new ParseException("Inconsistent row sizes in matrix.", 0);
+        }
+        return row;
+    }
+
+    // same conversion as JsonNode.asDouble(), non-numeric elements become 0
+    private double readElement(JsonParser parser) throws IOException {
+        if (parser.currentToken() == JsonToken.VALUE_NUMBER_FLOAT || parser.currentToken() == JsonToken.VALUE_NUMBER_INT) {
+            return parser.getDoubleValue();
+        }
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+            return 0.0;
+        }
+        return parser.getValueAsDouble(0.0);
+    }
+
     private ComputationNode parseJsonNode(JsonNode jsonNode) throws ParseException {
         if (jsonNode.has("operator") && jsonNode.has("operands")) {
             String operatorStr = jsonNode.get("operator").asText();
@@ -65,4 +263,4 @@ public class InputParser {
         else { throw new ParseException("Invalid node structure: " + jsonNode.toString(), 0); }
     }
 
-}
\ No newline at end of file
+}
@@ -1,13 +1,28 @@
 package parser;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.StreamWriteFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
 public class OutputWriter {
 
     private static final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    // compact output writes doubles with Jackson's fast double-to-text conversion
+    private static final JsonFactory compactFactory = JsonFactory.builder()
+        .enable(StreamWriteFeature.USE_FAST_DOUBLE_WRITER).build();
+    private static final ObjectMapper compactMapper = new ObjectMapper(compactFactory);
+    private static final int CHANNEL_BUFFER_SIZE = 1 << 16;
 
     public static class ResultMatrix {
         public double[][] result;
@@ -31,4 +46,160 @@ public class OutputWriter {
         mapper.writerWithDefaultPrettyPrinter().writeValue(file, new ErrorMessage(error));
     }
 
+    /**
+     * Writes the result in the same {"result": [...]} schema without whitespace,
+     * streaming the rows straight from the matrix instead of going through ResultMatrix.
+     */
+    public static void writeCompact(double[][] matrix, String filePath) throws IOException {
+        try (RowWriter rows = openRows(filePath)) {
+            for (double[] row : matrix) {
+                rows.writeRow(row);
+            }
+        }
+    }
+
+    /**
+     * Opens a compact result file whose rows are written one at a time, so the
+     * first rows can be written while later rows are still being computed.
+     */
+    public static RowWriter openRows(String filePath) throws IOException {
+        return new RowWriter(filePath);
+    }
+
+    /**
+     * Streams the rows of a result through a JsonGenerator into a buffered file channel.
+     * close() ends the result array and the object, and flushes the file.
+     */
+    public static class RowWriter implements AutoCloseable {
+        private final JsonGenerator generator;
+        private final char[] digits = new char[16]; // scratch buffer for whole numbers, filled from the end
+
+        private RowWriter(String filePath) throws IOException {
+            FileChannel channel = FileChannel.open(Paths.get(filePath),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            generator = compactFactory.createGenerator(
+                new BufferedOutputStream(Channels.newOutputStream(channel), CHANNEL_BUFFER_SIZE), JsonEncoding.UTF8);
+            generator.writeStartObject();
+            generator.writeFieldName("result");
+            generator.writeStartArray();
+        }
+
+        public void writeRow(double[] row) throws IOException {
+            writeRow(row, 0, row.length);
+        }
+
+        // writes length elements of row starting at offset as one row of the result
+        public void writeRow(double[] row, int offset, int length) throws IOException {
+            generator.writeStartArray(row, length);
+            for (int i = offset; i < offset + length; i++) {
+                writeElement(generator, digits, row[i]);
+            }
+            generator.writeEndArray();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                generator.writeEndArray();
+                generator.writeEndObject();
+            }
+            finally {
+                generator.close();
+            }
+        }
+    }
+
+    /**
+     * Opens a newline-delimited JSON file that gets one compact object per line,
+     * either {"result": [...]} or {"error": "..."} in the ErrorMessage shape.
+     */
+    public static LineWriter openLines(String filePath) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(filePath),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        return new LineWriter(Channels.newOutputStream(channel));
+    }
+
+    /**
+     * Same lines written to a stream, e.g. the responses of a socket connection.
+     * Lines are buffered until flush(), closing the writer closes the stream.
+     */
+    public static LineWriter openLines(OutputStream out) throws IOException {
+        return new LineWriter(out);
+    }
+
+    /**
+     * Writes the results of a batch, one line per expression, through one generator
+     * into a buffered stream. close() flushes and closes the stream.
+     */
+    public static class LineWriter implements AutoCloseable {
+        private final JsonGenerator generator;
+        private final char[] digits = new char[16]; // scratch buffer for whole numbers, filled from the end
+
+        private LineWriter(OutputStream out) throws IOException {
+            generator = compactFactory.createGenerator(new BufferedOutputStream(out, CHANNEL_BUFFER_SIZE), JsonEncoding.UTF8);
+            // every line ends with its own newline, no separator between root values
+            generator.setRootValueSeparator(null);
+        }
+
+        public void writeResult(double[][] matrix) throws IOException {
+            generator.writeStartObject();
+            generator.writeFieldName("result");
+            generator.writeStartArray();
+            for (double[] row : matrix) {
+                generator.writeStartArray(row, row.length);
+                for (double value : row) {
+                    writeElement(generator, digits, value);
+                }
+                generator.writeEndArray();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        public void writeError(String error) throws IOException {
+            writeValue(new ErrorMessage(error));
+        }
+
+        // writes any object Jackson can serialize as one line
+        public void writeValue(Object value) throws IOException {
+            compactMapper.writeValue(generator, value);
+            generator.writeRaw('\n');
+        }
+
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            generator.close();
+        }
+    }
+
+    /**
+     * Whole numbers below 1e7 are formatted here as digits plus ".0", exactly what
+     * Double.toString prints for them, without creating a String per element.
+     * Every other value goes through the generator's double writer.
+     */
+    private static void writeElement(JsonGenerator generator, char[] digits, double value) throws IOException {
+        long whole = (long) value;
+        if (whole != value || Math.abs(whole) >= 10_000_000L || (whole == 0 && 1 / value < 0)) {
+            generator.writeNumber(value);
+            return;
+        }
+        int end = digits.length;
+        digits[--end] = '0';
+        digits[--end] = '.';
+        long rest = Math.abs(whole);
+        do {
+            digits[--end] = (char) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        if (whole < 0) {
+            digits[--end] = '-';
+        }
+        generator.writeRawValue(digits, end, digits.length - end);
+    }
+
 }
@@ -0,0 +1,32 @@
+package scheduling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A submitter blocked until a worker was idle (HANDOFF mode), which otherwise only shows up
+ * as a thread parked in PriorityBlockingQueue.take.
+ */
+@Name("lae.HandoffWait")
+@Label("Handoff Wait")
+@Description("A submitting thread waited for an idle worker")
+@Category({"Linear Algebra Engine", "Scheduling"})
+@StackTrace(true)
+@Threshold("1 ms")
+class HandoffWaitEvent extends Event {
+
+    @Label("Worker")
+    @Description("The worker the task was handed to")
+    int workerId;
+
+    @Label("Fatigue")
+    double fatigue;
+
+    @Label("Tasks In Flight")
+    int inFlight;
+}
@@ -0,0 +1,16 @@
+package scheduling;
+
+/**
+ * How the engine's executor hands tasks to its workers.
+ * HANDOFF: the submitter waits for the least tired idle worker and hands it one task
+ * through its single-slot queue.
+ * WORK_STEALING: every worker owns a deque, submitting never blocks, and a worker that runs
+ * out of tasks steals from the most tired worker that still has some.
+ * VIRTUAL_THREADS: no pool and no fatigue, every task starts a virtual thread and a semaphore
+ * bounds how many run at once, see VirtualThreadExecutor.
+ */
+public enum SchedulingMode {
+    HANDOFF,
+    WORK_STEALING,
+    VIRTUAL_THREADS
+}
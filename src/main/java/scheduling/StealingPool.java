@@ -0,0 +1,94 @@
+package scheduling;
+
+import java.util.Arrays;
+import java.util.concurrent.Semaphore;
+
+/**
+ * The workers of a WORK_STEALING TiredExecutor and what they share: one permit per task
+ * waiting in some deque, plus one per worker at shutdown. The workers take their tasks from
+ * here, so the executor never hands itself to them while it is still being constructed.
+ */
+final class StealingPool {
+
+    private final StealingTiredThread[] workers;
+    private final Semaphore queuedTasks = new Semaphore(0);
+    private volatile boolean shuttingDown = false;
+
+    StealingPool(int numThreads) {
+        workers = new StealingTiredThread[numThreads];
+        for (int i = 0; i < numThreads; i++) {
+            workers[i] = new StealingTiredThread(i, 0.5+ Math.random(), this);
+        }
+    }
+
+    StealingTiredThread[] workers() {
+        return workers;
+    }
+
+    boolean isShuttingDown() {
+        return shuttingDown;
+    }
+
+    // queues an already wrapped task on worker's deque and wakes a worker for it
+    void push(StealingTiredThread worker, Runnable wrappedTask) {
+        worker.push(wrappedTask);
+        queuedTasks.release();
+    }
+
+    //Wake every worker, each one exits once it finds all deques empty
+    void shutdown() {
+        shuttingDown = true;
+        queuedTasks.release(workers.length);
+    }
+
+    /**
+     * Blocks until a task is queued, then takes one from the worker's own deque,
+     * or steals from another worker, most tired first. Returns null once shutting down
+     * and no task is left anywhere.
+     */
+    Runnable takeTask(StealingTiredThread self) throws InterruptedException {
+        queuedTasks.acquire();
+        // sorted once per call, the first time self's own deque is empty, and kept while spinning
+        StealingTiredThread[] victims = null;
+        while (true) {
+            Runnable task = self.pollOwn();
+            if (task != null) {
+                return task;
+            }
+            if (victims == null) {
+                // the most tired victims should shed their work first
+                victims = byFatigue(true);
+            }
+            for (StealingTiredThread victim : victims) {
+                if (victim != self && victim.hasQueuedTasks()) {
+                    task = victim.steal();
+                    if (task != null) {
+                        return task;
+                    }
+                }
+            }
+            if (shuttingDown) {
+                return null;
+            }
+            // our permit's task was taken by a thief that holds another permit, it is still queued somewhere
+            Thread.onSpinWait();
+        }
+    }
+
+    // snapshot of the workers sorted by fatigue, ascending or descending
+    StealingTiredThread[] byFatigue(boolean mostTiredFirst) {
+        // fatigue is read once per worker, it keeps changing while we sort
+        double[] fatigue = new double[workers.length];
+        Integer[] order = new Integer[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            fatigue[i] = workers[i].getFatigue();
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> mostTiredFirst ? Double.compare(fatigue[b], fatigue[a]) : Double.compare(fatigue[a], fatigue[b]));
+        StealingTiredThread[] sorted = new StealingTiredThread[workers.length];
+        for (int i = 0; i < order.length; i++) {
+            sorted[i] = workers[order[i]];
+        }
+        return sorted;
+    }
+}
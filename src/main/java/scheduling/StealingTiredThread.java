@@ -0,0 +1,81 @@
+package scheduling;
+
+import java.util.concurrent.ConcurrentLinkedDeque;
+
+/**
+ * A TiredThread for SchedulingMode.WORK_STEALING.
+ * Instead of a single-slot handoff it owns a deque: the owner takes from the tail (most recently
+ * pushed, still warm in cache) and thieves take from the head. Finding the next task, including
+ * stealing, is delegated to the pool, which knows every worker's fatigue.
+ */
+public class StealingTiredThread extends TiredThread {
+
+    private final ConcurrentLinkedDeque<Runnable> deque = new ConcurrentLinkedDeque<>();
+    private final StealingPool pool;
+
+    StealingTiredThread(int id, double fatigueFactor, StealingPool pool) {
+        super(id, fatigueFactor);
+        this.pool = pool;
+    }
+
+    /** Queues a task on this worker's deque, never blocks. */
+    void push(Runnable task) {
+        deque.addLast(task);
+    }
+
+    /** Owner side: takes the most recently pushed task, or null. */
+    Runnable pollOwn() {
+        return deque.pollLast();
+    }
+
+    /** Thief side: takes the oldest task, or null. */
+    Runnable steal() {
+        return deque.pollFirst();
+    }
+
+    boolean hasQueuedTasks() {
+        return !deque.isEmpty();
+    }
+
+    @Override
+    public void newTask(Runnable task) {
+        throw new UnsupportedOperationException("Work-stealing workers receive tasks through the executor");
+    }
+
+    @Override
+    public void shutdown() {
+        // the executor stops all stealing workers at once, see StealingPool.shutdown
+    }
+
+    @Override
+    public void run() {
+        while(true){
+            // thread is now idle, record start time
+            long idleStart = System.nanoTime();
+            Runnable task;
+            try {
+                // blocks until some deque holds a task, null means the executor shut down
+                task = pool.takeTask(this);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            addTimeIdle(System.nanoTime() - idleStart);
+            if(task == null){
+                return;
+            }
+            setBusy(true);
+            try {
+                task.run();
+            }
+            catch (Exception e) {
+                // math failed, log and continue
+                System.out.println("worker " + getWorkerId() + " encountered an exception while executing a task: " + e.getMessage());
+            }
+            finally {
+                setBusy(false);
+            }
+        }
+    }
+}
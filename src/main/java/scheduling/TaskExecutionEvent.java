@@ -0,0 +1,31 @@
+package scheduling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One task run by a worker, committed by the executor's task wrapper.
+ * No threshold: tasks are sized by TaskGranularity, so there are a few per worker and node.
+ */
+@Name("lae.TaskExecution")
+@Label("Task Execution")
+@Description("A task run by a TiredExecutor worker")
+@Category({"Linear Algebra Engine", "Scheduling"})
+@StackTrace(false)
+class TaskExecutionEvent extends Event {
+
+    @Label("Worker")
+    int workerId;
+
+    @Label("Fatigue")
+    @Description("Fatigue of the worker once charged for the task")
+    double fatigue;
+
+    @Label("Stolen")
+    @Description("WORK_STEALING only: the task was taken from another worker's deque")
+    boolean stolen;
+}
@@ -0,0 +1,35 @@
+package scheduling;
+
+/**
+ * What the engine needs from an executor: TiredExecutor runs the tasks on a fixed pool of
+ * fatigue-scheduled platform threads, VirtualThreadExecutor on one virtual thread per task.
+ */
+public interface TaskExecutor {
+
+    void submit(Runnable task);
+
+    // submits the tasks and waits until no task at all is in flight
+    void submitAll(Iterable<Runnable> tasks);
+
+    // submits the tasks and waits until these tasks are done, other submitters' tasks may still run
+    void submitBatch(Iterable<Runnable> tasks);
+
+    void shutdown() throws InterruptedException;
+
+    // how many tasks run at once, used to size the tasks
+    int getWorkerCount();
+
+    String getWorkerReport();
+
+    Snapshot snapshot();
+
+    /**
+     * Same report as getWorkerReport, for the work done since the snapshot was taken.
+     * The snapshot must come from this executor.
+     */
+    String getWorkerReport(Snapshot since);
+
+    /** The executor's counters at one point in time, see getWorkerReport(Snapshot). */
+    interface Snapshot {
+    }
+}
@@ -3,30 +3,87 @@ package scheduling;
 import java.util.concurrent.PriorityBlockingQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
-public class TiredExecutor {
+import tracing.Tracer;
+
+public class TiredExecutor implements TaskExecutor {
 
     private final TiredThread[] workers;
     private final PriorityBlockingQueue<TiredThread> idleMinHeap = new PriorityBlockingQueue<>();
     private final AtomicInteger inFlight = new AtomicInteger(0);
+    private final SchedulingMode mode;
+
+    private final StealingPool stealing; // WORK_STEALING only, null otherwise
 
     public TiredExecutor(int numThreads) {
+        this(numThreads, SchedulingMode.HANDOFF);
+    }
+
+    public TiredExecutor(int numThreads, SchedulingMode mode) {
         // Done
-        workers = new TiredThread[numThreads];
-        for (int i = 0; i < numThreads; i++) {
-            workers[i] = new TiredThread(i, 0.5+ Math.random());
-            workers[i].start();
-            idleMinHeap.add(workers[i]);
+        if (mode == null) {
+            throw new IllegalArgumentException("Scheduling mode cannot be null");
+        }
+        if (mode == SchedulingMode.VIRTUAL_THREADS) {
+            throw new IllegalArgumentException("Virtual threads run on a VirtualThreadExecutor");
+        }
+        this.mode = mode;
+        if (mode == SchedulingMode.WORK_STEALING) {
+            //the pool owns what the stealing workers share, so they never see a half-built executor
+            stealing = new StealingPool(numThreads);
+            workers = stealing.workers();
+        }
+        else {
+            stealing = null;
+            workers = new TiredThread[numThreads];
+            for (int i = 0; i < numThreads; i++) {
+                workers[i] = new TiredThread(i, 0.5+ Math.random());
+                idleMinHeap.add(workers[i]);
+            }
+        }
+        for (TiredThread worker : workers) {
+            worker.start();
         }
     }
 
+    public SchedulingMode getMode() {
+        return mode;
+    }
+
+    @Override
+    public int getWorkerCount() {
+        return workers.length;
+    }
+
+    @Override
     public void submit(Runnable task) {
         // Done
+        submit(task, null);
+    }
+
+    // batch, if not null, is counted down once the task is done, after the worker is idle again
+    private void submit(Runnable task, AtomicInteger batch) {
+        if (mode == SchedulingMode.WORK_STEALING) {
+            //Never blocks: the task goes to the least tired worker's deque
+            enqueue(leastTired(), task, batch);
+            return;
+        }
         try{
-            inFlight.incrementAndGet();
+            int waiting = inFlight.incrementAndGet();
+            HandoffWaitEvent wait = new HandoffWaitEvent();
+            wait.begin();
             TiredThread curWorker = idleMinHeap.take();
+            wait.end();
+            if (wait.shouldCommit()) {
+                wait.workerId = curWorker.getWorkerId();
+                wait.fatigue = curWorker.getFatigue();
+                wait.inFlight = waiting;
+                wait.commit();
+            }
             
             // Wrap the task to update worker status and inFlight counter
             Runnable wrappedTask = () -> {
+                TaskExecutionEvent event = new TaskExecutionEvent();
+                event.begin();
                 long startTime = System.nanoTime();
                 try{
                     task.run(); // Execute the original task
@@ -36,6 +93,7 @@ public class TiredExecutor {
                     // fatigue is calculated correctly before reinsertion
                     long jobDuration = System.nanoTime() -startTime;
                     curWorker.addTimeUsed(jobDuration);
+                    commitTask(event, curWorker, false);
 
                     idleMinHeap.add(curWorker); // Mark worker as idle again
                     if(inFlight.decrementAndGet() == 0){ //it was the last task
@@ -43,22 +101,25 @@ public class TiredExecutor {
                             inFlight.notifyAll();
                         }
                     }
+                    countDown(batch);
                 }
             };
             curWorker.newTask(wrappedTask);
         }
         catch (InterruptedException e){ //The task was interrupted so we revert the inFlight increment
             inFlight.decrementAndGet();
+            countDown(batch);
             Thread.currentThread().interrupt();
         }
     
     }
 
+    @Override
     public void submitAll(Iterable<Runnable> tasks) {
         // Done: submit tasks one by one and wait until all finish
-        for (Runnable task : tasks){
-            submit(task);
-        }
+        long dealStart = System.nanoTime();
+        deal(tasks, null);
+        long waitStart = System.nanoTime();
         synchronized (inFlight){
             try{
                 //We use while and not if to avoid "false alaram" wakeups
@@ -71,31 +132,217 @@ public class TiredExecutor {
             }
             
         }
+        traceBarrier(dealStart, waitStart);
     }
 
+    /**
+     * Submits the tasks and waits until these tasks finish, unlike submitAll which waits
+     * until no task at all is in flight. Several threads can each run their own batch
+     * this way and return as soon as their own tasks are done.
+     */
+    @Override
+    public void submitBatch(Iterable<Runnable> tasks) {
+        //the submitting thread holds one count until every task is handed out
+        AtomicInteger batch = new AtomicInteger(1);
+        long dealStart = System.nanoTime();
+        deal(tasks, batch);
+        countDown(batch);
+        long waitStart = System.nanoTime();
+        synchronized (batch){
+            try{
+                while(batch.get() > 0){
+                     batch.wait();
+                }
+            }
+            catch(InterruptedException exception){
+                Thread.currentThread().interrupt();
+            }
+        }
+        traceBarrier(dealStart, waitStart);
+    }
+
+    // traces handing the tasks out and then waiting for them, on the submitting thread
+    static void traceBarrier(long dealStart, long waitStart) {
+        Tracer tracer = Tracer.global();
+        if (tracer.isEnabled()) {
+            tracer.span("executor", "submit", dealStart, waitStart);
+            tracer.span("executor", "barrier", waitStart, System.nanoTime());
+        }
+    }
+
+    // hands every task to a worker, counting each one on batch if not null
+    private void deal(Iterable<Runnable> tasks, AtomicInteger batch) {
+        if (mode == SchedulingMode.WORK_STEALING) {
+            //Enqueue the whole batch up front, dealing tasks out from the least tired worker on.
+            //Stealing evens out whatever imbalance is left.
+            StealingTiredThread[] byFatigue = stealing.byFatigue(false);
+            int next = 0;
+            for (Runnable task : tasks){
+                if (batch != null) {
+                    batch.incrementAndGet();
+                }
+                enqueue(byFatigue[next], task, batch);
+                next = (next + 1) % byFatigue.length;
+            }
+        }
+        else {
+            for (Runnable task : tasks){
+                if (batch != null) {
+                    batch.incrementAndGet();
+                }
+                submit(task, batch);
+            }
+        }
+    }
+
+    // ends a task's JFR event, the fatigue already includes the task
+    private static void commitTask(TaskExecutionEvent event, TiredThread worker, boolean stolen) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.workerId = worker.getWorkerId();
+            event.fatigue = worker.getFatigue();
+            event.stolen = stolen;
+            event.commit();
+        }
+    }
+
+    private static void countDown(AtomicInteger batch) {
+        if (batch != null && batch.decrementAndGet() == 0) {
+            synchronized (batch) {
+                batch.notifyAll();
+            }
+        }
+    }
+
+    @Override
     public void shutdown() throws InterruptedException {
         // Done
+        if (mode == SchedulingMode.WORK_STEALING) {
+            stealing.shutdown();
+            return;
+        }
         for (TiredThread worker : workers) {
             worker.shutdown();
 
         }
     }
 
+    // WORK_STEALING: wraps task like submit does and queues it on worker's deque
+    private void enqueue(StealingTiredThread worker, Runnable task, AtomicInteger batch) {
+        if (stealing.isShuttingDown()) {
+            countDown(batch);
+            throw new IllegalStateException("Executor is shut down");
+        }
+        if (task == null) {
+            countDown(batch);
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        inFlight.incrementAndGet();
+        Runnable wrappedTask = () -> {
+            TaskExecutionEvent event = new TaskExecutionEvent();
+            event.begin();
+            long startTime = System.nanoTime();
+            try{
+                task.run();
+            }
+            finally{
+                // whoever runs the task, owner or thief, is charged for it before inFlight drops
+                long jobDuration = System.nanoTime() - startTime;
+                TiredThread runner = (TiredThread) Thread.currentThread();
+                runner.addTimeUsed(jobDuration);
+                commitTask(event, runner, runner != worker);
+                if(inFlight.decrementAndGet() == 0){ //it was the last task
+                    synchronized (inFlight) {
+                        inFlight.notifyAll();
+                    }
+                }
+                countDown(batch);
+            }
+        };
+        stealing.push(worker, wrappedTask);
+    }
+
+    private StealingTiredThread leastTired() {
+        return stealing.byFatigue(false)[0];
+    }
+
+    /**
+     * Worker counters at one point in time, to report the work done since then.
+     */
+    public static final class WorkerSnapshot implements TaskExecutor.Snapshot {
+        private final long[] timeUsed;
+        private final long[] timeIdle;
+        private final double[] fatigue;
+
+        private WorkerSnapshot(TiredThread[] workers) {
+            timeUsed = new long[workers.length];
+            timeIdle = new long[workers.length];
+            fatigue = new double[workers.length];
+            for (int i = 0; i < workers.length; i++) {
+                timeUsed[i] = workers[i].getTimeUsed();
+                timeIdle[i] = workers[i].getTimeIdle();
+                fatigue[i] = workers[i].getFatigue();
+            }
+        }
+    }
+
+    @Override
+    public WorkerSnapshot snapshot() {
+        return new WorkerSnapshot(workers);
+    }
+
+    @Override
     public synchronized String getWorkerReport() {
         // Done: return readable statistics for each worker
+        long[] used = new long[workers.length];
+        long[] idle = new long[workers.length];
+        double[] fatigue = new double[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            used[i] = workers[i].getTimeUsed();
+            idle[i] = workers[i].getTimeIdle();
+            fatigue[i] = workers[i].getFatigue();
+        }
+        return formatReport(used, idle, fatigue);
+    }
+
+    /**
+     * Same report as getWorkerReport, for the work done since the snapshot was taken.
+     * Idle time is recorded when a worker picks up its next task, so a wait that spans
+     * the snapshot is counted after it.
+     */
+    @Override
+    public synchronized String getWorkerReport(TaskExecutor.Snapshot snapshot) {
+        if (snapshot == null) {
+            throw new NullPointerException("Snapshot is null");
+        }
+        if (!(snapshot instanceof WorkerSnapshot since) || since.timeUsed.length != workers.length) {
+            throw new IllegalArgumentException("Snapshot was not taken from this executor");
+        }
+        long[] used = new long[workers.length];
+        long[] idle = new long[workers.length];
+        double[] fatigue = new double[workers.length];
+        for (int i = 0; i < workers.length; i++) {
+            used[i] = workers[i].getTimeUsed() - since.timeUsed[i];
+            idle[i] = workers[i].getTimeIdle() - since.timeIdle[i];
+            fatigue[i] = workers[i].getFatigue() - since.fatigue[i];
+        }
+        return formatReport(used, idle, fatigue);
+    }
+
+    private String formatReport(long[] used, long[] idle, double[] fatigue) {
         String str ="";
         double sumFatigue = 0.0;
-        for (TiredThread worker : workers) {
-            str += "Worker "+ worker.getWorkerId() +" Work: "+ worker.getTimeUsed() + 
-            " Idle: "+ worker.getTimeIdle() + " Fatigue: "+ worker.getFatigue() +"\n";
+        for (int i = 0; i < workers.length; i++) {
+            str += "Worker "+ workers[i].getWorkerId() +" Work: "+ used[i] + 
+            " Idle: "+ idle[i] + " Fatigue: "+ fatigue[i] +"\n";
         
-            sumFatigue += worker.getFatigue();
+            sumFatigue += fatigue[i];
         }
         double AverageFatigue = sumFatigue / workers.length;
         double fairnessFactor = 0.0;
 
-        for (TiredThread worker : workers) {
-            fairnessFactor += Math.pow(worker.getFatigue() - (AverageFatigue), 2);
+        for (int i = 0; i < workers.length; i++) {
+            fairnessFactor += Math.pow(fatigue[i] - (AverageFatigue), 2);
         }
 
         str += "Fairness Factor: " + fairnessFactor + "\n";
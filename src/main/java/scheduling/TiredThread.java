@@ -150,4 +150,13 @@ public class TiredThread extends Thread implements Comparable<TiredThread> {
     public void addTimeUsed(long time){
         this.timeUsed.addAndGet(time);
     }
+
+    // used by worker loops that measure their own idle time, see StealingTiredThread
+    void addTimeIdle(long time){
+        this.timeIdle.addAndGet(time);
+    }
+
+    void setBusy(boolean isBusy){
+        this.busy.set(isBusy);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,231 @@
+package scheduling;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Runs every task on a virtual thread of its own, with the TiredExecutor contract.
+ * There is no pool: submitting never blocks, and a semaphore of maxConcurrent permits bounds how
+ * many tasks run at once. A task that blocks on I/O or a lock parks its virtual thread and
+ * frees its carrier, unlike a TiredThread, which stays taken for as long as its task blocks.
+ * There is no fatigue either, the report sums the work of all tasks instead of per worker.
+ * The first task of a submitAll or submitBatch call that throws has its exception rethrown
+ * by that call, once every task is done; the other tasks still run.
+ */
+public class VirtualThreadExecutor implements TaskExecutor {
+
+    private final int maxConcurrent;
+    private final Semaphore permits;
+    private final ThreadFactory threads = Thread.ofVirtual().name("virtual-", 0).factory();
+    private final AtomicInteger inFlight = new AtomicInteger(0);
+    private volatile boolean shuttingDown = false;
+
+    private final AtomicLong tasksRun = new AtomicLong(0);
+    private final AtomicLong timeUsed = new AtomicLong(0); // total time spent executing tasks
+    private final AtomicLong timeWaiting = new AtomicLong(0); // total time tasks waited for a permit
+    private final AtomicInteger running = new AtomicInteger(0);
+    private final LongAccumulator peakRunning = new LongAccumulator(Math::max, 0);
+
+    public VirtualThreadExecutor(int maxConcurrent) {
+        if (maxConcurrent < 1) {
+            throw new IllegalArgumentException("At least one task must be able to run");
+        }
+        this.maxConcurrent = maxConcurrent;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    @Override
+    public int getWorkerCount() {
+        return maxConcurrent;
+    }
+
+    @Override
+    public void submit(Runnable task) {
+        submit(task, null);
+    }
+
+    // a batch's count of unfinished tasks, with the first exception one of them threw
+    private static final class Batch extends AtomicInteger {
+        private static final long serialVersionUID = 1L;
+
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        private Batch() {
+            super(1); //the submitting thread holds one count until every task is started
+        }
+
+        // rethrows the first failure, called once the batch is done
+        private void rethrowFailure() {
+            Throwable first = failure.get();
+            if (first instanceof RuntimeException e) {
+                throw e;
+            }
+            if (first instanceof Error e) {
+                throw e;
+            }
+        }
+    }
+
+    // batch, if not null, is counted down once the task is done and keeps its first failure
+    private void submit(Runnable task, Batch batch) {
+        if (shuttingDown) {
+            countDown(batch);
+            throw new IllegalStateException("Executor is shut down");
+        }
+        if (task == null) {
+            countDown(batch);
+            throw new IllegalArgumentException("Task cannot be null");
+        }
+        inFlight.incrementAndGet();
+        Runnable wrappedTask = () -> {
+            long waitStart = System.nanoTime();
+            try {
+                permits.acquire();
+            }
+            catch (InterruptedException e) {
+                //the task never ran, it still has to leave inFlight
+                finish(batch);
+                return;
+            }
+            long startTime = System.nanoTime();
+            timeWaiting.addAndGet(startTime - waitStart);
+            peakRunning.accumulate(running.incrementAndGet());
+            try {
+                task.run();
+            }
+            catch (RuntimeException | Error e) {
+                //a lone task has no caller to report to, its virtual thread dies of it instead
+                if (batch == null) {
+                    throw e;
+                }
+                batch.failure.compareAndSet(null, e);
+            }
+            finally {
+                timeUsed.addAndGet(System.nanoTime() - startTime);
+                tasksRun.incrementAndGet();
+                running.decrementAndGet();
+                permits.release();
+                finish(batch);
+            }
+        };
+        threads.newThread(wrappedTask).start();
+    }
+
+    private void finish(Batch batch) {
+        if(inFlight.decrementAndGet() == 0){ //it was the last task
+            synchronized (inFlight) {
+                inFlight.notifyAll();
+            }
+        }
+        countDown(batch);
+    }
+
+    @Override
+    public void submitAll(Iterable<Runnable> tasks) {
+        long dealStart = System.nanoTime();
+        //only collects the failures, submitAll waits for every task in flight instead
+        Batch batch = deal(tasks);
+        long waitStart = System.nanoTime();
+        synchronized (inFlight){
+            try{
+                while(inFlight.get() > 0){
+                     inFlight.wait();
+                }
+            }
+            catch(InterruptedException exception){
+                Thread.currentThread().interrupt();
+            }
+        }
+        TiredExecutor.traceBarrier(dealStart, waitStart);
+        batch.rethrowFailure();
+    }
+
+    @Override
+    public void submitBatch(Iterable<Runnable> tasks) {
+        long dealStart = System.nanoTime();
+        Batch batch = deal(tasks);
+        long waitStart = System.nanoTime();
+        synchronized (batch){
+            try{
+                while(batch.get() > 0){
+                     batch.wait();
+                }
+            }
+            catch(InterruptedException exception){
+                Thread.currentThread().interrupt();
+            }
+        }
+        TiredExecutor.traceBarrier(dealStart, waitStart);
+        batch.rethrowFailure();
+    }
+
+    // submits every task as one batch, and releases the submitting thread's count
+    private Batch deal(Iterable<Runnable> tasks) {
+        Batch batch = new Batch();
+        for (Runnable task : tasks) {
+            batch.incrementAndGet();
+            submit(task, batch);
+        }
+        countDown(batch);
+        return batch;
+    }
+
+    private static void countDown(Batch batch) {
+        if (batch != null && batch.decrementAndGet() == 0) {
+            synchronized (batch) {
+                batch.notifyAll();
+            }
+        }
+    }
+
+    // refuses new tasks, the ones already submitted still run
+    @Override
+    public void shutdown() {
+        shuttingDown = true;
+    }
+
+    private static final class Counters implements TaskExecutor.Snapshot {
+        private final VirtualThreadExecutor owner;
+        private final long tasksRun;
+        private final long timeUsed;
+        private final long timeWaiting;
+
+        private Counters(VirtualThreadExecutor owner) {
+            this.owner = owner;
+            this.tasksRun = owner.tasksRun.get();
+            this.timeUsed = owner.timeUsed.get();
+            this.timeWaiting = owner.timeWaiting.get();
+        }
+    }
+
+    @Override
+    public TaskExecutor.Snapshot snapshot() {
+        return new Counters(this);
+    }
+
+    @Override
+    public String getWorkerReport() {
+        return formatReport(tasksRun.get(), timeUsed.get(), timeWaiting.get());
+    }
+
+    @Override
+    public String getWorkerReport(TaskExecutor.Snapshot snapshot) {
+        if (snapshot == null) {
+            throw new NullPointerException("Snapshot is null");
+        }
+        if (!(snapshot instanceof Counters since) || since.owner != this) {
+            throw new IllegalArgumentException("Snapshot was not taken from this executor");
+        }
+        return formatReport(tasksRun.get() - since.tasksRun, timeUsed.get() - since.timeUsed,
+            timeWaiting.get() - since.timeWaiting);
+    }
+
+    private String formatReport(long tasks, long used, long waiting) {
+        return "Virtual threads: " + tasks + " tasks Work: " + used + " Permit wait: " + waiting + "\n"
+            + "Peak concurrency: " + peakRunning.get() + " of " + maxConcurrent + "\n";
+    }
+}
@@ -0,0 +1,117 @@
+package spl.lae;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import parser.InputParser;
+import parser.OutputWriter;
+
+/**
+ * Evaluates a newline-delimited file of expression trees on one shared engine.
+ * Up to inFlight expressions are parsed and run at once, each from its own driver thread,
+ * and their kernel tasks share the engine's workers. Results are written in input order,
+ * one line per expression, and an expression that fails gets an error line instead.
+ * Blank lines are skipped.
+ */
+public class BatchEvaluator {
+
+    private final LinearAlgebraEngine engine;
+    private final int inFlight;
+    private final InputParser parser = new InputParser();
+
+    /**
+     * The engine must be reusable, it is left open for the caller to close.
+     */
+    public BatchEvaluator(LinearAlgebraEngine engine, int inFlight) {
+        if (engine == null) {
+            throw new NullPointerException("Engine is null");
+        }
+        if (!engine.isReusable()) {
+            throw new IllegalArgumentException("Batch evaluation needs a reusable engine");
+        }
+        if (inFlight < 1) {
+            throw new IllegalArgumentException("At least one expression must be in flight");
+        }
+        this.engine = engine;
+        this.inFlight = inFlight;
+    }
+
+    // outcome of one line, exactly one of the fields is set
+    private static class Outcome {
+        final double[][] result;
+        final String error;
+
+        Outcome(double[][] result, String error) {
+            this.result = result;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Reads expressions from in until it ends and writes one result line per expression.
+     * Returns the number of expressions evaluated.
+     */
+    public int evaluate(BufferedReader in, OutputWriter.LineWriter out) throws IOException {
+        ExecutorService drivers = Executors.newFixedThreadPool(inFlight, runnable -> {
+            Thread driver = new Thread(runnable, "lae-batch");
+            driver.setDaemon(true);
+            return driver;
+        });
+        //futures in input order, the oldest one is written first
+        Deque<Future<Outcome>> pending = new ArrayDeque<>();
+        int count = 0;
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (pending.size() == inFlight) {
+                    write(pending.poll(), out);
+                }
+                final String expression = line; //Capture line for lambda scope
+                pending.add(drivers.submit(() -> evaluate(expression)));
+                count++;
+            }
+            while (!pending.isEmpty()) {
+                write(pending.poll(), out);
+            }
+        } finally {
+            drivers.shutdownNow();
+        }
+        return count;
+    }
+
+    private Outcome evaluate(String expression) {
+        try {
+            return new Outcome(engine.run(parser.parseExpression(expression)).getMatrix(), null);
+        } catch (Exception e) {// Same message Main writes for a single input
+            return new Outcome(null, e.getMessage());
+        }
+    }
+
+    private void write(Future<Outcome> future, OutputWriter.LineWriter out) throws IOException {
+        Outcome outcome;
+        try {
+            outcome = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a batch result");
+        } catch (ExecutionException e) {
+            //evaluate catches every exception, only errors get here
+            outcome = new Outcome(null, String.valueOf(e.getCause()));
+        }
+        if (outcome.result != null) {
+            out.writeResult(outcome.result);
+        } else {
+            out.writeError(outcome.error);
+        }
+    }
+}
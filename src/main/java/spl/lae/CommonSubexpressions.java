@@ -0,0 +1,142 @@
+package spl.lae;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+
+/**
+ * Hash-consing pass that turns the computation tree into a DAG.
+ * Equal input matrices and equal subexpressions are replaced by one shared node, so each
+ * distinct subexpression is evaluated once. Input matrices are found by a content hash,
+ * and only matrices with equal hashes are compared element by element.
+ * Operators are equal when they have the same type and the same shared operands, in order.
+ */
+public class CommonSubexpressions {
+
+    private final Map<Long, List<ComputationNode>> matricesByHash = new HashMap<>();
+    private final Map<String, ComputationNode> operators = new HashMap<>();
+    private final Map<ComputationNode, Integer> ids = new IdentityHashMap<>();
+    private int merged = 0;
+
+    /**
+     * Shares equal subexpressions of the tree in place and returns its root.
+     */
+    public ComputationNode eliminate(ComputationNode root) {
+        if (root == null) {
+            throw new NullPointerException("Computation tree root is null");
+        }
+        matricesByHash.clear();
+        operators.clear();
+        ids.clear();
+        merged = 0;
+        return intern(root);
+    }
+
+    // number of nodes replaced by an equal shared node in the last call to eliminate
+    public int getMergedNodes() {
+        return merged;
+    }
+
+    /**
+     * Counts the parents of every node of a DAG. A shared result must not be changed
+     * in place by one consumer while another one still needs it.
+     */
+    public static Map<ComputationNode, Integer> countConsumers(ComputationNode root) {
+        Map<ComputationNode, Integer> consumers = new IdentityHashMap<>();
+        countConsumers(root, consumers);
+        return consumers;
+    }
+
+    private static void countConsumers(ComputationNode node, Map<ComputationNode, Integer> consumers) {
+        if (node.getNodeType() == ComputationNodeType.MATRIX) {
+            return;
+        }
+        for (ComputationNode child : node.getChildren()) {
+            //the operands of a shared node are counted once, on its first visit
+            if (consumers.merge(child, 1, Integer::sum) == 1) {
+                countConsumers(child, consumers);
+            }
+        }
+    }
+
+    private ComputationNode intern(ComputationNode node) {
+        //the same node object reached through another parent is already interned
+        if (ids.containsKey(node)) {
+            return node;
+        }
+        if (node.getNodeType() == ComputationNodeType.MATRIX) {
+            return internMatrix(node);
+        }
+        List<ComputationNode> children = new ArrayList<>();
+        StringBuilder key = new StringBuilder(node.getNodeType().name()).append('(');
+        for (ComputationNode child : node.getChildren()) {
+            ComputationNode shared = intern(child);
+            children.add(shared);
+            key.append(ids.get(shared)).append(',');
+        }
+        node.setChildren(children);
+        ComputationNode existing = operators.get(key.toString());
+        if (existing != null) {
+            merged++;
+            return existing;
+        }
+        operators.put(key.toString(), node);
+        ids.put(node, ids.size());
+        return node;
+    }
+
+    private ComputationNode internMatrix(ComputationNode node) {
+        //results that are already computed are only shared by identity
+        if (node.getComputedMatrix() != null || node.getComputedSparse() != null) {
+            ids.put(node, ids.size());
+            return node;
+        }
+        double[][] matrix = node.getMatrix();
+        List<ComputationNode> sameHash = matricesByHash.computeIfAbsent(contentHash(matrix), hash -> new ArrayList<>());
+        for (ComputationNode candidate : sameHash) {
+            if (sameContent(candidate.getMatrix(), matrix)) {
+                merged++;
+                return candidate;
+            }
+        }
+        sameHash.add(node);
+        ids.put(node, ids.size());
+        return node;
+    }
+
+    // hashes the shape and the exact bits of every element
+    static long contentHash(double[][] matrix) {
+        long hash = matrix.length;
+        for (double[] row : matrix) {
+            hash = hash * 0x9E3779B97F4A7C15L + row.length;
+            for (double value : row) {
+                hash = (hash ^ Double.doubleToLongBits(value)) * 0xBF58476D1CE4E5B9L;
+                hash ^= hash >>> 31;
+            }
+        }
+        return hash;
+    }
+
+    // bitwise equality, so -0.0 and 0.0 stay distinct like their results would
+    private boolean sameContent(double[][] a, double[][] b) {
+        if (a.length != b.length) {
+            return false;
+        }
+        for (int i = 0; i < a.length; i++) {
+            if (a[i].length != b[i].length) {
+                return false;
+            }
+            for (int j = 0; j < a[i].length; j++) {
+                if (Double.doubleToLongBits(a[i][j]) != Double.doubleToLongBits(b[i][j])) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,130 @@
+package spl.lae;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.MetricsRegistry;
+import metrics.Timer;
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+import tracing.Tracer;
+
+/**
+ * The metrics the engine records, looked up once from the registry:
+ * engine.run: a whole run() or runStreaming(), planning included.
+ * engine.prepare: loading and relaying out a node's operands and creating its tasks.
+ * executor.barrier.wait: time blocked in submitBatch until a wave of tasks is done.
+ * node.TYPE.latency: from the start of a node's preparation until its last task is done.
+ * node.tasks: tasks created per node.
+ * multiply.flops and multiply.mflops: dense-equivalent flops of the products, and the
+ * MFLOP/s of every product over the span of its tasks.
+ * While the tracer records, every node also gets a prepare span on the planning thread, a
+ * span per task on its worker and an async span from preparation until its last task.
+ */
+final class EngineMetrics {
+
+    final Timer run;
+    final Timer prepare;
+    final Timer barrierWait;
+    final Histogram tasksPerNode;
+    final Counter multiplyFlops;
+    final Histogram multiplyMflops;
+    private final MetricsRegistry registry;
+    private final Tracer tracer;
+
+    EngineMetrics(MetricsRegistry registry, Tracer tracer) {
+        run = registry.timer("engine.run");
+        prepare = registry.timer("engine.prepare");
+        barrierWait = registry.timer("executor.barrier.wait");
+        tasksPerNode = registry.histogram("node.tasks");
+        multiplyFlops = registry.counter("multiply.flops");
+        multiplyMflops = registry.histogram("multiply.mflops");
+        this.registry = registry;
+        this.tracer = tracer;
+    }
+
+    // 2mkn for a product of m x k and k x n operands, 0 for the other operators
+    static long flopsOf(ComputationNode node) {
+        ComputationNodeType type = node.getNodeType();
+        if (type != ComputationNodeType.MULTIPLY && type != ComputationNodeType.MULTIPLY_ADD) {
+            return 0;
+        }
+        long[] left = NodeShapes.of(node.getChildren().get(0));
+        long[] right = NodeShapes.of(node.getChildren().get(1));
+        return 2 * left[0] * left[1] * right[1];
+    }
+
+    /**
+     * Wraps the tasks of a node so the last one to finish records the node's latency since
+     * start and, for a product, its flop rate, and commits the node's begun JFR event.
+     * A node without tasks is recorded right away.
+     */
+    List<Runnable> instrument(ComputationNodeType type, List<Runnable> tasks, long start, long flops,
+            NodeResolutionEvent event) {
+        //looked up per node, so only the operators that ran show up
+        Timer nodeLatency = registry.timer("node." + type + ".latency");
+        tasksPerNode.record(tasks.size());
+        event.tasks = tasks.size();
+        if (flops > 0) {
+            multiplyFlops.add(flops);
+        }
+        //the trace label is built once per node, tasks only add numbers
+        long traceId = 0;
+        String label = null;
+        if (tracer.isEnabled()) {
+            traceId = tracer.nextId();
+            label = type + " #" + traceId;
+            tracer.span("engine", "prepare " + label, start, System.nanoTime(), "tasks", tasks.size());
+        }
+        if (tasks.isEmpty()) {
+            long end = System.nanoTime();
+            nodeLatency.record(end - start);
+            event.commit();
+            if (label != null) {
+                tracer.async("node", label, traceId, start, end, "tasks", 0);
+            }
+            return tasks;
+        }
+        AtomicInteger remaining = new AtomicInteger(tasks.size());
+        AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+        List<Runnable> wrapped = new ArrayList<>(tasks.size());
+        //Capture the trace label and id for lambda scope
+        final String nodeLabel = label;
+        final long nodeId = traceId;
+        for (int i = 0; i < tasks.size(); i++) {
+            Runnable task = tasks.get(i);
+            int index = i;
+            wrapped.add(() -> {
+                long taskStart = System.nanoTime();
+                firstStart.accumulateAndGet(taskStart, Math::min);
+                try {
+                    task.run();
+                }
+                finally {
+                    //a failed task still counts, or the node would never be recorded
+                    if (nodeLabel != null) {
+                        tracer.span("task", nodeLabel, taskStart, System.nanoTime(), "task", index);
+                    }
+                    if (remaining.decrementAndGet() == 0) {
+                        long end = System.nanoTime();
+                        nodeLatency.record(end - start);
+                        if (nodeLabel != null) {
+                            tracer.async("node", nodeLabel, nodeId, start, end, "tasks", tasks.size());
+                        }
+                        //begun on the planning thread, submitting the tasks published its fields to the workers
+                        event.commit();
+                        if (flops > 0) {
+                            //flops per nanosecond are GFLOP/s, the histogram keeps whole MFLOP/s
+                            multiplyMflops.record(flops * 1000 / Math.max(1, end - firstStart.get()));
+                        }
+                    }
+                }
+            });
+        }
+        return wrapped;
+    }
+}
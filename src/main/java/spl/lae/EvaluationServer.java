@@ -0,0 +1,390 @@
+package spl.lae;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import metrics.Histogram;
+import parser.InputParser;
+import parser.OutputWriter;
+
+/**
+ * Keeps a warm engine and parser behind a local TCP or Unix-domain socket.
+ * Every request is one line holding an expression tree in the input file schema, and gets
+ * one response line, {"result": [...]} or {"error": "..."}, in the order the requests were sent.
+ * The line {"command":"metrics"} returns the request counts and latency percentiles instead,
+ * without waiting in the queue.
+ *
+ * Each connection has a reader thread that puts its requests on one bounded queue shared by
+ * all clients, and a writer thread that sends the responses back. Up to inFlight requests are
+ * evaluated at once by the driver threads. When the queue is full the readers block, stop
+ * reading their sockets, and the clients are slowed down by the transport itself.
+ */
+public class EvaluationServer implements AutoCloseable {
+
+    public static final String METRICS_COMMAND = "{\"command\":\"metrics\"}";
+    private static final long DRIVER_POLL_MILLIS = 50;
+
+    private final LinearAlgebraEngine engine;
+    private final InputParser parser = new InputParser();
+    private final int inFlight;
+    private final int queueCapacity;
+    private final BlockingQueue<Request> requests;
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private final List<Thread> drivers = new ArrayList<>();
+    private ServerSocketChannel server;
+    private Thread acceptor;
+    private volatile boolean closed = false;
+
+    private final Histogram latency = new Histogram();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicInteger nextConnection = new AtomicInteger();
+
+    /**
+     * The engine must be reusable, it is left open for the caller to close.
+     * queueCapacity bounds the requests accepted from all clients but not yet evaluated.
+     */
+    public EvaluationServer(LinearAlgebraEngine engine, int inFlight, int queueCapacity) {
+        if (engine == null) {
+            throw new NullPointerException("Engine is null");
+        }
+        if (!engine.isReusable()) {
+            throw new IllegalArgumentException("A server needs a reusable engine");
+        }
+        if (inFlight < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("In-flight count and queue capacity must be positive");
+        }
+        this.engine = engine;
+        this.inFlight = inFlight;
+        this.queueCapacity = queueCapacity;
+        this.requests = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    // a request line and its response, filled in by a driver thread
+    private static class Request {
+        final String line;
+        final long enqueued = System.nanoTime();
+        final CountDownLatch done = new CountDownLatch(1);
+        double[][] result;
+        String error;
+        Object metrics;
+
+        Request(String line) {
+            this.line = line;
+        }
+
+        boolean isDone() {
+            return done.getCount() == 0;
+        }
+    }
+
+    /**
+     * Response of the metrics command. Latencies are in microseconds, measured from the
+     * moment a request is read until its response is ready, queueing included.
+     */
+    public static class Metrics {
+        public long requests;
+        public long errors;
+        public int queued;
+        public int connections;
+        public double meanMicros;
+        public long p50Micros;
+        public long p90Micros;
+        public long p99Micros;
+        public long maxMicros;
+    }
+
+    /**
+     * Binds the address and starts accepting clients. An InetSocketAddress with port 0
+     * gets a free port, a UnixDomainSocketAddress gets a socket file, replacing a stale one.
+     * Returns the address actually bound.
+     */
+    public synchronized SocketAddress start(SocketAddress address) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        ProtocolFamily family = StandardProtocolFamily.INET;
+        if (address instanceof UnixDomainSocketAddress) {
+            family = StandardProtocolFamily.UNIX;
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+        server = ServerSocketChannel.open(family);
+        server.bind(address);
+        for (int i = 0; i < inFlight; i++) {
+            Thread driver = new Thread(this::drive, "lae-server-driver-" + i);
+            driver.setDaemon(true);
+            driver.start();
+            drivers.add(driver);
+        }
+        acceptor = new Thread(this::accept, "lae-server-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server.getLocalAddress();
+    }
+
+    // blocks until the server is closed, its threads do not keep the JVM alive by themselves
+    public void awaitClose() throws InterruptedException {
+        acceptor.join();
+    }
+
+    public SocketAddress getAddress() throws IOException {
+        return server.getLocalAddress();
+    }
+
+    public Metrics getMetrics() {
+        Metrics metrics = new Metrics();
+        metrics.requests = latency.getCount();
+        metrics.errors = errors.get();
+        metrics.queued = requests.size();
+        metrics.connections = connections.size();
+        metrics.meanMicros = latency.getMean();
+        metrics.p50Micros = latency.getPercentile(50);
+        metrics.p90Micros = latency.getPercentile(90);
+        metrics.p99Micros = latency.getPercentile(99);
+        metrics.maxMicros = latency.getMax();
+        return metrics;
+    }
+
+    /**
+     * Stops accepting clients, closes every connection and stops the drivers.
+     * Requests still queued are dropped.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed || server == null) {
+            closed = true;
+            return;
+        }
+        closed = true;
+        SocketAddress address = server.getLocalAddress();
+        server.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+        try {
+            acceptor.join();
+            for (Thread driver : drivers) {
+                driver.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (address instanceof UnixDomainSocketAddress) {
+            Files.deleteIfExists(((UnixDomainSocketAddress) address).getPath());
+        }
+    }
+
+    private void accept() {
+        while (!closed) {
+            try {
+                Connection connection = new Connection(server.accept(), nextConnection.getAndIncrement());
+                connections.add(connection);
+                connection.start();
+            } catch (ClosedChannelException e) {
+                return;
+            } catch (IOException e) {
+                if (closed) {
+                    return;
+                }
+                System.err.println("Failed to accept a client: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Takes requests off the shared queue and evaluates them until the server closes.
+     * The drivers are not interrupted, that would cut a run short while its tasks are
+     * still on the workers, so they look at the closed flag between polls instead.
+     */
+    private void drive() {
+        try {
+            while (!closed) {
+                Request request = requests.poll(DRIVER_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (request == null) {
+                    continue;
+                }
+                evaluate(request);
+                latency.record((System.nanoTime() - request.enqueued) / 1000);
+                request.done.countDown();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void evaluate(Request request) {
+        try {
+            request.result = engine.run(parser.parseExpression(request.line)).getMatrix();
+        } catch (Exception e) {// Same message Main writes for a single input
+            request.error = e.getMessage();
+            errors.incrementAndGet();
+        }
+    }
+
+    /**
+     * One client. The reader thread splits the input into lines and queues them, the writer
+     * thread waits for each response in request order and writes it. Responses are flushed
+     * whenever no further response is ready, so pipelined requests share a write.
+     */
+    private class Connection {
+        private final SocketChannel channel;
+        // requests of this connection in order, bounded like the shared queue
+        private final BlockingQueue<Request> pending;
+        private final Thread reader;
+        private final Thread writer;
+        // marks the end of the input for the writer
+        private final Request endOfInput = new Request("");
+
+        Connection(SocketChannel channel, int id) {
+            this.channel = channel;
+            this.pending = new ArrayBlockingQueue<>(queueCapacity);
+            reader = new Thread(this::read, "lae-server-reader-" + id);
+            writer = new Thread(this::write, "lae-server-writer-" + id);
+            reader.setDaemon(true);
+            writer.setDaemon(true);
+        }
+
+        void start() {
+            reader.start();
+            writer.start();
+        }
+
+        // the writer may be waiting for a request the stopped drivers will never answer
+        void close() throws IOException {
+            channel.close();
+            reader.interrupt();
+            writer.interrupt();
+        }
+
+        private void read() {
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            try {
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    while (buffer.hasRemaining()) {
+                        byte b = buffer.get();
+                        if (b != '\n') {
+                            line.write(b);
+                            continue;
+                        }
+                        String text = line.toString(StandardCharsets.UTF_8).strip();
+                        line.reset();
+                        if (!text.isEmpty()) {
+                            submit(new Request(text));
+                        }
+                    }
+                    buffer.clear();
+                }
+                String last = line.toString(StandardCharsets.UTF_8).strip();
+                if (!last.isEmpty()) {
+                    submit(new Request(last));
+                }
+            } catch (IOException e) {
+                //the client went away or the server is closing
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    pending.put(endOfInput);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        // blocks while this client or the server has too many requests waiting
+        private void submit(Request request) throws InterruptedException {
+            pending.put(request);
+            if (request.line.equals(METRICS_COMMAND)) {
+                //answered right away, so the metrics stay readable while the queue is full
+                request.metrics = getMetrics();
+                request.done.countDown();
+                return;
+            }
+            requests.put(request);
+        }
+
+        private void write() {
+            try (OutputWriter.LineWriter out = OutputWriter.openLines(new ChannelOutput(channel))) {
+                while (true) {
+                    Request request = pending.take();
+                    if (request == endOfInput) {
+                        break;
+                    }
+                    request.done.await();
+                    if (request.result != null) {
+                        out.writeResult(request.result);
+                    } else if (request.metrics != null) {
+                        out.writeValue(request.metrics);
+                    } else {
+                        out.writeError(request.error);
+                    }
+                    if (pending.isEmpty() || !pending.peek().isDone()) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                //the client went away or the server is closing
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                connections.remove(this);
+                //a reader blocked on a full queue would otherwise never notice
+                reader.interrupt();
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    //already closed
+                }
+            }
+        }
+    }
+
+    // writes straight to the channel, the channel streams of the JDK may lock out the reader thread
+    private static class ChannelOutput extends OutputStream {
+        private final SocketChannel channel;
+
+        ChannelOutput(SocketChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes, offset, length);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.shutdownOutput();
+        }
+    }
+}
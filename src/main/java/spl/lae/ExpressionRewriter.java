@@ -0,0 +1,195 @@
+package spl.lae;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+
+/**
+ * Rule-based rewrite stage over the computation tree, run before execution.
+ * Cancels double transposes and negations, pushes transposes below products when
+ * that moves fewer elements, and pulls negations out of sums and products so that
+ * they fold together. Costs are counted as matrix elements passed through a
+ * NEGATE or TRANSPOSE step, since each of those is a full pass over its operand.
+ */
+public class ExpressionRewriter {
+
+    public static final String DOUBLE_TRANSPOSE = "T(T(X)) -> X";
+    public static final String DOUBLE_NEGATION = "-(-X) -> X";
+    public static final String TRANSPOSE_OF_NEGATION = "T(-X) -> -(T(X))";
+    public static final String TRANSPOSE_OF_PRODUCT = "T(A*B) -> T(B)*T(A)";
+    public static final String NEGATED_SUM = "-(A) + -(B) -> -(A+B)";
+    public static final String NEGATED_PRODUCT = "-(A) * B -> -(A*B)";
+
+    /**
+     * How many times each rule fired, in the order the rules first fired.
+     */
+    public static class Report {
+        private final Map<String, Integer> fired = new LinkedHashMap<>();
+
+        private void fire(String rule) {
+            fired.merge(rule, 1, Integer::sum);
+        }
+
+        public int timesFired(String rule) {
+            return fired.getOrDefault(rule, 0);
+        }
+
+        public int totalFired() {
+            int total = 0;
+            for (int count : fired.values()) {
+                total += count;
+            }
+            return total;
+        }
+
+        @Override
+        public String toString() {
+            if (fired.isEmpty()) {
+                return "Rewrite rules fired: none\n";
+            }
+            String str = "Rewrite rules fired:\n";
+            for (Map.Entry<String, Integer> rule : fired.entrySet()) {
+                str += "  " + rule.getKey() + " x" + rule.getValue() + "\n";
+            }
+            return str;
+        }
+    }
+
+    private Report report = new Report();
+
+    /**
+     * Rewrites the tree and returns its new root, which may be a different node
+     * when the root itself was cancelled, e.g. T(T(X)) returns X.
+     */
+    public ComputationNode rewrite(ComputationNode root) {
+        if (root == null) {
+            throw new NullPointerException("Computation tree root is null");
+        }
+        report = new Report();
+        return rewriteNode(root);
+    }
+
+    // the rules fired by the last rewrite
+    public Report getReport() {
+        return report;
+    }
+
+    // rewrites the children first, so every rule sees operands that are already rewritten
+    private ComputationNode rewriteNode(ComputationNode node) {
+        if (node.getNodeType() == ComputationNodeType.MATRIX) {
+            return node;
+        }
+        List<ComputationNode> children = new ArrayList<>();
+        for (ComputationNode child : node.getChildren()) {
+            children.add(rewriteNode(child));
+        }
+        node.setChildren(children);
+        switch (node.getNodeType()) {
+            case TRANSPOSE:
+                return rewriteTranspose(node, children.get(0));
+            case NEGATE:
+                return rewriteNegate(node, children.get(0));
+            case ADD:
+                return rewriteAdd(node, children);
+            case MULTIPLY:
+                return rewriteMultiply(node, children);
+            default:
+                return node;
+        }
+    }
+
+    private ComputationNode rewriteTranspose(ComputationNode node, ComputationNode operand) {
+        if (operand.getNodeType() == ComputationNodeType.TRANSPOSE) {
+            report.fire(DOUBLE_TRANSPOSE);
+            return operand.getChildren().get(0);
+        }
+        if (operand.getNodeType() == ComputationNodeType.NEGATE) {
+            //moving the negation out lets it meet other negations, and the transpose its operand
+            report.fire(TRANSPOSE_OF_NEGATION);
+            ComputationNode transposed = rewriteTranspose(unary(ComputationNodeType.TRANSPOSE, operand.getChildren().get(0)),
+                operand.getChildren().get(0));
+            return rewriteNegate(unary(ComputationNodeType.NEGATE, transposed), transposed);
+        }
+        if (operand.getNodeType() == ComputationNodeType.MULTIPLY) {
+            //T(A1*...*An) = T(An)*...*T(A1), worth it when the factors' transposes move fewer elements
+            List<ComputationNode> factors = operand.getChildren();
+            long pushedDownCost = 0;
+            for (ComputationNode factor : factors) {
+                if (factor.getNodeType() != ComputationNodeType.TRANSPOSE) {
+                    pushedDownCost += NodeShapes.size(factor);
+                }
+            }
+            if (pushedDownCost < NodeShapes.size(operand)) {
+                report.fire(TRANSPOSE_OF_PRODUCT);
+                List<ComputationNode> reversed = new ArrayList<>();
+                for (int i = factors.size() - 1; i >= 0; i--) {
+                    ComputationNode factor = factors.get(i);
+                    reversed.add(rewriteTranspose(unary(ComputationNodeType.TRANSPOSE, factor), factor));
+                }
+                //a transposed factor may have become a negation, which the product can fold
+                return rewriteMultiply(new ComputationNode(ComputationNodeType.MULTIPLY, reversed), reversed);
+            }
+        }
+        return node;
+    }
+
+    private ComputationNode rewriteNegate(ComputationNode node, ComputationNode operand) {
+        if (operand.getNodeType() == ComputationNodeType.NEGATE) {
+            report.fire(DOUBLE_NEGATION);
+            return operand.getChildren().get(0);
+        }
+        return node;
+    }
+
+    private ComputationNode rewriteAdd(ComputationNode node, List<ComputationNode> operands) {
+        //-(A) + -(B) needs one negation instead of one per operand
+        for (ComputationNode operand : operands) {
+            if (operand.getNodeType() != ComputationNodeType.NEGATE) {
+                return node;
+            }
+        }
+        report.fire(NEGATED_SUM);
+        List<ComputationNode> stripped = new ArrayList<>();
+        for (ComputationNode operand : operands) {
+            stripped.add(operand.getChildren().get(0));
+        }
+        node.setChildren(stripped);
+        return unary(ComputationNodeType.NEGATE, node);
+    }
+
+    private ComputationNode rewriteMultiply(ComputationNode node, List<ComputationNode> factors) {
+        //negated factors cost a pass each, the product needs one pass only if their count is odd
+        long negatedCost = 0;
+        int negated = 0;
+        List<ComputationNode> stripped = new ArrayList<>();
+        for (ComputationNode factor : factors) {
+            if (factor.getNodeType() == ComputationNodeType.NEGATE) {
+                negatedCost += NodeShapes.size(factor);
+                negated++;
+                stripped.add(factor.getChildren().get(0));
+            } else {
+                stripped.add(factor);
+            }
+        }
+        if (negated == 0) {
+            return node;
+        }
+        long foldedCost = negated % 2 == 0 ? 0 : NodeShapes.size(node);
+        if (foldedCost >= negatedCost) {
+            return node;
+        }
+        report.fire(NEGATED_PRODUCT);
+        node.setChildren(stripped);
+        return negated % 2 == 0 ? node : unary(ComputationNodeType.NEGATE, node);
+    }
+
+    private ComputationNode unary(ComputationNodeType type, ComputationNode operand) {
+        List<ComputationNode> children = new ArrayList<>();
+        children.add(operand);
+        return new ComputationNode(type, children);
+    }
+}
@@ -0,0 +1,74 @@
+package spl.lae;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+
+/**
+ * Fuses pairs of binary nodes that the engine can compute in a single pass.
+ * A*B + C becomes MULTIPLY_ADD(A, B, C), computed by tile tasks that add C to every
+ * finished tile, and A + -(B) becomes SUBTRACT(A, B), computed by one task per row.
+ * Each fusion saves one materialized intermediate and one executor barrier.
+ * Runs after associativeNesting, when every operator has at most two operands.
+ */
+public class KernelFusion {
+
+    private int fusedPairs = 0;
+
+    /**
+     * Fuses the tree in place and returns its root, which changes when the root itself is fused.
+     */
+    public ComputationNode fuse(ComputationNode root) {
+        if (root == null) {
+            throw new NullPointerException("Computation tree root is null");
+        }
+        fusedPairs = 0;
+        return fuseNode(root);
+    }
+
+    // number of node pairs fused by the last call to fuse
+    public int getFusedPairs() {
+        return fusedPairs;
+    }
+
+    private ComputationNode fuseNode(ComputationNode node) {
+        if (node.getNodeType() == ComputationNodeType.MATRIX) {
+            return node;
+        }
+        List<ComputationNode> children = new ArrayList<>();
+        for (ComputationNode child : node.getChildren()) {
+            children.add(fuseNode(child));
+        }
+        node.setChildren(children);
+        if (node.getNodeType() != ComputationNodeType.ADD || children.size() != 2) {
+            return node;
+        }
+        ComputationNode first = children.get(0);
+        ComputationNode second = children.get(1);
+        //addition is commutative, so the product or the negation may be on either side
+        if (isBinary(first, ComputationNodeType.MULTIPLY)) {
+            return fused(ComputationNodeType.MULTIPLY_ADD, first.getChildren().get(0), first.getChildren().get(1), second);
+        }
+        if (isBinary(second, ComputationNodeType.MULTIPLY)) {
+            return fused(ComputationNodeType.MULTIPLY_ADD, second.getChildren().get(0), second.getChildren().get(1), first);
+        }
+        if (second.getNodeType() == ComputationNodeType.NEGATE) {
+            return fused(ComputationNodeType.SUBTRACT, first, second.getChildren().get(0));
+        }
+        if (first.getNodeType() == ComputationNodeType.NEGATE) {
+            return fused(ComputationNodeType.SUBTRACT, second, first.getChildren().get(0));
+        }
+        return node;
+    }
+
+    private boolean isBinary(ComputationNode node, ComputationNodeType type) {
+        return node.getNodeType() == type && node.getChildren().size() == 2;
+    }
+
+    private ComputationNode fused(ComputationNodeType type, ComputationNode... operands) {
+        fusedPairs++;
+        return new ComputationNode(type, new ArrayList<>(List.of(operands)));
+    }
+}
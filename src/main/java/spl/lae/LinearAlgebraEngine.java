@@ -1,25 +1,115 @@
 package spl.lae;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.DoublePredicate;
+import java.util.function.IntConsumer;
 
+import memory.GemmKernel;
 import memory.SharedMatrix;
+import memory.SparseMatrix;
 import memory.VectorOrientation;
+import metrics.MetricsRegistry;
 import parser.ComputationNode;
 import parser.ComputationNodeType;
+import parser.OutputWriter;
+import scheduling.SchedulingMode;
+import scheduling.TaskExecutor;
 import scheduling.TiredExecutor;
+import scheduling.VirtualThreadExecutor;
+import tracing.Tracer;
 //import scheduling.SequentialExecutor; //SEQUENTIAL FOR DEBUGGING
 
-public class LinearAlgebraEngine {
+public class LinearAlgebraEngine implements AutoCloseable {
+
+    // a node is kept sparse below this fraction of nonzeros, -Dlae.sparse.density=0 turns sparse kernels off
+    static final double SPARSE_DENSITY = Double.parseDouble(System.getProperty("lae.sparse.density", "0.1"));
+    // smaller matrices stay dense, compressing them costs more than it saves
+    static final int SPARSE_MIN_ELEMENTS = 64 * 64;
+    // columns per task of the output transpose, a multiple of the transpose block
+    static final int OUTPUT_TRANSPOSE_BAND = 8 * SharedMatrix.TRANSPOSE_BLOCK;
 
     private SharedMatrix leftMatrix = new SharedMatrix();
     private SharedMatrix rightMatrix = new SharedMatrix();
-    private TiredExecutor executor;
+    private SharedMatrix resultMatrix = new SharedMatrix(); // destination of tiled multiplication
+    private TaskExecutor executor;
+    private final ExpressionRewriter rewriter = new ExpressionRewriter();
+    private final MatrixChainOptimizer chainOptimizer = new MatrixChainOptimizer();
+    private final KernelFusion fusion = new KernelFusion();
+    private final CommonSubexpressions subexpressions = new CommonSubexpressions();
+    private MatrixChainOptimizer.Report chainReport = new MatrixChainOptimizer.Report(); // report of the last run
+    private final boolean reusable; // keeps the executor alive across runs until close()
+    private volatile boolean closed = false;
+    private int activeRuns = 0; // runs between beginRun and endRun, close() waits for them
+    private String runReport = ""; // worker report of the last run only
+    private volatile double sparseDensity = SPARSE_DENSITY;
+    private final AtomicInteger sparseNodes = new AtomicInteger(); // nodes of the last run computed by sparse kernels
+    private volatile TaskGranularity granularity = TaskGranularity.fromProperty();
+    private final EngineMetrics metrics = new EngineMetrics(MetricsRegistry.global(), Tracer.global());
     //private SequentialExecutor executor; //SEQUENTIAL FOR DEBUGGING
 
     public LinearAlgebraEngine(int numThreads) {
+        this(numThreads, SchedulingMode.HANDOFF);
+    }
+
+    public LinearAlgebraEngine(int numThreads, SchedulingMode mode) {
+        this(numThreads, mode, false);
+    }
+
+    private LinearAlgebraEngine(int numThreads, SchedulingMode mode, boolean reusable) {
         // Done: create executor with given thread count
-        executor = new TiredExecutor(numThreads);
+        //with virtual threads, numThreads bounds how many tasks run at once
+        executor = mode == SchedulingMode.VIRTUAL_THREADS
+            ? new VirtualThreadExecutor(numThreads)
+            : new TiredExecutor(numThreads, mode);
         //executor = new SequentialExecutor(1); //SEQUENTIAL FOR DEBUGGING
+        this.reusable = reusable;
+    }
+
+    /**
+     * Creates an engine whose workers stay warm across run() calls.
+     * The caller must close() it. Several threads may run their own trees on it at once,
+     * their tasks then share the workers.
+     */
+    public static LinearAlgebraEngine reusable(int numThreads) {
+        return reusable(numThreads, SchedulingMode.HANDOFF);
+    }
+
+    public static LinearAlgebraEngine reusable(int numThreads, SchedulingMode mode) {
+        return new LinearAlgebraEngine(numThreads, mode, true);
+    }
+
+    public boolean isReusable() {
+        return reusable;
+    }
+
+    /**
+     * Refuses new runs, waits for the running ones and shuts the executor down.
+     * A one-shot engine already does this at the end of its run, so calling close()
+     * on it again is harmless.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try{
+            while (activeRuns > 0) {
+                wait();
+            }
+            executor.shutdown();
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
     }
 
     public ComputationNode run(ComputationNode computationRoot) {
@@ -27,22 +117,263 @@ public class LinearAlgebraEngine {
         if (computationRoot == null){
             throw new NullPointerException("Computation tree root is null");
         }
+        TaskExecutor.Snapshot start = beginRun();
+        long started = System.nanoTime();
         //we put a try-finally to ensure executor shutdown in case of exceptions
         try{
+            computationRoot = plan(computationRoot);
             while(computationRoot.getNodeType() != ComputationNodeType.MATRIX){
-                loadAndCompute(computationRoot);
+                computeReadyNodes(computationRoot);
+            }
+            SharedMatrix result = computationRoot.getComputedMatrix();
+            if(result != null && result.getOrientation() == VectorOrientation.COLUMN_MAJOR){
+                computationRoot.resolve(transposeForOutput(result));
             }
         }
         finally{
-            try{
-                executor.shutdown();
-            } catch (InterruptedException e){
-                Thread.currentThread().interrupt();
+            metrics.run.recordSince(started);
+            endRun(start);
+        }
+        return computationRoot;
+    }
+
+    /**
+     * Resolves the tree like run() and streams the result rows to out.
+     * When the root is a (fused) multiplication, each band of TILE_ROWS rows is written as soon as
+     * all of its tiles are done, while the workers are still computing the later bands.
+     */
+    public ComputationNode runStreaming(ComputationNode computationRoot, OutputWriter.RowWriter out) throws IOException {
+        if (computationRoot == null){
+            throw new NullPointerException("Computation tree root is null");
+        }
+        if (out == null){
+            throw new NullPointerException("Row writer is null");
+        }
+        TaskExecutor.Snapshot start = beginRun();
+        long started = System.nanoTime();
+        try{
+            computationRoot = plan(computationRoot);
+            //resolve everything below the root first, the root itself is streamed
+            while(computationRoot.getNodeType() != ComputationNodeType.MATRIX && !operandsResolved(computationRoot)){
+                computeReadyNodes(computationRoot);
+            }
+            if(computationRoot.getNodeType() == ComputationNodeType.MATRIX){
+                //the input was a single matrix, nothing to compute
+                for(double[] row : computationRoot.getMatrix()){
+                    out.writeRow(row);
+                }
+                return computationRoot;
+            }
+            NodeJob job = prepareMeasured(computationRoot, CommonSubexpressions.countConsumers(computationRoot));
+            if(job.output == null){
+                //a sparse result is only complete once every band is assembled
+                executor.submitBatch(job.tasks);
+                job.finish.run();
+                for(double[] row : computationRoot.getMatrix()){
+                    out.writeRow(row);
+                }
+                return computationRoot;
+            }
+            if(computationRoot.getNodeType() == ComputationNodeType.MULTIPLY
+                    || computationRoot.getNodeType() == ComputationNodeType.MULTIPLY_ADD){
+                computeAndStreamBands(job, out);
             }
+            else{
+                executor.submitBatch(job.tasks);
+                if(job.output.getOrientation() == VectorOrientation.COLUMN_MAJOR){
+                    for(double[] row : transposeForOutput(job.output)){
+                        out.writeRow(row);
+                    }
+                }
+                else{
+                    writeRows(job.output, 0, job.output.length(), out);
+                }
+            }
+            job.finish.run();
+        }
+        finally{
+            metrics.run.recordSince(started);
+            endRun(start);
         }
         return computationRoot;
     }
 
+    /**
+     * Runs the planning passes and returns the root of the tree to execute:
+     * simplifies the expression, orders multiplication chains by cost, nests the remaining
+     * n-ary operators left to right, fuses A*B + C and A + -(B) into single-pass nodes,
+     * and shares equal subexpressions so each one is evaluated once.
+     * The passes keep state of their own, so concurrent runs plan one at a time.
+     */
+    private synchronized ComputationNode plan(ComputationNode root) {
+        sparseNodes.set(0);
+        root = rewriter.rewrite(root);
+        chainReport = chainOptimizer.optimize(root);
+        root.associativeNesting();
+        root = fusion.fuse(root);
+        return subexpressions.eliminate(root);
+    }
+
+    private synchronized TaskExecutor.Snapshot beginRun() {
+        if (closed) {
+            throw new IllegalStateException("Engine is closed");
+        }
+        activeRuns++;
+        return executor.snapshot();
+    }
+
+    // a one-shot engine shuts its executor down after its run, a reusable one only records the run
+    private synchronized void endRun(TaskExecutor.Snapshot start) {
+        runReport = executor.getWorkerReport(start);
+        activeRuns--;
+        notifyAll();
+        if (!reusable) {
+            close();
+        }
+    }
+
+    // checks if every operand of the node is already a matrix
+    private boolean operandsResolved(ComputationNode node) {
+        for (ComputationNode child : node.getChildren()) {
+            if (child.getNodeType() != ComputationNodeType.MATRIX) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Submits the tile tasks of a multiplication from a helper thread, and writes every
+     * band of rows from the calling thread once all of its tiles are done, in row order.
+     */
+    private void computeAndStreamBands(NodeJob job, OutputWriter.RowWriter out) throws IOException {
+        SharedMatrix output = job.output;
+        int rows = output.length();
+        int bands = (rows + GemmKernel.TILE_ROWS - 1) / GemmKernel.TILE_ROWS;
+        //tile tasks are created band by band, with the same number of tiles in every band
+        int tilesPerBand = job.tasks.size() / bands;
+        AtomicInteger[] pendingTiles = new AtomicInteger[bands];
+        for (int band = 0; band < bands; band++) {
+            pendingTiles[band] = new AtomicInteger(tilesPerBand);
+        }
+        BlockingQueue<Integer> finishedBands = new LinkedBlockingQueue<>();
+        List<Runnable> tasks = new ArrayList<>(job.tasks.size());
+        for (int i = 0; i < job.tasks.size(); i++) {
+            final int band = i / tilesPerBand; //Capture band for lambda scope
+            final Runnable tile = job.tasks.get(i);
+            tasks.add(() -> {
+                tile.run();
+                if (pendingTiles[band].decrementAndGet() == 0) {
+                    finishedBands.add(band);
+                }
+            });
+        }
+
+        //a band number that can never finish marks the end of the batch
+        final int batchDone = -1;
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Thread submitter = new Thread(() -> {
+            try {
+                executor.submitBatch(tasks);
+            } catch (RuntimeException e) {
+                failure.set(e);
+            } finally {
+                finishedBands.add(batchDone);
+            }
+        }, "lae-submitter");
+        submitter.start();
+
+        boolean[] finished = new boolean[bands];
+        int nextBand = 0;
+        try {
+            while (nextBand < bands) {
+                int band = finishedBands.take();
+                if (band == batchDone) {
+                    break;
+                }
+                finished[band] = true;
+                //write every band that completes the prefix, later bands wait for earlier ones
+                while (nextBand < bands && finished[nextBand]) {
+                    writeRows(output, nextBand * GemmKernel.TILE_ROWS, Math.min((nextBand + 1) * GemmKernel.TILE_ROWS, rows), out);
+                    nextBand++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while streaming the result rows");
+        } finally {
+            //let the batch finish before the executor can be shut down
+            try {
+                submitter.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        if (nextBand < bands) {
+            throw new IllegalStateException("Not all result rows were computed");
+        }
+    }
+
+    /**
+     * The one physical transpose of a column-major result, done for output only.
+     * Bands of OUTPUT_TRANSPOSE_BAND columns are copied in parallel, each by cache-sized blocks,
+     * and a result of a single band is copied by the calling thread.
+     */
+    private double[][] transposeForOutput(SharedMatrix columns) {
+        int count = columns.length();
+        double[][] rows = new double[columns.get(0).length()][count];
+        if (count <= OUTPUT_TRANSPOSE_BAND) {
+            columns.transposeInto(rows, 0, count);
+            return rows;
+        }
+        List<Runnable> tasks = new ArrayList<>();
+        for (int from = 0; from < count; from += OUTPUT_TRANSPOSE_BAND) {
+            //Capture band bounds for lambda scope
+            final int bandFrom = from, bandTo = Math.min(from + OUTPUT_TRANSPOSE_BAND, count);
+            tasks.add(() -> columns.transposeInto(rows, bandFrom, bandTo));
+        }
+        executor.submitBatch(tasks);
+        return rows;
+    }
+
+    // writes rows [from, to) of a row-major matrix, reusing one buffer
+    private void writeRows(SharedMatrix matrix, int from, int to, OutputWriter.RowWriter out) throws IOException {
+        double[] row = new double[matrix.get(from).length()];
+        for (int i = from; i < to; i++) {
+            matrix.get(i).copyInto(row, 0);
+            out.writeRow(row);
+        }
+    }
+
+    /**
+     * Resolves every node of the tree whose operands are all ready, in one round.
+     * The tasks of all those nodes are submitted as a single batch, so independent
+     * subtrees share the workers instead of running one after another.
+     * Each resolved node then feeds its result to its parent through the tree edges.
+     */
+    public void computeReadyNodes(ComputationNode root) {
+        List<ComputationNode> ready = root.findAllResolvable();
+        //counted per round from the tree itself, so concurrent runs never share the counts
+        Map<ComputationNode, Integer> consumers = CommonSubexpressions.countConsumers(root);
+        List<NodeJob> jobs = new ArrayList<>(ready.size());
+        List<Runnable> tasks = new ArrayList<>();
+        for (ComputationNode node : ready) {
+            NodeJob job = prepareMeasured(node, consumers);
+            jobs.add(job);
+            tasks.addAll(job.tasks);
+        }
+        long barrier = System.nanoTime();
+        executor.submitBatch(tasks);
+        metrics.barrierWait.recordSince(barrier);
+        //results stay as SharedMatrix, the parent converts the layout only if it needs to
+        for (NodeJob job : jobs) {
+            job.finish.run();
+        }
+    }
+
     public void loadAndCompute(ComputationNode node) {
         // Done: load operand matrices
         // Done: create compute tasks & submit tasks to executor
@@ -55,123 +386,626 @@ public class LinearAlgebraEngine {
         node.associativeNesting();
         //Then, find first resolvable node (cannot be null bc checked above)
         ComputationNode toResolve = node.findResolvable();
+        NodeJob job = prepareMeasured(toResolve, CommonSubexpressions.countConsumers(node));
+        executor.submitBatch(job.tasks); 
+        job.finish.run();
+
+    }
+
+    // prepares a node with its tasks wrapped to record the node's latency, task count and flop rate
+    private NodeJob prepareMeasured(ComputationNode node, Map<ComputationNode, Integer> consumers) {
+        long start = System.nanoTime();
+        ComputationNodeType type = node.getNodeType();
+        long flops = EngineMetrics.flopsOf(node);
+        NodeResolutionEvent event = new NodeResolutionEvent();
+        if (event.isEnabled()) {
+            //the shape is taken before prepare loads the operands
+            long[] shape = NodeShapes.of(node);
+            event.operator = type.toString();
+            event.rows = shape[0];
+            event.columns = shape[1];
+            event.flops = flops;
+        }
+        event.begin();
+        NodeJob job = prepare(node, consumers);
+        metrics.prepare.recordSince(start);
+        return job.withTasks(metrics.instrument(type, job.tasks, start, flops, event));
+    }
+
+    /**
+     * Loads the operands of a resolvable node and creates its tasks.
+     * Results of earlier nodes are reused as they are, and only re-laid out when the
+     * operator needs another orientation. Input matrices get fresh matrices of their own,
+     * so jobs of different nodes can run at the same time.
+     */
+    private NodeJob prepare(ComputationNode toResolve, Map<ComputationNode, Integer> consumers) {
+        NodeJob sparseJob = prepareSparse(toResolve, consumers);
+        if (sparseJob != null) {
+            sparseNodes.incrementAndGet();
+            return sparseJob;
+        }
+        List<ComputationNode> children = toResolve.getChildren();
+        SharedMatrix left;
+        //Most operations work in place on the left matrix
+        SharedMatrix output;
         List<Runnable> tasks;
         //Load matrices based on operation type
         switch (toResolve.getNodeType()) {
-            case ADD:
-                //For addition, both are row-major
-                leftMatrix.loadRowMajor(toResolve.getChildren().get(0).getMatrix());
-                rightMatrix.loadRowMajor(toResolve.getChildren().get(1).getMatrix());
-                tasks = createAddTasks();
+            case ADD: {
+                //For addition, the right operand must have the left one's layout, an input left takes the right one's
+                left = inPlaceOperand(children.get(0), consumers, layoutOf(children.get(1)));
+                SharedMatrix right = operand(children.get(1), left.getOrientation());
+                output = left;
+                tasks = createAddTasks(left, right);
                 break;
+            }
             case NEGATE:
-                leftMatrix.loadRowMajor(toResolve.getChildren().get(0).getMatrix());
-                tasks = createNegateTasks();
+                left = inPlaceOperand(children.get(0), consumers, null);
+                output = left;
+                tasks = createNegateTasks(left);
                 break;
-            case MULTIPLY:
+            case MULTIPLY: {
                 //For multiplication convenience, left is row-major, right is column-major
-                leftMatrix.loadRowMajor(toResolve.getChildren().get(0).getMatrix());
-                rightMatrix.loadColumnMajor(toResolve.getChildren().get(1).getMatrix());
-                tasks = createMultiplyTasks();
+                left = operand(children.get(0), VectorOrientation.ROW_MAJOR);
+                SharedMatrix right = operand(children.get(1), VectorOrientation.COLUMN_MAJOR);
+                output = new SharedMatrix();
+                tasks = createTiledMultiplyTasks(left, right, output);
+                break;
+            }
+            case MULTIPLY_ADD: {
+                //A*B + C, the addend is read row-major next to the row-major output
+                left = operand(children.get(0), VectorOrientation.ROW_MAJOR);
+                SharedMatrix right = operand(children.get(1), VectorOrientation.COLUMN_MAJOR);
+                SharedMatrix addend = operand(children.get(2), VectorOrientation.ROW_MAJOR);
+                output = new SharedMatrix();
+                tasks = createMultiplyAddTasks(left, right, addend, output);
+                break;
+            }
+            case SUBTRACT: {
+                //A + -(B) in one pass, in place on the left matrix like addition
+                left = inPlaceOperand(children.get(0), consumers, layoutOf(children.get(1)));
+                SharedMatrix right = operand(children.get(1), left.getOrientation());
+                output = left;
+                tasks = createSubtractTasks(left, right);
                 break;
+            }
             case TRANSPOSE:
-                leftMatrix.loadRowMajor(toResolve.getChildren().get(0).getMatrix());
-                tasks = createTransposeTasks();
+                //The rows of a matrix are the columns of its transpose, only the layout flag flips, no tasks needed
+                left = inPlaceOperand(children.get(0), consumers, null);
+                left.transpose();
+                output = left;
+                tasks = new ArrayList<>();
                 break;
             default:
                 //Should not reach here
                 throw new UnsupportedOperationException("Unsupported computation node type"); 
         }
-        executor.submitAll(tasks); 
-        toResolve.resolve(leftMatrix.readRowMajor());
+        return new NodeJob(toResolve, output, tasks);
+    }
+
+    // how operations are split into tasks, see TaskGranularity
+    public void setTaskGranularity(TaskGranularity granularity) {
+        if (granularity == null) {
+            throw new NullPointerException("Task granularity is null");
+        }
+        this.granularity = granularity;
+    }
 
+    /**
+     * Sets the density below which a node is computed and kept in sparse form.
+     * 0 turns the sparse kernels off, every node is then computed dense.
+     */
+    public void setSparseDensity(double density) {
+        if (density < 0 || density > 1) {
+            throw new IllegalArgumentException("Density must be between 0 and 1");
+        }
+        sparseDensity = density;
+    }
+
+    /**
+     * Creates the job of a node that has a sparse operand, or returns null when the node
+     * is computed dense. Multiplications take the sparse path if either factor is sparse,
+     * and keep a sparse x sparse product compressed while its measured density stays low.
+     * Sums need both operands sparse to stay sparse, a dense operand instead gets the
+     * sparse one's nonzeros added in place. Transposition keeps the operand's form.
+     * Every path gives the dense kernels' results bit for bit: a factor's implicit zeros are
+     * only skipped when the other factor is finite, a dense sum operand takes nonzeros in
+     * place only without -0.0 elements, and negation stays dense, where zeros become -0.0.
+     */
+    private NodeJob prepareSparse(ComputationNode toResolve, Map<ComputationNode, Integer> consumers) {
+        List<ComputationNode> children = toResolve.getChildren();
+        switch (toResolve.getNodeType()) {
+            case MULTIPLY:
+            case MULTIPLY_ADD: {
+                SparseMatrix left = sparseOperand(children.get(0), true);
+                SparseMatrix right = sparseOperand(children.get(1), true);
+                //0 * Inf and 0 * NaN are NaN, the zeros of a factor cannot be skipped against them
+                if (left != null && !allMatch(children.get(1), Double::isFinite)) {
+                    left = null;
+                }
+                if (right != null && !allMatch(children.get(0), Double::isFinite)) {
+                    right = null;
+                }
+                if (left == null && right == null) {
+                    return null;
+                }
+                SharedMatrix addend = toResolve.getNodeType() == ComputationNodeType.MULTIPLY_ADD
+                    ? operand(children.get(2), VectorOrientation.ROW_MAJOR) : null;
+                if (left != null && right != null && addend == null) {
+                    return createSparseProductJob(toResolve, left.toOrientation(VectorOrientation.ROW_MAJOR),
+                        right.toOrientation(VectorOrientation.ROW_MAJOR));
+                }
+                SharedMatrix output = new SharedMatrix();
+                List<Runnable> tasks;
+                if (left != null) {
+                    SharedMatrix denseRight = operand(children.get(1), VectorOrientation.ROW_MAJOR);
+                    tasks = createSparseMultiplyTasks(left.toOrientation(VectorOrientation.ROW_MAJOR), denseRight, addend, output);
+                } else {
+                    SharedMatrix denseLeft = operand(children.get(0), VectorOrientation.ROW_MAJOR);
+                    tasks = createMultiplyBySparseTasks(denseLeft, right.toOrientation(VectorOrientation.COLUMN_MAJOR), addend, output);
+                }
+                return new NodeJob(toResolve, output, tasks);
+            }
+            case ADD:
+            case SUBTRACT: {
+                double sign = toResolve.getNodeType() == ComputationNodeType.ADD ? 1.0 : -1.0;
+                SparseMatrix left = sparseOperand(children.get(0), false);
+                SparseMatrix right = sparseOperand(children.get(1), false);
+                if (left != null && right != null) {
+                    return createSparseSumJob(toResolve, left, right.toOrientation(left.getOrientation()), sign);
+                }
+                //x - 0.0 is x, but -0.0 + 0.0 is 0.0, so an addition needs a dense operand without -0.0
+                if (right != null && (sign < 0 || allMatch(children.get(0), LinearAlgebraEngine::isNotNegativeZero))) {
+                    SharedMatrix dense = inPlaceOperand(children.get(0), consumers, null);
+                    return new NodeJob(toResolve, dense, createAddSparseTasks(dense, right.toOrientation(dense.getOrientation()), sign));
+                }
+                if (left != null && sign > 0 && allMatch(children.get(1), LinearAlgebraEngine::isNotNegativeZero)) {
+                    //addition commutes, the dense right operand takes the sparse left one's nonzeros
+                    SharedMatrix dense = inPlaceOperand(children.get(1), consumers, null);
+                    return new NodeJob(toResolve, dense, createAddSparseTasks(dense, left.toOrientation(dense.getOrientation()), sign));
+                }
+                return null;
+            }
+            case TRANSPOSE: {
+                //CSR read as CSC, nothing to compute
+                SparseMatrix operand = sparseOperand(children.get(0), false);
+                if (operand == null) {
+                    return null;
+                }
+                return new NodeJob(toResolve, new ArrayList<>(), () -> toResolve.resolve(operand.transpose()));
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the child in sparse form if its result is stored sparse, or if it is large
+     * enough and its measured density is below the threshold, otherwise null. Only matrices
+     * of plain elements (see SparseMatrix.isPlain) are used sparse.
+     * Input matrices are always measured. Dense results of earlier nodes are measured only
+     * when measureComputed is set, for multiplications, whose cubic work dwarfs the scan.
+     */
+    private SparseMatrix sparseOperand(ComputationNode child, boolean measureComputed) {
+        SparseMatrix sparse = child.getComputedSparse();
+        if (sparse != null) {
+            return sparse.allMatch(SparseMatrix::isPlain) ? sparse : null;
+        }
+        double threshold = sparseDensity;
+        if (threshold <= 0) {
+            return null;
+        }
+        SharedMatrix computed = child.getComputedMatrix();
+        if (computed == null) {
+            double[][] matrix = child.getMatrix();
+            if ((long) matrix.length * matrix[0].length >= SPARSE_MIN_ELEMENTS && SparseMatrix.density(matrix) < threshold
+                    && SparseMatrix.allMatch(matrix, SparseMatrix::isPlain)) {
+                return SparseMatrix.fromDense(matrix, VectorOrientation.ROW_MAJOR);
+            }
+            return null;
+        }
+        if (measureComputed && (long) computed.length() * computed.get(0).length() >= SPARSE_MIN_ELEMENTS
+                && SparseMatrix.density(computed) < threshold && SparseMatrix.allMatch(computed, SparseMatrix::isPlain)) {
+            return SparseMatrix.fromShared(computed);
+        }
+        return null;
+    }
+
+    // whether every element of the child's result passes the test, the implicit zeros of a sparse result included
+    private boolean allMatch(ComputationNode child, DoublePredicate test) {
+        SparseMatrix sparse = child.getComputedSparse();
+        if (sparse != null) {
+            return test.test(0.0) && sparse.allMatch(test);
+        }
+        SharedMatrix computed = child.getComputedMatrix();
+        return computed == null ? SparseMatrix.allMatch(child.getMatrix(), test) : SparseMatrix.allMatch(computed, test);
+    }
+
+    private static boolean isNotNegativeZero(double value) {
+        return Double.doubleToRawLongBits(value) != Long.MIN_VALUE;
+    }
+
+    // keeps a sparse result compressed only while it stays below the density threshold
+    private void resolveSparse(ComputationNode node, SparseMatrix result) {
+        if (result.density() < sparseDensity) {
+            node.resolve(result);
+        } else {
+            node.resolve(result.toShared(VectorOrientation.ROW_MAJOR));
+        }
+    }
+
+    // sparse x sparse, both CSR, one task per band of TILE_ROWS output rows
+    private NodeJob createSparseProductJob(ComputationNode node, SparseMatrix left, SparseMatrix right) {
+        if (left.columns() != right.rows()) {
+            throw new IllegalArgumentException("Matrices dimensions do not match for multiplication");
+        }
+        int rows = left.rows();
+        SparseMatrix[] bands = new SparseMatrix[(rows + GemmKernel.TILE_ROWS - 1) / GemmKernel.TILE_ROWS];
+        List<Runnable> tasks = new ArrayList<>(bands.length);
+        for (int band = 0; band < bands.length; band++) {
+            //Capture band bounds for lambda scope
+            final int index = band, rowFrom = band * GemmKernel.TILE_ROWS, rowTo = Math.min(rowFrom + GemmKernel.TILE_ROWS, rows);
+            tasks.add(() -> bands[index] = SparseMatrix.multiplyRows(left, right, rowFrom, rowTo));
+        }
+        return new NodeJob(node, tasks, () -> resolveSparse(node, SparseMatrix.concat(Arrays.asList(bands))));
+    }
+
+    // sparse + sign * sparse in the same orientation, one task per band of TILE_ROWS vectors
+    private NodeJob createSparseSumJob(ComputationNode node, SparseMatrix left, SparseMatrix right, double sign) {
+        if (left.rows() != right.rows() || left.columns() != right.columns()) {
+            throw new IllegalArgumentException("Matrices dimensions do not match for addition");
+        }
+        int vectors = left.majorLength();
+        SparseMatrix[] bands = new SparseMatrix[(vectors + GemmKernel.TILE_ROWS - 1) / GemmKernel.TILE_ROWS];
+        List<Runnable> tasks = new ArrayList<>(bands.length);
+        for (int band = 0; band < bands.length; band++) {
+            //Capture band bounds for lambda scope
+            final int index = band, from = band * GemmKernel.TILE_ROWS, to = Math.min(from + GemmKernel.TILE_ROWS, vectors);
+            tasks.add(() -> bands[index] = SparseMatrix.addVectors(left, right, sign, from, to));
+        }
+        return new NodeJob(node, tasks, () -> resolveSparse(node, SparseMatrix.concat(Arrays.asList(bands))));
+    }
+
+    // returns the child's matrix for an operator that changes it in place, an input matrix is loaded in inputLayout (row-major if null)
+    private SharedMatrix inPlaceOperand(ComputationNode child, Map<ComputationNode, Integer> consumers, VectorOrientation inputLayout) {
+        SharedMatrix computed = operand(child, child.getComputedMatrix() == null ? inputLayout : null);
+        //a shared result is read by its other consumers, possibly in the same wave
+        if (computed == child.getComputedMatrix() && consumers.getOrDefault(child, 1) > 1) {
+            return computed.copy();
+        }
+        return computed;
+    }
+
+    // layout of a computed dense result, or null for an input or sparse result that can be loaded in any layout
+    private VectorOrientation layoutOf(ComputationNode child) {
+        SharedMatrix computed = child.getComputedMatrix();
+        return computed == null ? null : computed.getOrientation();
+    }
+
+    // returns the child's matrix in the requested orientation, or in any orientation if null
+    private SharedMatrix operand(ComputationNode child, VectorOrientation orientation) {
+        SparseMatrix sparse = child.getComputedSparse();
+        if (sparse != null) {
+            //a sparse result read by a dense kernel is expanded straight into the layout it wants
+            return sparse.toShared(orientation == null ? sparse.getOrientation() : orientation);
+        }
+        SharedMatrix computed = child.getComputedMatrix();
+        if (computed == null) {
+            //an input matrix, loaded straight into the layout the operator wants
+            computed = new SharedMatrix();
+            if (orientation == VectorOrientation.COLUMN_MAJOR) {
+                computed.loadColumnMajor(child.getMatrix());
+            } else {
+                computed.loadRowMajor(child.getMatrix());
+            }
+            return computed;
+        }
+        if (orientation == null) {
+            return computed;
+        }
+        return computed.toOrientation(orientation);
     }
     
     public List<Runnable> createAddTasks() {
+        return createAddTasks(leftMatrix, rightMatrix);
+    }
+
+    public List<Runnable> createAddTasks(SharedMatrix left, SharedMatrix right) {
         // Done: return tasks that perform row-wise addition
         //Check dimensions to ensure they can be added
-        if(leftMatrix.length() != rightMatrix.length() || 
-            leftMatrix.get(0).length() != rightMatrix.get(0).length()){
+        if(left.length() != right.length() || 
+            left.get(0).length() != right.get(0).length()){
             throw new IllegalArgumentException("Matrices dimensions do not match for addition");
         }
        
-        List<Runnable> tasks = new java.util.LinkedList<Runnable>();
-        for (int i = 0; i < leftMatrix.length(); i++) {
-            final int index = i; //Capture index for lambda scope
-            Runnable addCurRow = () -> {
-                    leftMatrix.get(index).add(rightMatrix.get(index));
-            };
-            tasks.add(addCurRow);
-        }
-        return tasks;
+        return createVectorTasks(left, index -> left.get(index).add(right.get(index)),
+            (index, from, to) -> left.get(index).add(right.get(index), from, to));
     }
 
     public List<Runnable> createMultiplyTasks() {
+        return createMultiplyTasks(leftMatrix, rightMatrix);
+    }
+
+    public List<Runnable> createMultiplyTasks(SharedMatrix left, SharedMatrix right) {
         // Done: return tasks that perform row × matrix multiplication
         
-        if (leftMatrix == null || rightMatrix == null) {
+        if (left == null || right == null) {
             throw new NullPointerException("Matrices cannot be null");
         }
 
-        if (leftMatrix.length() == 0 || rightMatrix.length() == 0) {
+        if (left.length() == 0 || right.length() == 0) {
             throw new IllegalArgumentException("Matrices cannot be empty");
         }
         //compare left's cols to right's rows
-        if(leftMatrix.get(0).length() != rightMatrix.get(0).length()){
+        if(left.get(0).length() != right.get(0).length()){
             throw new IllegalArgumentException("Matrices dimensions do not match for multiplication");
         }
         
         //verify orientations
-        if(leftMatrix.getOrientation() != VectorOrientation.ROW_MAJOR ||
-            rightMatrix.getOrientation() != VectorOrientation.COLUMN_MAJOR){
+        if(left.getOrientation() != VectorOrientation.ROW_MAJOR ||
+            right.getOrientation() != VectorOrientation.COLUMN_MAJOR){
             throw new UnsupportedOperationException("Matrices multiplication with same orientations not supported");
         }
 
-        List<Runnable> tasks = new java.util.LinkedList<Runnable>();
-        for (int i = 0; i < leftMatrix.length(); i++) {
-            final int index = i; //Capture index for lambda scope
-            Runnable multCurRow = () -> {
-                    leftMatrix.get(index).vecMatMul(rightMatrix);
+        //a row replaces itself with its product, so rows are grouped into ranges but never split
+        long flopsPerRow = 2L * left.get(0).length() * right.length();
+        int[] bounds = granularity.vectorBounds(left.length(), flopsPerRow, executor.getWorkerCount());
+        List<Runnable> tasks = new ArrayList<Runnable>(bounds.length - 1);
+        for (int task = 0; task + 1 < bounds.length; task++) {
+            final int rowFrom = bounds[task], rowTo = bounds[task + 1]; //Capture range for lambda scope
+            Runnable multRows = () -> {
+                for (int index = rowFrom; index < rowTo; index++) {
+                    left.get(index).vecMatMul(right);
+                }
             };
-            tasks.add(multCurRow);
+            tasks.add(multRows);
         }
         return tasks;
     }
 
+    public List<Runnable> createTiledMultiplyTasks() {
+        return createTiledMultiplyTasks(leftMatrix, rightMatrix, resultMatrix);
+    }
+
+    public List<Runnable> createTiledMultiplyTasks(SharedMatrix left, SharedMatrix right, SharedMatrix result) {
+        // return tasks that each compute one cache-sized tile of left × right into result
+        return createTileTasks(left, right, null, result);
+    }
+
+    public List<Runnable> createMultiplyAddTasks(SharedMatrix left, SharedMatrix right, SharedMatrix addend, SharedMatrix result) {
+        // return tasks that each compute one tile of left × right + addend into result
+        if (addend == null) {
+            throw new NullPointerException("Matrices cannot be null");
+        }
+        return createTileTasks(left, right, addend, result);
+    }
+
+    // tile tasks are created band by band, row bands of TILE_ROWS each split into column tiles
+    private List<Runnable> createTileTasks(SharedMatrix left, SharedMatrix right, SharedMatrix addend, SharedMatrix result) {
+        if (left == null || right == null) {
+            throw new NullPointerException("Matrices cannot be null");
+        }
+
+        if (left.length() == 0 || right.length() == 0) {
+            throw new IllegalArgumentException("Matrices cannot be empty");
+        }
+        //compare left's cols to right's rows
+        if(left.get(0).length() != right.get(0).length()){
+            throw new IllegalArgumentException("Matrices dimensions do not match for multiplication");
+        }
+
+        //verify orientations
+        if(left.getOrientation() != VectorOrientation.ROW_MAJOR ||
+            right.getOrientation() != VectorOrientation.COLUMN_MAJOR){
+            throw new UnsupportedOperationException("Matrices multiplication with same orientations not supported");
+        }
+
+        int rows = left.length();
+        int columns = right.length();
+        if (addend != null && (addend.length() != rows || addend.get(0).length() != columns)) {
+            throw new IllegalArgumentException("Matrices dimensions do not match for addition");
+        }
+        result.allocateRowMajor(rows, columns);
+
+        //too few bands for the workers get narrower tiles, every band keeps the same tiles for streaming
+        int bands = (rows + GemmKernel.TILE_ROWS - 1) / GemmKernel.TILE_ROWS;
+        long flopsPerColumn = 2L * left.get(0).length() * Math.min(rows, GemmKernel.TILE_ROWS);
+        int blocks = granularity.columnBlocks(bands, columns, flopsPerColumn, executor.getWorkerCount());
+        int tileCols = blocks > (columns + GemmKernel.TILE_COLS - 1) / GemmKernel.TILE_COLS
+            ? (columns + blocks - 1) / blocks : GemmKernel.TILE_COLS;
+
+        List<Runnable> tasks = new java.util.ArrayList<Runnable>();
+        for (int row = 0; row < rows; row += GemmKernel.TILE_ROWS) {
+            for (int col = 0; col < columns; col += tileCols) {
+                //Capture tile bounds for lambda scope
+                final int rowFrom = row, rowTo = Math.min(row + GemmKernel.TILE_ROWS, rows);
+                final int colFrom = col, colTo = Math.min(col + tileCols, columns);
+                Runnable multCurTile;
+                if (addend == null) {
+                    multCurTile = () -> result.multiplyTile(left, right, rowFrom, rowTo, colFrom, colTo);
+                } else {
+                    multCurTile = () -> result.multiplyAddTile(left, right, addend, rowFrom, rowTo, colFrom, colTo);
+                }
+                tasks.add(multCurTile);
+            }
+        }
+        return tasks;
+    }
+
+    public List<Runnable> createSparseMultiplyTasks(SparseMatrix left, SharedMatrix right, SharedMatrix addend, SharedMatrix result) {
+        // return tasks that each compute one band of TILE_ROWS rows of sparse left × dense right (+ addend)
+        if (left == null || right == null || result == null) {
+            throw new NullPointerException("Matrices cannot be null");
+        }
+        if (right.length() == 0) {
+            throw new IllegalArgumentException("Matrices cannot be empty");
+        }
+        //right is row-major, its vectors are the rows
+        if (left.columns() != right.length()) {
+            throw new IllegalArgumentException("Matrices dimensions do not match for multiplication");
+        }
+        int rows = left.rows();
+        int columns = right.get(0).length();
+        checkAddend(addend, rows, columns);
+        result.allocateRowMajor(rows, columns);
+        List<Runnable> tasks = new java.util.ArrayList<Runnable>();
+        for (int row = 0; row < rows; row += GemmKernel.TILE_ROWS) {
+            //Capture band bounds for lambda scope
+            final int rowFrom = row, rowTo = Math.min(row + GemmKernel.TILE_ROWS, rows);
+            tasks.add(() -> result.multiplySparseRows(left, right, addend, rowFrom, rowTo));
+        }
+        return tasks;
+    }
+
+    public List<Runnable> createMultiplyBySparseTasks(SharedMatrix left, SparseMatrix right, SharedMatrix addend, SharedMatrix result) {
+        // return tasks that each compute one band of TILE_ROWS rows of dense left × sparse right (+ addend)
+        if (left == null || right == null || result == null) {
+            throw new NullPointerException("Matrices cannot be null");
+        }
+        if (left.length() == 0) {
+            throw new IllegalArgumentException("Matrices cannot be empty");
+        }
+        //left is row-major, its vectors are the rows
+        if (left.get(0).length() != right.rows()) {
+            throw new IllegalArgumentException("Matrices dimensions do not match for multiplication");
+        }
+        int rows = left.length();
+        int columns = right.columns();
+        checkAddend(addend, rows, columns);
+        result.allocateRowMajor(rows, columns);
+        List<Runnable> tasks = new java.util.ArrayList<Runnable>();
+        for (int row = 0; row < rows; row += GemmKernel.TILE_ROWS) {
+            //Capture band bounds for lambda scope
+            final int rowFrom = row, rowTo = Math.min(row + GemmKernel.TILE_ROWS, rows);
+            tasks.add(() -> result.multiplyBySparseRows(left, right, addend, rowFrom, rowTo));
+        }
+        return tasks;
+    }
+
+    public List<Runnable> createAddSparseTasks(SharedMatrix left, SparseMatrix right, double sign) {
+        // return tasks that add sign × the sparse right into left, one band of TILE_ROWS vectors each
+        if (left == null || right == null) {
+            throw new NullPointerException("Matrices cannot be null");
+        }
+        if (left.length() == 0) {
+            throw new IllegalArgumentException("Matrices cannot be empty");
+        }
+        boolean rowMajor = left.getOrientation() == VectorOrientation.ROW_MAJOR;
+        int rows = rowMajor ? left.length() : left.get(0).length();
+        int columns = rowMajor ? left.get(0).length() : left.length();
+        if (rows != right.rows() || columns != right.columns()) {
+            throw new IllegalArgumentException("Matrices dimensions do not match for addition");
+        }
+        int vectors = left.length();
+        List<Runnable> tasks = new java.util.ArrayList<Runnable>();
+        for (int vector = 0; vector < vectors; vector += GemmKernel.TILE_ROWS) {
+            //Capture band bounds for lambda scope
+            final int from = vector, to = Math.min(vector + GemmKernel.TILE_ROWS, vectors);
+            tasks.add(() -> left.addSparse(right, sign, from, to));
+        }
+        return tasks;
+    }
+
+    // the addend of a fused product must be row-major in the product's shape
+    private void checkAddend(SharedMatrix addend, int rows, int columns) {
+        if (addend != null && (addend.getOrientation() != VectorOrientation.ROW_MAJOR
+                || addend.length() != rows || addend.get(0).length() != columns)) {
+            throw new IllegalArgumentException("Matrices dimensions do not match for addition");
+        }
+    }
+
+    public List<Runnable> createSubtractTasks(SharedMatrix left, SharedMatrix right) {
+        // return tasks that subtract right from left row by row
+        if (left == null || right == null) {
+            throw new NullPointerException("Matrices cannot be null");
+        }
+        if(left.length() != right.length() || 
+            left.get(0).length() != right.get(0).length()){
+            throw new IllegalArgumentException("Matrices dimensions do not match for addition");
+        }
+
+        return createVectorTasks(left, index -> left.get(index).subtract(right.get(index)),
+            (index, from, to) -> left.get(index).subtract(right.get(index), from, to));
+    }
+
     public List<Runnable> createNegateTasks() {
+        return createNegateTasks(leftMatrix);
+    }
+
+    public List<Runnable> createNegateTasks(SharedMatrix left) {
         // Done: return tasks that negate rows
-       if (leftMatrix == null) {
+       if (left == null) {
         throw new NullPointerException("Matrix reference is null");
         }
-        if (leftMatrix.length() == 0) {
+        if (left.length() == 0) {
             throw new IllegalArgumentException("Matrix is empty");
         }
-        List<Runnable> tasks = new java.util.LinkedList<Runnable>();
-        for (int i = 0; i < leftMatrix.length(); i++) {
-            final int index = i; //Capture index for lambda scope
-            Runnable negateCurRow = () -> {
-                    leftMatrix.get(index).negate();
-            };
-            tasks.add(negateCurRow);
-        }
-        return tasks;
+        return createVectorTasks(left, index -> left.get(index).negate(),
+            (index, from, to) -> left.get(index).negate(from, to));
     }
 
     public List<Runnable> createTransposeTasks() {
+        return createTransposeTasks(leftMatrix);
+    }
+
+    public List<Runnable> createTransposeTasks(SharedMatrix left) {
         // Done: return tasks that transpose rows
-        if (leftMatrix == null) {
+        if (left == null) {
         throw new NullPointerException("Matrix reference is null");
         }
-        if (leftMatrix.length() == 0) {
+        if (left.length() == 0) {
             throw new IllegalArgumentException("Matrix is empty");
         }
-        List<Runnable> tasks = new java.util.LinkedList<Runnable>();
-        for (int i = 0; i < leftMatrix.length(); i++) {
-            final int index = i; //Capture index for lambda scope
-            Runnable transposeCurRow = () -> {
-                    leftMatrix.get(index).transpose();
+        //flipping a vector's flag costs about as much as one element
+        int[] bounds = granularity.vectorBounds(left.length(), 1, executor.getWorkerCount());
+        List<Runnable> tasks = new ArrayList<Runnable>(bounds.length - 1);
+        for (int task = 0; task + 1 < bounds.length; task++) {
+            final int vecFrom = bounds[task], vecTo = bounds[task + 1]; //Capture range for lambda scope
+            Runnable transposeRows = () -> {
+                for (int index = vecFrom; index < vecTo; index++) {
+                    left.get(index).transpose();
+                }
             };
-            tasks.add(transposeCurRow);
+            tasks.add(transposeRows);
+        }
+        return tasks;
+    }
+
+    // an elementwise operation on elements [from, to) of one vector
+    @FunctionalInterface
+    private interface VectorBlockOp {
+        void apply(int index, int from, int to);
+    }
+
+    /**
+     * Splits an elementwise operation over the vectors of the matrix into tasks, one flop
+     * per element, by the granularity policy: ranges of whole vectors, or column blocks of
+     * every vector when there are too few vectors for the workers.
+     */
+    private List<Runnable> createVectorTasks(SharedMatrix matrix, IntConsumer wholeVector, VectorBlockOp blockOp) {
+        int count = matrix.length();
+        int vectorLength = matrix.get(0).length();
+        int workers = executor.getWorkerCount();
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        int blocks = granularity.columnBlocks(count, vectorLength, 1, workers);
+        if (blocks > 1) {
+            for (int index = 0; index < count; index++) {
+                for (int block = 0; block < blocks; block++) {
+                    //Capture block bounds for lambda scope
+                    final int vec = index, from = (int) ((long) vectorLength * block / blocks), to = (int) ((long) vectorLength * (block + 1) / blocks);
+                    tasks.add(() -> blockOp.apply(vec, from, to));
+                }
+            }
+            return tasks;
+        }
+        int[] bounds = granularity.vectorBounds(count, vectorLength, workers);
+        for (int task = 0; task + 1 < bounds.length; task++) {
+            final int vecFrom = bounds[task], vecTo = bounds[task + 1]; //Capture range for lambda scope
+            tasks.add(() -> {
+                for (int index = vecFrom; index < vecTo; index++) {
+                    wholeVector.accept(index);
+                }
+            });
         }
         return tasks;
     }
@@ -180,4 +1014,60 @@ public class LinearAlgebraEngine {
         // Done: return summary of worker activity
         return executor.getWorkerReport();
     }
+
+    // same report as getWorkerReport, for the last finished run only, work of runs overlapping it included
+    public String getRunReport() {
+        return runReport;
+    }
+
+    // rewrite rules fired on the tree of the last run
+    public ExpressionRewriter.Report getRewriteReport() {
+        return rewriter.getReport();
+    }
+
+    // nodes of the last run's tree replaced by an equal shared subexpression
+    public int getSharedSubexpressions() {
+        return subexpressions.getMergedNodes();
+    }
+
+    // nodes of the last run computed by sparse kernels
+    public int getSparseNodes() {
+        return sparseNodes.get();
+    }
+
+    // estimated flops saved by the multiplication chain ordering of the last run
+    public MatrixChainOptimizer.Report getChainReport() {
+        return chainReport;
+    }
+
+    // A resolvable node together with the tasks that compute it and the matrix they write to
+    private static class NodeJob {
+        final ComputationNode node;
+        final SharedMatrix output; // null when the result is assembled by finish, e.g. a sparse result
+        final List<Runnable> tasks;
+        final Runnable finish; // resolves the node once the tasks are done
+
+        NodeJob(ComputationNode node, SharedMatrix output, List<Runnable> tasks) {
+            this.node = node;
+            this.output = output;
+            this.tasks = tasks;
+            this.finish = () -> node.resolve(output);
+        }
+
+        NodeJob(ComputationNode node, List<Runnable> tasks, Runnable finish) {
+            this(node, null, tasks, finish);
+        }
+
+        private NodeJob(ComputationNode node, SharedMatrix output, List<Runnable> tasks, Runnable finish) {
+            this.node = node;
+            this.output = output;
+            this.tasks = tasks;
+            this.finish = finish;
+        }
+
+        // the same job running other tasks, e.g. wrapped ones
+        NodeJob withTasks(List<Runnable> newTasks) {
+            return new NodeJob(node, output, newTasks, finish);
+        }
+    }
 }
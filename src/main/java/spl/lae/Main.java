@@ -1,10 +1,23 @@
 package spl.lae;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import memory.SharedVector;
 import memory.VectorOrientation;
+import metrics.JmxSink;
+import metrics.JsonFileSink;
+import metrics.MetricsRegistry;
 import parser.*;
+import scheduling.SchedulingMode;
+import tracing.Tracer;
 
 public class Main {
 	public static void main(String[] args) throws IOException {
@@ -16,23 +29,62 @@ public class Main {
 
 		// Parse input arguments
 		int numThreads = Integer.parseInt(args[0]);
+		// -Dlae.mode=server takes a listen address instead of the input and output paths
+		if("server".equals(System.getProperty("lae.mode"))) {
+			runServer(numThreads, args[1]);
+			return;
+		}
 		String inputFilePath = args[1];
 		String outputFilePath = args[2];
 		
+		// -Dlae.mode=batch reads one expression per line and writes one result per line
+		if("batch".equals(System.getProperty("lae.mode"))) {
+			runBatch(numThreads, inputFilePath, outputFilePath);
+			return;
+		}
+
 		// Init Linear Algebra Engine and Input Parser
 		InputParser parser = new InputParser();
 		LinearAlgebraEngine engine;
+		MetricsRegistry metrics = MetricsRegistry.global();
+		Tracer tracer = Tracer.global();
+		addMetricsSinks(outputFilePath);
+		startTracing();
 		try { 
-			ComputationNode node = parser.parse(inputFilePath);			
-			engine = new LinearAlgebraEngine(numThreads);
-			ComputationNode result =engine.run(node);
-			OutputWriter.write(result.getMatrix(), outputFilePath);
+			long parseStart = System.nanoTime();
+			ComputationNode node = parser.parse(inputFilePath);
+			long parsed = metrics.timer("main.parse").recordSince(parseStart);
+			tracer.span("main", "parse", parseStart, parseStart + parsed);
+			engine = new LinearAlgebraEngine(numThreads, schedulingMode());
+			// -Dlae.output=compact streams the result rows without whitespace while they are computed
+			if("compact".equals(System.getProperty("lae.output"))) {
+				//rows are written while the root is computed, so this write phase includes the computation
+				long writeStart = System.nanoTime();
+				try (OutputWriter.RowWriter rows = OutputWriter.openRows(outputFilePath)) {
+					engine.runStreaming(node, rows);
+				}
+				long written = metrics.timer("main.write.streaming").recordSince(writeStart);
+				tracer.span("main", "write (streaming)", writeStart, writeStart + written);
+			}
+			else {
+				ComputationNode result =engine.run(node);
+				long writeStart = System.nanoTime();
+				OutputWriter.write(result.getMatrix(), outputFilePath);
+				long written = metrics.timer("main.write").recordSince(writeStart);
+				tracer.span("main", "write", writeStart, writeStart + written);
+			}
+			publishMetrics();
+			writeTrace(outputFilePath);
 			
 			boolean testing = true;
 			// Print worker report if in testing mode
 			if(testing) {
 				System.out.println("Worker report");
 				System.out.println(engine.getWorkerReport());
+				System.out.print(engine.getRewriteReport());
+				System.out.print(engine.getChainReport());
+				System.out.println("Shared subexpressions: " + engine.getSharedSubexpressions());
+				System.out.println("Sparse nodes: " + engine.getSparseNodes());
 			}
 		
 		}
@@ -42,4 +94,137 @@ public class Main {
 		}
 
 	}
+
+	/**
+	 * Evaluates every expression of an NDJSON input on one engine, several at a time.
+	 * -Dlae.batch.inflight sets how many expressions are evaluated at once (default 4).
+	 */
+	private static void runBatch(int numThreads, String inputFilePath, String outputFilePath) throws IOException {
+		int inFlight = Integer.getInteger("lae.batch.inflight", 4);
+		try (LinearAlgebraEngine engine = LinearAlgebraEngine.reusable(numThreads, schedulingMode());
+				BufferedReader in = Files.newBufferedReader(Paths.get(inputFilePath));
+				OutputWriter.LineWriter out = OutputWriter.openLines(outputFilePath)) {
+			addMetricsSinks(outputFilePath);
+			startTracing();
+			int expressions = new BatchEvaluator(engine, inFlight).evaluate(in, out);
+			publishMetrics();
+			writeTrace(outputFilePath);
+			System.out.println("Worker report");
+			System.out.println(engine.getWorkerReport());
+			System.out.println("Expressions evaluated: " + expressions);
+		}
+		catch (Exception e) {// The batch file itself could not be read
+			OutputWriter.write(e.getMessage(), outputFilePath);
+		}
+	}
+
+	/**
+	 * Serves expression trees on a local socket until the process is stopped.
+	 * The address is a port on the loopback interface, host:port, or unix:/path/to/socket.
+	 * -Dlae.server.inflight and -Dlae.server.queue set the requests evaluated at once
+	 * (default 4) and the requests waiting across all clients (default 64).
+	 */
+	private static void runServer(int numThreads, String address) throws IOException {
+		int inFlight = Integer.getInteger("lae.server.inflight", 4);
+		int queueCapacity = Integer.getInteger("lae.server.queue", 64);
+		LinearAlgebraEngine engine = LinearAlgebraEngine.reusable(numThreads, schedulingMode());
+		EvaluationServer server = new EvaluationServer(engine, inFlight, queueCapacity);
+		SocketAddress bound = server.start(parseAddress(address));
+		//a server has no output file, its metrics are only served over JMX, live
+		addMetricsSinks(null);
+		publishMetrics();
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			try {
+				server.close();
+			}
+			catch (IOException e) {
+				System.err.println("Failed to close the server: " + e.getMessage());
+			}
+			engine.close();
+		}));
+		System.out.println("Listening on " + bound);
+		try {
+			server.awaitClose();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * -Dlae.scheduling picks the executor: handoff (default), work_stealing, or virtual_threads,
+	 * where the thread count bounds how many tasks run at once on virtual threads.
+	 */
+	private static SchedulingMode schedulingMode() {
+		return SchedulingMode.valueOf(System.getProperty("lae.scheduling", "handoff").trim().toUpperCase());
+	}
+
+	/**
+	 * -Dlae.metrics=json,jmx (either or both) publishes the metrics at the end of the run:
+	 * json writes them next to the output file, out.json getting out.metrics.json, and jmx
+	 * serves them live as the lae:type=Metrics MBean.
+	 */
+	private static void addMetricsSinks(String outputFilePath) {
+		String sinks = System.getProperty("lae.metrics", "");
+		for (String sink : sinks.split(",")) {
+			sink = sink.trim();
+			if (sink.equals("json") && outputFilePath != null) {
+				MetricsRegistry.global().addSink(JsonFileSink.nextTo(outputFilePath));
+			}
+			else if (sink.equals("jmx")) {
+				MetricsRegistry.global().addSink(new JmxSink());
+			}
+		}
+	}
+
+	private static void publishMetrics() {
+		try {
+			MetricsRegistry.global().publish();
+		}
+		catch (IOException e) {
+			System.err.println("Failed to publish the metrics: " + e.getMessage());
+		}
+	}
+
+	/**
+	 * -Dlae.trace=true records a timeline of the run: the parse and write phases, every node,
+	 * task and executor barrier. It is written next to the output file, out.json getting
+	 * out.trace.json, in Chrome Trace Event format for Perfetto or chrome://tracing.
+	 * With -Dlae.output=compact the rows are written while they are computed, so the write
+	 * phase is "write (streaming)" (timer main.write.streaming) and spans the computation too.
+	 */
+	private static void startTracing() {
+		if(Boolean.getBoolean("lae.trace")) {
+			Tracer.global().start();
+		}
+	}
+
+	private static void writeTrace(String outputFilePath) {
+		Tracer tracer = Tracer.global();
+		if(!tracer.isEnabled()) {
+			return;
+		}
+		tracer.stop();
+		Path output = Paths.get(outputFilePath);
+		String name = output.getFileName().toString();
+		int dot = name.lastIndexOf('.');
+		Path trace = output.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".trace.json");
+		try {
+			tracer.writeChromeTrace(trace);
+		}
+		catch (IOException e) {
+			System.err.println("Failed to write the trace: " + e.getMessage());
+		}
+	}
+
+	private static SocketAddress parseAddress(String address) {
+		if(address.startsWith("unix:")) {
+			return UnixDomainSocketAddress.of(address.substring("unix:".length()));
+		}
+		int colon = address.lastIndexOf(':');
+		if(colon < 0) {
+			return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address));
+		}
+		return new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1)));
+	}
 }
\ No newline at end of file
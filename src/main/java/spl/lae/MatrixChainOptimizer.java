@@ -0,0 +1,148 @@
+package spl.lae;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+
+/**
+ * Chooses the multiplication order of n-ary MULTIPLY nodes before execution.
+ * Runs the classic dynamic-programming matrix-chain ordering on the operand shapes and
+ * nests the operands in the cheapest order, instead of the left-to-right nesting that
+ * ComputationNode.associativeNesting uses. Other operators are left alone.
+ * Flops are estimated as 2 * p * q * r for a (p x q) * (q x r) product.
+ */
+public class MatrixChainOptimizer {
+
+    /**
+     * Estimated flops of every optimized chain, compared with the left-to-right order.
+     */
+    public static class Report {
+        private int chains = 0;
+        private long leftNestedFlops = 0;
+        private long optimizedFlops = 0;
+
+        public int getChains() {
+            return chains;
+        }
+
+        public long getLeftNestedFlops() {
+            return leftNestedFlops;
+        }
+
+        public long getOptimizedFlops() {
+            return optimizedFlops;
+        }
+
+        public long getFlopsSaved() {
+            return leftNestedFlops - optimizedFlops;
+        }
+
+        @Override
+        public String toString() {
+            return "Multiplication chains: " + chains + " Left-nested flops: " + leftNestedFlops
+                + " Optimized flops: " + optimizedFlops + " Flops saved: " + getFlopsSaved() + "\n";
+        }
+    }
+
+    /**
+     * Reorders every MULTIPLY chain of three or more operands in the tree, in place.
+     * Chains whose shapes do not match are skipped, so execution reports the mismatch as before.
+     */
+    public Report optimize(ComputationNode root) {
+        if (root == null) {
+            throw new NullPointerException("Computation tree root is null");
+        }
+        Report report = new Report();
+        shapeOf(root, report);
+        return report;
+    }
+
+    // returns {rows, columns} of the node's result, reordering chains below it on the way
+    private long[] shapeOf(ComputationNode node, Report report) {
+        if (node.getNodeType() == ComputationNodeType.MATRIX) {
+            return NodeShapes.ofMatrix(node);
+        }
+        List<ComputationNode> children = node.getChildren();
+        long[][] shapes = new long[children.size()][];
+        for (int i = 0; i < children.size(); i++) {
+            shapes[i] = shapeOf(children.get(i), report);
+        }
+        switch (node.getNodeType()) {
+            case TRANSPOSE:
+                return new long[]{shapes[0][1], shapes[0][0]};
+            case MULTIPLY:
+                if (children.size() > 2 && chainMatches(shapes)) {
+                    reorder(node, shapes, report);
+                }
+                return new long[]{shapes[0][0], shapes[shapes.length - 1][1]};
+            default:
+                //ADD and NEGATE keep the shape of their first operand
+                return shapes[0];
+        }
+    }
+
+    private boolean chainMatches(long[][] shapes) {
+        for (int i = 1; i < shapes.length; i++) {
+            if (shapes[i - 1][1] != shapes[i][0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // runs the chain ordering and replaces the node's operands with the nested binary products
+    private void reorder(ComputationNode node, long[][] shapes, Report report) {
+        int n = shapes.length;
+        //operand i is dims[i] x dims[i + 1]
+        long[] dims = new long[n + 1];
+        for (int i = 0; i < n; i++) {
+            dims[i] = shapes[i][0];
+        }
+        dims[n] = shapes[n - 1][1];
+
+        long[][] cost = new long[n][n];
+        int[][] split = new int[n][n];
+        for (int length = 2; length <= n; length++) {
+            for (int i = 0; i + length - 1 < n; i++) {
+                int j = i + length - 1;
+                cost[i][j] = Long.MAX_VALUE;
+                for (int k = i; k < j; k++) {
+                    long candidate = cost[i][k] + cost[k + 1][j] + 2 * dims[i] * dims[k + 1] * dims[j + 1];
+                    //on ties the later split wins, which keeps the left-to-right order
+                    if (candidate <= cost[i][j]) {
+                        cost[i][j] = candidate;
+                        split[i][j] = k;
+                    }
+                }
+            }
+        }
+
+        long leftNested = 0;
+        for (int j = 1; j < n; j++) {
+            leftNested += 2 * dims[0] * dims[j] * dims[j + 1];
+        }
+        report.chains++;
+        report.leftNestedFlops += leftNested;
+        report.optimizedFlops += cost[0][n - 1];
+
+        List<ComputationNode> operands = node.getChildren();
+        int k = split[0][n - 1];
+        List<ComputationNode> nested = new ArrayList<>();
+        nested.add(build(operands, split, 0, k));
+        nested.add(build(operands, split, k + 1, n - 1));
+        node.setChildren(nested);
+    }
+
+    private ComputationNode build(List<ComputationNode> operands, int[][] split, int i, int j) {
+        if (i == j) {
+            return operands.get(i);
+        }
+        int k = split[i][j];
+        List<ComputationNode> children = new ArrayList<>();
+        children.add(build(operands, split, i, k));
+        children.add(build(operands, split, k + 1, j));
+        return new ComputationNode(ComputationNodeType.MULTIPLY, children);
+    }
+}
@@ -0,0 +1,36 @@
+package spl.lae;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One node of the expression tree, from the start of its preparation until its last task is
+ * done. It begins on the planning thread and is committed by the worker that ran that task.
+ */
+@Name("lae.NodeResolution")
+@Label("Node Resolution")
+@Description("An operator of the expression tree prepared and computed by the engine")
+@Category({"Linear Algebra Engine", "Engine"})
+@StackTrace(false)
+class NodeResolutionEvent extends Event {
+
+    @Label("Operator")
+    String operator;
+
+    @Label("Rows")
+    long rows;
+
+    @Label("Columns")
+    long columns;
+
+    @Label("Tasks")
+    int tasks;
+
+    @Label("Flops")
+    @Description("Dense-equivalent flops of a product, 0 for the other operators")
+    long flops;
+}
@@ -0,0 +1,61 @@
+package spl.lae;
+
+import java.util.List;
+
+import memory.SharedMatrix;
+import memory.SparseMatrix;
+import memory.VectorOrientation;
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+
+/**
+ * Shape inference over the computation tree, shared by the planning passes.
+ * Shapes are {rows, columns}. Operands with mismatched shapes are not rejected here,
+ * execution reports them.
+ */
+final class NodeShapes {
+
+    private NodeShapes() {}
+
+    static long[] of(ComputationNode node) {
+        if (node.getNodeType() == ComputationNodeType.MATRIX) {
+            return ofMatrix(node);
+        }
+        List<ComputationNode> children = node.getChildren();
+        switch (node.getNodeType()) {
+            case TRANSPOSE: {
+                long[] shape = of(children.get(0));
+                return new long[]{shape[1], shape[0]};
+            }
+            case MULTIPLY:
+                return new long[]{of(children.get(0))[0], of(children.get(children.size() - 1))[1]};
+            case MULTIPLY_ADD:
+                return new long[]{of(children.get(0))[0], of(children.get(1))[1]};
+            default:
+                //ADD, SUBTRACT and NEGATE keep the shape of their first operand
+                return of(children.get(0));
+        }
+    }
+
+    // shape of a resolved node, without materializing a result kept as SharedMatrix or SparseMatrix
+    static long[] ofMatrix(ComputationNode node) {
+        SharedMatrix computed = node.getComputedMatrix();
+        if (computed != null) {
+            long vectors = computed.length();
+            long vectorLength = computed.get(0).length();
+            return computed.getOrientation() == VectorOrientation.ROW_MAJOR
+                ? new long[]{vectors, vectorLength} : new long[]{vectorLength, vectors};
+        }
+        SparseMatrix sparse = node.getComputedSparse();
+        if (sparse != null) {
+            return new long[]{sparse.rows(), sparse.columns()};
+        }
+        double[][] matrix = node.getMatrix();
+        return new long[]{matrix.length, matrix.length == 0 ? 0 : matrix[0].length};
+    }
+
+    static long size(ComputationNode node) {
+        long[] shape = of(node);
+        return shape[0] * shape[1];
+    }
+}
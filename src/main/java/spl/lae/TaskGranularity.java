@@ -0,0 +1,104 @@
+package spl.lae;
+
+/**
+ * How the engine splits an operation over the vectors of a matrix into tasks.
+ * AUTO (the default) sizes tasks by estimated flops and the number of workers: as long as
+ * there are at most TASKS_PER_WORKER vectors per worker every vector gets a task of its own,
+ * more vectors are grouped into ranges of at least MIN_TASK_FLOPS, and too few long vectors
+ * to keep the workers busy are split into column blocks.
+ * ROW keeps one task per vector, and rows(n) gives every task n whole vectors.
+ * The initial policy comes from -Dlae.tasks=auto|row|&lt;vectors per task&gt;.
+ */
+public final class TaskGranularity {
+
+    // below this many flops a task costs more to hand off than to run
+    static final long MIN_TASK_FLOPS = 1 << 14;
+    // a few tasks per worker, so the faster workers can take the leftovers of the slower ones
+    static final int TASKS_PER_WORKER = 4;
+
+    public static final TaskGranularity AUTO = new TaskGranularity(0);
+    public static final TaskGranularity ROW = new TaskGranularity(1);
+
+    private final int vectorsPerTask; // 0 for AUTO
+
+    private TaskGranularity(int vectorsPerTask) {
+        this.vectorsPerTask = vectorsPerTask;
+    }
+
+    public static TaskGranularity rows(int vectorsPerTask) {
+        if (vectorsPerTask < 1) {
+            throw new IllegalArgumentException("Vectors per task must be positive");
+        }
+        return vectorsPerTask == 1 ? ROW : new TaskGranularity(vectorsPerTask);
+    }
+
+    // parses auto, row or a number of vectors per task
+    public static TaskGranularity parse(String value) {
+        if (value == null || value.equalsIgnoreCase("auto")) {
+            return AUTO;
+        }
+        if (value.equalsIgnoreCase("row")) {
+            return ROW;
+        }
+        try {
+            return rows(Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Task granularity must be auto, row or a number of rows: " + value);
+        }
+    }
+
+    static TaskGranularity fromProperty() {
+        return parse(System.getProperty("lae.tasks", "auto"));
+    }
+
+    public boolean isAuto() {
+        return vectorsPerTask == 0;
+    }
+
+    /**
+     * Splits count vectors, each costing flopsPerVector, into tasks of whole vectors.
+     * Returns the task bounds: task i covers vectors [bounds[i], bounds[i + 1]), the last bound is count.
+     */
+    public int[] vectorBounds(int count, long flopsPerVector, int workers) {
+        if (count < 1 || workers < 1) {
+            throw new IllegalArgumentException("Vector and worker counts must be positive");
+        }
+        int perTask = vectorsPerTask;
+        if (isAuto()) {
+            long target = (long) workers * TASKS_PER_WORKER;
+            if (count <= target) {
+                perTask = 1;
+            } else {
+                long forFlops = (MIN_TASK_FLOPS + Math.max(flopsPerVector, 1) - 1) / Math.max(flopsPerVector, 1);
+                long forWorkers = (count + target - 1) / target;
+                perTask = (int) Math.min(count, Math.max(forFlops, forWorkers));
+            }
+        }
+        int tasks = (count + perTask - 1) / perTask;
+        int[] bounds = new int[tasks + 1];
+        for (int task = 0; task < tasks; task++) {
+            bounds[task] = task * perTask;
+        }
+        bounds[tasks] = count;
+        return bounds;
+    }
+
+    /**
+     * Number of column blocks every vector is split into, 1 to keep the vectors whole.
+     * Only AUTO splits, and only when there are fewer vectors than workers and each block
+     * still has MIN_TASK_FLOPS of work.
+     */
+    public int columnBlocks(int count, int vectorLength, long flopsPerElement, int workers) {
+        if (!isAuto() || count >= workers) {
+            return 1;
+        }
+        long wanted = ((long) workers * TASKS_PER_WORKER + count - 1) / count;
+        long affordable = (long) vectorLength * Math.max(flopsPerElement, 1) / MIN_TASK_FLOPS;
+        return (int) Math.max(1, Math.min(Math.min(wanted, affordable), vectorLength));
+    }
+
+    @Override
+    public String toString() {
+        return isAuto() ? "auto" : vectorsPerTask == 1 ? "row" : vectorsPerTask + " rows";
+    }
+}
@@ -0,0 +1,102 @@
+package tracing;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Chrome Trace Event format: a traceEvents array of events with ph (phase), ts and dur in
+ * microseconds, pid and tid. X is a complete event, b and e the two ends of an async one,
+ * M names the process and the threads.
+ */
+final class ChromeTraceWriter {
+
+    private static final int PID = 1;
+    private static final JsonFactory factory = new JsonFactory();
+
+    private ChromeTraceWriter() {}
+
+    static void write(Tracer tracer, Path path) throws IOException {
+        long origin = tracer.origin();
+        try (JsonGenerator json = factory.createGenerator(path.toFile(), JsonEncoding.UTF8)) {
+            json.writeStartObject();
+            json.writeStringField("displayTimeUnit", "ms");
+            json.writeArrayFieldStart("traceEvents");
+            metadata(json, "process_name", 0, "lae");
+            for (TraceBuffer buffer : tracer.buffers()) {
+                metadata(json, "thread_name", buffer.threadId, buffer.threadName);
+                List<Span> spans = new ArrayList<>();
+                buffer.copyTo(spans);
+                for (Span span : spans) {
+                    if (span.isAsync()) {
+                        asyncEnd(json, span, buffer.threadId, 'b', span.begin - origin);
+                        asyncEnd(json, span, buffer.threadId, 'e', span.end - origin);
+                    }
+                    else {
+                        complete(json, span, buffer.threadId, origin);
+                    }
+                }
+            }
+            json.writeEndArray();
+            json.writeEndObject();
+        }
+    }
+
+    private static void metadata(JsonGenerator json, String name, long tid, String value) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("ph", "M");
+        json.writeStringField("name", name);
+        json.writeNumberField("pid", PID);
+        json.writeNumberField("tid", tid);
+        json.writeObjectFieldStart("args");
+        json.writeStringField("name", value);
+        json.writeEndObject();
+        json.writeEndObject();
+    }
+
+    private static void complete(JsonGenerator json, Span span, long tid, long origin) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("ph", "X");
+        common(json, span, tid, span.begin - origin);
+        json.writeNumberField("dur", micros(Math.max(0, span.end - span.begin)));
+        args(json, span);
+        json.writeEndObject();
+    }
+
+    // the async begin is written with the span's arguments, the end without
+    private static void asyncEnd(JsonGenerator json, Span span, long tid, char phase, long at) throws IOException {
+        json.writeStartObject();
+        json.writeStringField("ph", String.valueOf(phase));
+        common(json, span, tid, at);
+        json.writeStringField("id", "0x" + Long.toHexString(span.id));
+        if (phase == 'b') {
+            args(json, span);
+        }
+        json.writeEndObject();
+    }
+
+    private static void common(JsonGenerator json, Span span, long tid, long at) throws IOException {
+        json.writeStringField("cat", span.category);
+        json.writeStringField("name", span.name);
+        json.writeNumberField("pid", PID);
+        json.writeNumberField("tid", tid);
+        json.writeNumberField("ts", micros(at));
+    }
+
+    private static void args(JsonGenerator json, Span span) throws IOException {
+        if (span.argName != null) {
+            json.writeObjectFieldStart("args");
+            json.writeNumberField(span.argName, span.arg);
+            json.writeEndObject();
+        }
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1000.0;
+    }
+}
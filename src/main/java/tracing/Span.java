@@ -0,0 +1,30 @@
+package tracing;
+
+/**
+ * One recorded interval. A span is a complete event on the thread that recorded it, an async
+ * span (id != 0) may begin on one thread and end on another, like a node of the tree.
+ * argName and arg are a single numeric argument, argName null for none.
+ */
+final class Span {
+    final String category;
+    final String name;
+    final long id;
+    final long begin;
+    final long end;
+    final String argName;
+    final long arg;
+
+    Span(String category, String name, long id, long begin, long end, String argName, long arg) {
+        this.category = category;
+        this.name = name;
+        this.id = id;
+        this.begin = begin;
+        this.end = end;
+        this.argName = argName;
+        this.arg = arg;
+    }
+
+    boolean isAsync() {
+        return id != 0;
+    }
+}
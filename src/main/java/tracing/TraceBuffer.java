@@ -0,0 +1,59 @@
+package tracing;
+
+import java.util.List;
+
+/**
+ * The spans of one thread. Only the owning thread appends, so appending takes no lock:
+ * the span is stored first and the volatile size published after it, and readers never
+ * look past the size they read. Spans go into fixed-size chunks that are never moved,
+ * only the small array of chunks is copied when it fills up.
+ */
+final class TraceBuffer {
+
+    static final int CHUNK_SIZE = 1024;
+
+    final long threadId;
+    final String threadName;
+    final int generation; // the Tracer generation this buffer belongs to, see Tracer.clear
+
+    private volatile Span[][] chunks = new Span[4][];
+    private volatile int size = 0;
+
+    TraceBuffer(Thread owner, int generation) {
+        this.threadId = owner.threadId();
+        this.threadName = owner.getName();
+        this.generation = generation;
+    }
+
+    // owner thread only
+    void append(Span span) {
+        int index = size;
+        int chunk = index / CHUNK_SIZE;
+        Span[][] current = chunks;
+        if (chunk == current.length) {
+            Span[][] grown = new Span[current.length * 2][];
+            System.arraycopy(current, 0, grown, 0, current.length);
+            current = grown;
+            chunks = grown;
+        }
+        if (current[chunk] == null) {
+            current[chunk] = new Span[CHUNK_SIZE];
+        }
+        current[chunk][index % CHUNK_SIZE] = span;
+        //publishes the span, and the chunks it lives in, to readers
+        size = index + 1;
+    }
+
+    // any thread: adds the spans published so far
+    void copyTo(List<Span> out) {
+        int count = size;
+        Span[][] current = chunks;
+        for (int i = 0; i < count; i++) {
+            out.add(current[i / CHUNK_SIZE][i % CHUNK_SIZE]);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,121 @@
+package tracing;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records timestamped spans of the engine, the executor and the main phases, to be opened as
+ * a timeline (see writeChromeTrace). Recording is off until start(), and the instrumented code
+ * checks isEnabled() before taking any timestamp of its own.
+ * Every thread appends to a buffer of its own without locking. A thread's buffer is registered
+ * once, on its first span, through a lock-free queue.
+ * Timestamps are System.nanoTime() values.
+ */
+public class Tracer {
+
+    private static final Tracer GLOBAL = new Tracer();
+
+    private volatile boolean enabled = false;
+    private volatile long origin = System.nanoTime(); // time 0 of the exported timeline
+    private volatile int generation = 0;
+    private volatile ConcurrentLinkedQueue<TraceBuffer> buffers = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<TraceBuffer> local = new ThreadLocal<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    public static Tracer global() {
+        return GLOBAL;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // starts recording, the timeline begins now
+    public void start() {
+        origin = System.nanoTime();
+        enabled = true;
+    }
+
+    public void stop() {
+        enabled = false;
+    }
+
+    /**
+     * Drops every recorded span. Threads still recording move on to fresh buffers,
+     * a span appended while this runs may be kept or lost.
+     */
+    public void clear() {
+        generation++;
+        buffers = new ConcurrentLinkedQueue<>();
+    }
+
+    // a unique id for an async span
+    public long nextId() {
+        return nextId.getAndIncrement();
+    }
+
+    /** Records an interval of the calling thread, between two System.nanoTime() values. */
+    public void span(String category, String name, long begin, long end) {
+        span(category, name, begin, end, null, 0);
+    }
+
+    public void span(String category, String name, long begin, long end, String argName, long arg) {
+        if (enabled) {
+            buffer().append(new Span(category, name, 0, begin, end, argName, arg));
+        }
+    }
+
+    /**
+     * Records an interval that is not bound to a thread, e.g. from the start of a node's
+     * preparation until its last task is done. id must come from nextId().
+     */
+    public void async(String category, String name, long id, long begin, long end, String argName, long arg) {
+        if (id == 0) {
+            throw new IllegalArgumentException("Async spans need an id from nextId()");
+        }
+        if (enabled) {
+            buffer().append(new Span(category, name, id, begin, end, argName, arg));
+        }
+    }
+
+    private TraceBuffer buffer() {
+        TraceBuffer buffer = local.get();
+        int current = generation;
+        if (buffer == null || buffer.generation != current) {
+            buffer = new TraceBuffer(Thread.currentThread(), current);
+            local.set(buffer);
+            buffers.add(buffer);
+        }
+        return buffer;
+    }
+
+    // the buffers recorded so far, with the spans published so far
+    List<TraceBuffer> buffers() {
+        return new ArrayList<>(buffers);
+    }
+
+    long origin() {
+        return origin;
+    }
+
+    public int spanCount() {
+        int count = 0;
+        for (TraceBuffer buffer : buffers) {
+            count += buffer.size();
+        }
+        return count;
+    }
+
+    /**
+     * Writes the recorded spans as Chrome Trace Event JSON, which Perfetto (ui.perfetto.dev)
+     * and chrome://tracing open. Threads are named after the workers, spans of a thread are
+     * complete events and async spans get a track of their own.
+     */
+    public void writeChromeTrace(Path path) throws IOException {
+        ChromeTraceWriter.write(this, path);
+    }
+}
@@ -0,0 +1,111 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import parser.InputParser;
+import parser.OutputWriter;
+import spl.lae.BatchEvaluator;
+import spl.lae.LinearAlgebraEngine;
+
+public class TestBatchEvaluator {
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    // evaluates the lines as a batch and returns the written lines
+    private List<String> evaluate(String input, int inFlight) throws IOException {
+        Path output = tempDir.resolve("out.ndjson");
+        try (LinearAlgebraEngine engine = LinearAlgebraEngine.reusable(4);
+                OutputWriter.LineWriter out = OutputWriter.openLines(output.toString())) {
+            new BatchEvaluator(engine, inFlight).evaluate(new BufferedReader(new StringReader(input)), out);
+        }
+        return Files.readAllLines(output);
+    }
+
+    // a square product big enough to still be running when the small expressions after it finish
+    private String bigProduct(int n) {
+        StringBuilder matrix = new StringBuilder("[");
+        for (int i = 0; i < n; i++) {
+            matrix.append(i == 0 ? "[" : ",[");
+            for (int j = 0; j < n; j++) {
+                matrix.append(j == 0 ? "" : ",").append(i == j ? 2 : 0);
+            }
+            matrix.append("]");
+        }
+        matrix.append("]");
+        return "{\"operator\":\"*\",\"operands\":[" + matrix + "," + matrix + "]}";
+    }
+
+    @Test
+    @DisplayName("Positive Test: Results are written in input order")
+    public void testResultsInInputOrder() throws IOException {
+        StringBuilder input = new StringBuilder(bigProduct(300)).append("\n");
+        for (int i = 0; i < 20; i++) {
+            input.append("{\"operator\":\"+\",\"operands\":[[[").append(i).append("]],[[1]]]}\n");
+        }
+        List<String> lines = evaluate(input.toString(), 4);
+
+        assertEquals(21, lines.size());
+        JsonNode first = mapper.readTree(lines.get(0));
+        assertEquals(300, first.get("result").size());
+        assertEquals(4.0, first.get("result").get(7).get(7).asDouble());
+        for (int i = 0; i < 20; i++) {
+            assertEquals("{\"result\":[[" + (i + 1) + ".0]]}", lines.get(i + 1), "Line " + (i + 1));
+        }
+    }
+
+    @Test
+    @DisplayName("Negative Test: A failing expression gets an error line and the batch goes on")
+    public void testErrorLines() throws IOException {
+        String input = "{\"operator\":\"+\",\"operands\":[[[1,2]],[[3,4]]]}\n"
+            + "{\"operator\":\"*\",\"operands\":[[[1,2]],[[3,4]]]}\n"
+            + "\n"
+            + "[1,2,3]\n"
+            + "{\"operator\":\"-\",\"operands\":[[[1,2]]]}\n";
+        List<String> lines = evaluate(input, 2);
+
+        assertEquals(4, lines.size(), "The blank line is skipped");
+        assertEquals("{\"result\":[[4.0,6.0]]}", lines.get(0));
+        assertEquals("Matrices dimensions do not match for multiplication", mapper.readTree(lines.get(1)).get("error").asText());
+        assertEquals("{\"error\":\"Vectors (1D arrays) are not supported as standalone nodes.\"}", lines.get(2));
+        assertEquals("{\"result\":[[-1.0,-2.0]]}", lines.get(3));
+    }
+
+    @Test
+    @DisplayName("Positive Test: Batch results match single runs")
+    public void testMatchesSingleRuns() throws Exception {
+        String[] expressions = {
+            "{\"operator\":\"*\",\"operands\":[[[1,2],[3,4]],{\"operator\":\"T\",\"operands\":[[[5,6],[7,8]]]}]}",
+            "{\"operator\":\"+\",\"operands\":[{\"operator\":\"-\",\"operands\":[[[1.5,2]]]},[[3,4]],[[0.25,1]]]}",
+            "{\"operator\":\"*\",\"operands\":[[[1,2,3]],[[1],[2],[3]],[[2,0.5]]]}"
+        };
+        List<String> lines = evaluate(String.join("\n", expressions), 3);
+
+        InputParser parser = new InputParser();
+        for (int i = 0; i < expressions.length; i++) {
+            double[][] expected = new LinearAlgebraEngine(2).run(parser.parseExpression(expressions[i])).getMatrix();
+            double[][] actual = mapper.treeToValue(mapper.readTree(lines.get(i)).get("result"), double[][].class);
+            assertArrayEquals(expected, actual, "Expression " + i);
+        }
+    }
+
+    @Test
+    @DisplayName("Negative Test: A one-shot engine cannot evaluate a batch")
+    public void testNeedsReusableEngine() {
+        LinearAlgebraEngine engine = new LinearAlgebraEngine(1);
+        assertThrows(IllegalArgumentException.class, () -> new BatchEvaluator(engine, 2));
+        engine.close();
+    }
+}
@@ -0,0 +1,179 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import spl.lae.EvaluationServer;
+import spl.lae.LinearAlgebraEngine;
+
+public class TestEvaluationServer {
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    private static final SocketAddress LOOPBACK = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+    /**
+     * Sends all the lines on one connection from a sender thread while reading the
+     * responses, like a pipelining client, and returns the response lines.
+     */
+    private List<String> send(SocketAddress address, List<String> lines) throws Exception {
+        StandardProtocolFamily family = address instanceof UnixDomainSocketAddress
+            ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET;
+        try (SocketChannel channel = SocketChannel.open(family)) {
+            channel.connect(address);
+            AtomicReference<IOException> failure = new AtomicReference<>();
+            Thread sender = new Thread(() -> {
+                try {
+                    ByteBuffer request = ByteBuffer.wrap((String.join("\n", lines) + "\n").getBytes(StandardCharsets.UTF_8));
+                    while (request.hasRemaining()) {
+                        channel.write(request);
+                    }
+                    channel.shutdownOutput();
+                } catch (IOException e) {
+                    failure.set(e);
+                }
+            });
+            sender.start();
+
+            List<String> responses = new ArrayList<>();
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (b == '\n') {
+                        responses.add(line.toString(StandardCharsets.UTF_8));
+                        line.reset();
+                    } else {
+                        line.write(b);
+                    }
+                }
+                buffer.clear();
+            }
+            sender.join();
+            if (failure.get() != null) {
+                throw failure.get();
+            }
+            return responses;
+        }
+    }
+
+    private String sum(int a, int b) {
+        return "{\"operator\":\"+\",\"operands\":[[[" + a + ",1]],[[" + b + ",2]]]}";
+    }
+
+    /**
+     * Drives the server from several client threads at once, each one sending its own
+     * sums pipelined on its own connection, and checks every response and its order.
+     */
+    private void generateLoad(SocketAddress address, int clients, int requestsPerClient) throws Exception {
+        List<Thread> threads = new ArrayList<>();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int c = 0; c < clients; c++) {
+            final int client = c; //Capture client for lambda scope
+            Thread thread = new Thread(() -> {
+                try {
+                    List<String> lines = new ArrayList<>();
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        lines.add(sum(client, i));
+                    }
+                    List<String> responses = send(address, lines);
+                    assertEquals(requestsPerClient, responses.size(), "Client " + client);
+                    for (int i = 0; i < requestsPerClient; i++) {
+                        assertEquals("{\"result\":[[" + (client + i) + ".0,3.0]]}", responses.get(i),
+                            "Client " + client + " request " + i);
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        if (failure.get() != null) {
+            fail("Load generator failed", failure.get());
+        }
+    }
+
+    private JsonNode metrics(SocketAddress address) throws Exception {
+        List<String> responses = send(address, List.of(EvaluationServer.METRICS_COMMAND));
+        assertEquals(1, responses.size());
+        return mapper.readTree(responses.get(0));
+    }
+
+    @Test
+    @DisplayName("Positive Test: Concurrent loopback clients get their own results in order")
+    public void testLoopbackLoad() throws Exception {
+        try (LinearAlgebraEngine engine = LinearAlgebraEngine.reusable(4);
+                EvaluationServer server = new EvaluationServer(engine, 4, 16)) {
+            SocketAddress address = server.start(LOOPBACK);
+            generateLoad(address, 8, 50);
+
+            JsonNode metrics = metrics(address);
+            assertEquals(400, metrics.get("requests").asLong());
+            assertEquals(0, metrics.get("errors").asLong());
+            assertTrue(metrics.get("p50Micros").asLong() <= metrics.get("p99Micros").asLong());
+            assertTrue(metrics.get("p99Micros").asLong() <= metrics.get("maxMicros").asLong());
+            assertTrue(metrics.get("maxMicros").asLong() > 0);
+        }
+    }
+
+    @Test
+    @DisplayName("Positive Test: A full queue slows clients down instead of dropping requests")
+    public void testBackPressure() throws Exception {
+        try (LinearAlgebraEngine engine = LinearAlgebraEngine.reusable(2);
+                EvaluationServer server = new EvaluationServer(engine, 1, 2)) {
+            SocketAddress address = server.start(LOOPBACK);
+            generateLoad(address, 4, 30);
+
+            JsonNode metrics = metrics(address);
+            assertEquals(120, metrics.get("requests").asLong());
+            assertEquals(0, metrics.get("queued").asInt());
+        }
+    }
+
+    @Test
+    @DisplayName("Negative Test: Errors come back in the ErrorMessage shape over a Unix-domain socket")
+    public void testUnixSocketErrors() throws Exception {
+        try (LinearAlgebraEngine engine = LinearAlgebraEngine.reusable(2);
+                EvaluationServer server = new EvaluationServer(engine, 2, 4)) {
+            SocketAddress address = server.start(UnixDomainSocketAddress.of(tempDir.resolve("lae.sock")));
+            List<String> responses = send(address, List.of(
+                sum(1, 2),
+                "{\"operator\":\"*\",\"operands\":[[[1,2]],[[3,4]]]}",
+                "not json",
+                "{\"operator\":\"T\",\"operands\":[[[1,2]]]}"));
+
+            assertEquals(4, responses.size());
+            assertEquals("{\"result\":[[3.0,3.0]]}", responses.get(0));
+            assertEquals("Matrices dimensions do not match for multiplication", mapper.readTree(responses.get(1)).get("error").asText());
+            assertTrue(mapper.readTree(responses.get(2)).has("error"));
+            assertEquals("{\"result\":[[1.0],[2.0]]}", responses.get(3));
+            assertEquals(2, metrics(address).get("errors").asLong());
+        }
+    }
+}
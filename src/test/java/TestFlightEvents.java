@@ -0,0 +1,192 @@
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import memory.SharedVector;
+import memory.VectorOrientation;
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+import scheduling.SchedulingMode;
+import scheduling.TiredExecutor;
+import spl.lae.LinearAlgebraEngine;
+
+public class TestFlightEvents {
+
+    private static final String[] EVENTS = {
+        "lae.NodeResolution", "lae.TaskExecution", "lae.HandoffWait", "lae.VectorLockWait"
+    };
+
+    @TempDir
+    Path tempDir;
+
+    private Recording recording;
+
+    @BeforeEach
+    public void startRecording() {
+        recording = new Recording();
+        //no thresholds, so the short waits of a test are kept
+        for (String event : EVENTS) {
+            recording.enable(event).withThreshold(Duration.ZERO);
+        }
+        recording.start();
+    }
+
+    @AfterEach
+    public void closeRecording() {
+        recording.close();
+    }
+
+    // stops the recording and returns its events of the given name
+    private List<RecordedEvent> events(String name) throws Exception {
+        recording.stop();
+        Path file = tempDir.resolve("test.jfr");
+        recording.dump(file);
+        List<RecordedEvent> events = new ArrayList<>();
+        for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+            if (event.getEventType().getName().equals(name)) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    @Nested
+    @DisplayName("Engine events")
+    class EngineEventTests {
+
+        @Test
+        @DisplayName("Positive Test: Every node is recorded with its shape, tasks and flops")
+        public void testNodeResolution() throws Exception {
+            double[][] a = new double[12][8];
+            double[][] b = new double[8][5];
+            new LinearAlgebraEngine(2).run(TestLAE.node(ComputationNodeType.NEGATE,
+                TestLAE.node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b)))).getMatrix();
+
+            List<RecordedEvent> nodes = events("lae.NodeResolution");
+            RecordedEvent product = nodes.stream()
+                .filter(e -> "MULTIPLY".equals(e.getString("operator"))).findFirst().orElseThrow();
+            assertEquals(12, product.getLong("rows"));
+            assertEquals(5, product.getLong("columns"));
+            assertEquals(2L * 12 * 8 * 5, product.getLong("flops"));
+            assertTrue(product.getInt("tasks") > 0);
+            assertTrue(nodes.stream().anyMatch(e -> "NEGATE".equals(e.getString("operator"))));
+        }
+    }
+
+    @Nested
+    @DisplayName("Executor events")
+    class ExecutorEventTests {
+
+        @Test
+        @DisplayName("Positive Test: Every task is recorded with its worker and fatigue")
+        public void testTaskExecution() throws Exception {
+            TiredExecutor executor = new TiredExecutor(2);
+            List<Runnable> tasks = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                tasks.add(() -> {});
+            }
+            executor.submitAll(tasks);
+            executor.shutdown();
+
+            List<RecordedEvent> recorded = events("lae.TaskExecution");
+            assertEquals(6, recorded.size());
+            for (RecordedEvent event : recorded) {
+                assertTrue(event.getInt("workerId") >= 0 && event.getInt("workerId") < 2);
+                assertTrue(event.getDouble("fatigue") > 0);
+                assertFalse(event.getBoolean("stolen"));
+            }
+        }
+
+        @Test
+        @DisplayName("Positive Test: Work-stealing tasks are recorded too")
+        public void testStealingTasks() throws Exception {
+            TiredExecutor executor = new TiredExecutor(3, SchedulingMode.WORK_STEALING);
+            List<Runnable> tasks = new ArrayList<>();
+            for (int i = 0; i < 9; i++) {
+                tasks.add(() -> {});
+            }
+            executor.submitAll(tasks);
+            executor.shutdown();
+            assertEquals(9, events("lae.TaskExecution").size());
+        }
+
+        @Test
+        @DisplayName("Positive Test: A submitter waiting for an idle worker is recorded")
+        public void testHandoffWait() throws Exception {
+            TiredExecutor executor = new TiredExecutor(1);
+            List<Runnable> tasks = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                tasks.add(() -> {
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                });
+            }
+            executor.submitAll(tasks);
+            executor.shutdown();
+
+            List<RecordedEvent> waits = events("lae.HandoffWait");
+            //the single worker is busy when the second and third tasks are submitted
+            assertTrue(waits.size() >= 2, "Expected two handoff waits, got " + waits.size());
+            assertTrue(waits.stream().anyMatch(e -> e.getDuration().toMillis() >= 10));
+            assertTrue(waits.stream().allMatch(e -> e.getInt("workerId") == 0));
+        }
+    }
+
+    @Nested
+    @DisplayName("Lock events")
+    class LockEventTests {
+
+        @Test
+        @DisplayName("Positive Test: A contended vector lock is recorded")
+        public void testLockWait() throws Exception {
+            SharedVector vector = new SharedVector(new double[]{1, 2, 3}, VectorOrientation.ROW_MAJOR);
+            CountDownLatch started = new CountDownLatch(1);
+            vector.writeLock();
+            Thread reader = new Thread(() -> {
+                started.countDown();
+                vector.get(0);
+            });
+            try {
+                reader.start();
+                started.await();
+                Thread.sleep(30);
+            } finally {
+                vector.writeUnlock();
+            }
+            reader.join();
+
+            List<RecordedEvent> waits = events("lae.VectorLockWait");
+            assertEquals(1, waits.size());
+            RecordedEvent wait = waits.get(0);
+            assertFalse(wait.getBoolean("write"));
+            assertEquals(3, wait.getInt("length"));
+            assertTrue(wait.getDuration().toMillis() >= 10);
+        }
+
+        @Test
+        @DisplayName("Negative Test: An uncontended lock records nothing")
+        public void testNoContention() throws Exception {
+            SharedVector vector = new SharedVector(new double[]{1, 2, 3}, VectorOrientation.ROW_MAJOR);
+            vector.negate();
+            vector.get(1);
+            assertTrue(events("lae.VectorLockWait").isEmpty());
+        }
+    }
+}
@@ -0,0 +1,138 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+import parser.InputParser;
+
+public class TestInputParser {
+
+    @TempDir
+    Path tempDir;
+
+    private final InputParser parser = new InputParser();
+
+    private String write(String json) throws IOException {
+        Path file = Files.createTempFile(tempDir, "input", ".json");
+        Files.writeString(file, json);
+        return file.toString();
+    }
+
+    // compares two parsed trees node by node
+    private void assertSameTree(ComputationNode expected, ComputationNode actual) {
+        assertEquals(expected.getNodeType(), actual.getNodeType(), "Node types should match");
+        if (expected.getNodeType() == ComputationNodeType.MATRIX) {
+            assertArrayEquals(expected.getMatrix(), actual.getMatrix(), "Matrices should match");
+            return;
+        }
+        assertEquals(expected.getChildren().size(), actual.getChildren().size(), "Operand counts should match");
+        for (int i = 0; i < expected.getChildren().size(); i++) {
+            assertSameTree(expected.getChildren().get(i), actual.getChildren().get(i));
+        }
+    }
+
+    @Nested
+    @DisplayName("Streaming parser matches the tree parser")
+    class StreamingMatchesTree {
+
+        @Test
+        @DisplayName("Positive Test: Example inputs give the same tree")
+        public void testExamples() throws ParseException {
+            for (int i = 1; i <= 6; i++) {
+                String path = "src/test/java/Examples/example" + i + ".json";
+                assertSameTree(parser.parseTree(path), parser.parse(path));
+            }
+        }
+
+        @Test
+        @DisplayName("Positive Test: Non-numeric elements and extra fields")
+        public void testLenientValues() throws Exception {
+            String path = write("{\"note\": {\"a\": 1}, \"operator\": \"-\", \"operands\": "
+                + "[[[1.5, \"2\", true], [null, \"x\", -3e2]]]}");
+            assertSameTree(parser.parseTree(path), parser.parse(path));
+        }
+
+        @Test
+        @DisplayName("Positive Test: Wide first row grows its buffer")
+        public void testWideRow() throws Exception {
+            StringBuilder json = new StringBuilder("[[");
+            for (int j = 0; j < 100; j++) {
+                json.append(j == 0 ? "" : ",").append(j);
+            }
+            json.append("]]");
+            double[][] matrix = parser.parse(write(json.toString())).getMatrix();
+            assertEquals(100, matrix[0].length, "First row should keep every element");
+            assertEquals(99.0, matrix[0][99], "Last element of the first row");
+        }
+    }
+
+    @Nested
+    @DisplayName("Streaming parser error messages")
+    class StreamingErrors {
+
+        private void assertSameError(String json) throws IOException {
+            String path = write(json);
+            ParseException expected = assertThrows(ParseException.class, () -> parser.parseTree(path));
+            ParseException actual = assertThrows(ParseException.class, () -> parser.parse(path));
+            assertEquals(expected.getMessage(), actual.getMessage(), "Error message for " + json);
+        }
+
+        @Test
+        @DisplayName("Negative Test: Invalid inputs give the tree parser's messages")
+        public void testSameMessages() throws IOException {
+            assertSameError("[]");
+            assertSameError("[1, 2]");
+            assertSameError("[[1, 2], [3]]");
+            assertSameError("[[1], [2, 3]]");
+            assertSameError("[[1], 2]");
+            assertSameError("[\"a\"]");
+            assertSameError("42");
+            assertSameError("{\"operator\": \"+\"}");
+            assertSameError("{\"operator\": \"+\", \"operands\": [[[1]], \"x\"]}");
+        }
+
+        @Test
+        @DisplayName("Negative Test: A node without an operator is reported with its operands")
+        public void testMissingOperator() throws IOException, ParseException {
+            String json = "{\"operands\":[[[1]]]}";
+            assertSameError(json);
+            ParseException e = assertThrows(ParseException.class, () -> parser.parse(write(json)));
+            assertEquals("Invalid node structure: {\"operands\":[[[1]]]}", e.getMessage());
+            e = assertThrows(ParseException.class, () -> parser.parseExpression(json));
+            assertEquals("Invalid node structure: {\"operands\":[[[1]]]}", e.getMessage());
+            //nested, with fields after the operands
+            assertSameError("{\"operator\": \"-\", \"operands\": [{\"operands\": [[[1, 2]], [[3, 4]]], \"note\": 1}]}");
+        }
+
+        @Test
+        @DisplayName("Negative Test: Other errors are reported without reading the rest of the input")
+        public void testNoSecondRead() throws IOException {
+            //the tree could not even read this truncated input, the stream stops at the bad row
+            String json = "[[1], [2, 3], [";
+            ParseException e = assertThrows(ParseException.class, () -> parser.parse(write(json)));
+            assertEquals("Inconsistent row sizes in matrix.", e.getMessage());
+            e = assertThrows(ParseException.class, () -> parser.parseExpression(json));
+            assertEquals("Inconsistent row sizes in matrix.", e.getMessage());
+        }
+
+        @Test
+        @DisplayName("Negative Test: Unreadable file")
+        public void testMissingFile() {
+            ParseException e = assertThrows(ParseException.class, () -> parser.parse(tempDir.resolve("missing.json").toString()));
+            assertTrue(e.getMessage().startsWith("Failed to read the input JSON file: "), "Read failures keep their message");
+        }
+
+        @Test
+        @DisplayName("Negative Test: Unknown operator")
+        public void testUnknownOperator() throws IOException {
+            String path = write("{\"operator\": \"/\", \"operands\": [[[1]]]}");
+            assertThrows(IllegalArgumentException.class, () -> parser.parse(path));
+        }
+    }
+}
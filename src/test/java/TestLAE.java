@@ -2,7 +2,17 @@ import org.junit.jupiter.api.*;
 import static org.junit.jupiter.api.Assertions.*;
 import java.lang.reflect.Field;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import spl.lae.LinearAlgebraEngine;
+import spl.lae.CommonSubexpressions;
+import spl.lae.ExpressionRewriter;
+import spl.lae.KernelFusion;
+import spl.lae.MatrixChainOptimizer;
+import spl.lae.TaskGranularity;
+import parser.ComputationNode;
+import parser.ComputationNodeType;
 import memory.SharedMatrix;
 import memory.SharedVector;
 import memory.VectorOrientation;
@@ -12,6 +22,39 @@ public class TestLAE {
     static VectorOrientation horizontal = VectorOrientation.ROW_MAJOR;
     static VectorOrientation vertical = VectorOrientation.COLUMN_MAJOR;
 
+    // Tree and matrix helpers shared by the nested classes and the other engine test classes
+
+    static ComputationNode leaf(double[][] matrix) {
+        return new ComputationNode(matrix);
+    }
+
+    static ComputationNode node(ComputationNodeType type, ComputationNode... children) {
+        return new ComputationNode(type, new java.util.ArrayList<>(List.of(children)));
+    }
+
+    // small integers from a fixed pattern, in [-modulus / 2, modulus / 2], so every sum and product is exact
+    static double[][] table(int rows, int cols, int seed, int modulus) {
+        double[][] table = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                table[i][j] = (i * 13 + j * 7 + seed) % modulus - modulus / 2;
+            }
+        }
+        return table;
+    }
+
+    // random integers in [-10, 10]
+    static double[][] randomTable(int rows, int cols, long seed) {
+        Random random = new Random(seed);
+        double[][] table = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                table[i][j] = random.nextInt(21) - 10;
+            }
+        }
+        return table;
+    }
+
     @Nested
     @DisplayName("Testing task creation")
     class testCreateTasks {
@@ -260,6 +303,744 @@ public class TestLAE {
         }
     }
 
+    @Nested
+    @DisplayName("Testing tiled multiplication")
+    class testTiledMultiply {
+
+        @Test
+        @DisplayName("Positive Test: One task per output tile")
+        public void testTiledMultiplyTaskCount() throws Exception {
+            LinearAlgebraEngine lae = new LinearAlgebraEngine(2);
+            SharedMatrix left = new SharedMatrix(randomTable(130, 10, 1));
+            SharedMatrix right = new SharedMatrix();
+            right.loadColumnMajor(randomTable(10, 70, 2));
+            Field leftField = LinearAlgebraEngine.class.getDeclaredField("leftMatrix");
+            Field rightField = LinearAlgebraEngine.class.getDeclaredField("rightMatrix");
+            leftField.setAccessible(true);
+            rightField.setAccessible(true);
+            leftField.set(lae, left);
+            rightField.set(lae, right);
+
+            // 130 rows and 70 columns split into 64x64 tiles gives 3 x 2 tiles
+            assertEquals(6, lae.createTiledMultiplyTasks().size(), "Should create one task per 64x64 output tile.");
+        }
+
+        @Test
+        @DisplayName("Positive Test: Tiled product matches the naive product")
+        public void testTiledMultiplyMatchesNaive() {
+            // Sizes chosen so tiles, k-blocks and the 4x4 micro-kernel all have leftovers
+            double[][] a = randomTable(133, 301, 3);
+            double[][] b = randomTable(301, 67, 4);
+            LinearAlgebraEngine lae = new LinearAlgebraEngine(4);
+            ComputationNode root = node(ComputationNodeType.MULTIPLY, leaf(a), leaf(b));
+
+            double[][] result = lae.run(root).getMatrix();
+            double[][] expected = naiveMultiply(a, b);
+            for (int i = 0; i < expected.length; i++) {
+                assertArrayEquals(expected[i], result[i], 1e-9, "Row " + i + " of the tiled product is wrong");
+            }
+        }
+
+        private double[][] naiveMultiply(double[][] a, double[][] b) {
+            double[][] c = new double[a.length][b[0].length];
+            for (int i = 0; i < a.length; i++) {
+                for (int j = 0; j < b[0].length; j++) {
+                    for (int p = 0; p < b.length; p++) {
+                        c[i][j] += a[i][p] * b[p][j];
+                    }
+                }
+            }
+            return c;
+        }
+    }
+
+    @Nested
+    @DisplayName("Testing parallel evaluation of independent subtrees")
+    class testParallelSubtrees {
+
+        @Test
+        @DisplayName("Positive Test: Every ready node is found in one pass")
+        public void testFindAllResolvable() {
+            double[][] m = {{1, 2}, {3, 4}};
+            ComputationNode leftSum = node(ComputationNodeType.ADD, leaf(m), leaf(m));
+            ComputationNode rightNeg = node(ComputationNodeType.NEGATE, leaf(m));
+            ComputationNode root = node(ComputationNodeType.MULTIPLY, leftSum, rightNeg);
+
+            List<ComputationNode> ready = root.findAllResolvable();
+            assertEquals(List.of(leftSum, rightNeg), ready, "Both independent subtrees should be ready at once.");
+        }
+
+        @Test
+        @DisplayName("Positive Test: Independent subtrees are evaluated correctly")
+        public void testIndependentSubtrees() {
+            double[][] a = {{1, 2}, {3, 4}};
+            double[][] b = {{5, 6}, {7, 8}};
+            // (A + B) * T(-A)
+            ComputationNode root = node(ComputationNodeType.MULTIPLY,
+                node(ComputationNodeType.ADD, leaf(a), leaf(b)),
+                node(ComputationNodeType.TRANSPOSE, node(ComputationNodeType.NEGATE, leaf(a))));
+
+            double[][] result = new LinearAlgebraEngine(4).run(root).getMatrix();
+            // A + B = [[6,8],[10,12]], T(-A) = [[-1,-3],[-2,-4]]
+            assertArrayEquals(new double[]{-22, -50}, result[0], 1e-9);
+            assertArrayEquals(new double[]{-34, -78}, result[1], 1e-9);
+        }
+
+        @Test
+        @DisplayName("Positive Test: N-ary operators below the root are nested")
+        public void testNestedNaryOperator() {
+            double[][] a = {{1, 1}};
+            // -(A + A + A + A)
+            ComputationNode root = node(ComputationNodeType.NEGATE,
+                node(ComputationNodeType.ADD, leaf(a), leaf(a), leaf(a), leaf(a)));
+
+            double[][] result = new LinearAlgebraEngine(2).run(root).getMatrix();
+            assertArrayEquals(new double[]{-4, -4}, result[0], 1e-9);
+        }
+
+        @Test
+        @DisplayName("Positive Test: Transposes are layout flags, large results are transposed once for output")
+        public void testZeroCopyTranspose() {
+            Random random = new Random(3);
+            double[][] a = new double[300][280];
+            double[][] b = new double[300][280];
+            for (int i = 0; i < 300; i++) {
+                for (int j = 0; j < 280; j++) {
+                    a[i][j] = random.nextInt(7);
+                    b[i][j] = random.nextInt(7);
+                }
+            }
+            // T(A) + T(B): both operands are flagged column-major and added in place
+            double[][] sum = new LinearAlgebraEngine(4).run(node(ComputationNodeType.ADD,
+                node(ComputationNodeType.TRANSPOSE, leaf(a)), node(ComputationNodeType.TRANSPOSE, leaf(b)))).getMatrix();
+            // A * T(B): the transposed right operand is read in place as the columns
+            double[][] product = new LinearAlgebraEngine(4).run(node(ComputationNodeType.MULTIPLY,
+                leaf(a), node(ComputationNodeType.TRANSPOSE, leaf(b)))).getMatrix();
+            assertEquals(280, sum.length);
+            assertEquals(300, product.length);
+            for (int i = 0; i < 300; i++) {
+                for (int j = 0; j < 280; j++) {
+                    assertEquals(a[i][j] + b[i][j], sum[j][i], "Sum element " + j + "," + i);
+                }
+                for (int j = 0; j < 300; j += 37) {
+                    double expected = 0;
+                    for (int k = 0; k < 280; k++)
+                        expected += a[i][k] * b[j][k];
+                    assertEquals(expected, product[i][j], 1e-9, "Product element " + i + "," + j);
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("Positive Test: Intermediate results stay in the internal layout")
+        public void testIntermediateKeepsSharedMatrix() {
+            double[][] a = {{1, 2}, {3, 4}};
+            ComputationNode inner = node(ComputationNodeType.NEGATE, leaf(a));
+            ComputationNode root = node(ComputationNodeType.TRANSPOSE, inner);
+            LinearAlgebraEngine lae = new LinearAlgebraEngine(2);
+
+            lae.loadAndCompute(root);
+            assertEquals(ComputationNodeType.MATRIX, inner.getNodeType(), "Inner node should be resolved first");
+            assertNotNull(inner.getComputedMatrix(), "Intermediate result should be kept as a SharedMatrix");
+
+            double[][] result = lae.run(root).getMatrix();
+            assertArrayEquals(new double[]{-1, -3}, result[0], 1e-9);
+            assertArrayEquals(new double[]{-2, -4}, result[1], 1e-9);
+        }
+    }
+
+    @Nested
+    @DisplayName("Testing matrix-chain ordering")
+    class testChainOrdering {
+
+        private ComputationNode chain(double[][]... operands) {
+            List<ComputationNode> children = new java.util.ArrayList<>();
+            for (double[][] operand : operands) {
+                children.add(new ComputationNode(operand));
+            }
+            return new ComputationNode(ComputationNodeType.MULTIPLY, children);
+        }
+
+        @Test
+        @DisplayName("Positive Test: Cheaper order is chosen and reported")
+        public void testChainReordered() {
+            // A(BC) costs 15000 flops, (AB)C costs 150000
+            double[][] a = table(50, 5, 1, 11);
+            double[][] b = table(5, 100, 2, 11);
+            double[][] c = table(100, 10, 3, 11);
+            ComputationNode root = chain(a, b, c);
+
+            MatrixChainOptimizer.Report report = new MatrixChainOptimizer().optimize(root);
+            assertEquals(1, report.getChains(), "One chain should be optimized");
+            assertEquals(150000, report.getLeftNestedFlops(), "Left-nested estimate");
+            assertEquals(15000, report.getOptimizedFlops(), "Optimized estimate");
+            assertEquals(135000, report.getFlopsSaved(), "Flops saved");
+            assertEquals(ComputationNodeType.MATRIX, root.getChildren().get(0).getNodeType(), "A should stay a direct operand");
+            assertEquals(ComputationNodeType.MULTIPLY, root.getChildren().get(1).getNodeType(), "B*C should be nested on the right");
+        }
+
+        @Test
+        @DisplayName("Positive Test: Reordered chain gives the same product")
+        public void testChainResult() {
+            double[][] a = table(50, 5, 1, 11);
+            double[][] b = table(5, 100, 2, 11);
+            double[][] c = table(100, 10, 3, 11);
+            double[][] d = table(10, 60, 4, 11);
+            LinearAlgebraEngine lae = new LinearAlgebraEngine(4);
+            double[][] result = lae.run(node(ComputationNodeType.NEGATE, chain(a, b, c, d))).getMatrix();
+            assertTrue(lae.getChainReport().getFlopsSaved() > 0, "The chain below the root should be optimized");
+
+            double[][] expected = new LinearAlgebraEngine(2).run(chain(a, b)).getMatrix();
+            expected = new LinearAlgebraEngine(2).run(chain(expected, c)).getMatrix();
+            expected = new LinearAlgebraEngine(2).run(chain(expected, d)).getMatrix();
+            for (int i = 0; i < expected.length; i++) {
+                for (int j = 0; j < expected[i].length; j++) {
+                    assertEquals(-expected[i][j], result[i][j], 1e-9, "Element " + i + "," + j);
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("Negative Test: Mismatched chain is left for execution to reject")
+        public void testMismatchedChain() {
+            ComputationNode root = chain(table(2, 3, 1, 11), table(4, 2, 2, 11), table(2, 2, 3, 11));
+            assertEquals(0, new MatrixChainOptimizer().optimize(root).getChains(), "Mismatched chain should be skipped");
+            assertEquals(3, root.getChildren().size(), "Operands should be untouched");
+            assertThrows(IllegalArgumentException.class, () -> new LinearAlgebraEngine(2).run(root));
+        }
+    }
+
+    @Nested
+    @DisplayName("Testing algebraic rewrites")
+    class testRewrites {
+
+        private double[][] naiveMultiply(double[][] a, double[][] b) {
+            double[][] c = new double[a.length][b[0].length];
+            for (int i = 0; i < a.length; i++) {
+                for (int j = 0; j < b[0].length; j++) {
+                    for (int p = 0; p < b.length; p++) {
+                        c[i][j] += a[i][p] * b[p][j];
+                    }
+                }
+            }
+            return c;
+        }
+
+        @Test
+        @DisplayName("Positive Test: Double transposes and negations cancel")
+        public void testCancellation() {
+            ComputationNode x = new ComputationNode(table(2, 3, 1, 7));
+            ExpressionRewriter rewriter = new ExpressionRewriter();
+
+            assertSame(x, rewriter.rewrite(node(ComputationNodeType.TRANSPOSE, node(ComputationNodeType.TRANSPOSE, x))));
+            assertEquals(1, rewriter.getReport().timesFired(ExpressionRewriter.DOUBLE_TRANSPOSE));
+            assertSame(x, rewriter.rewrite(node(ComputationNodeType.NEGATE, node(ComputationNodeType.NEGATE, x))));
+            assertEquals(1, rewriter.getReport().timesFired(ExpressionRewriter.DOUBLE_NEGATION));
+
+            // T(-(T(X))) becomes -(X)
+            ComputationNode rewritten = rewriter.rewrite(node(ComputationNodeType.TRANSPOSE,
+                node(ComputationNodeType.NEGATE, node(ComputationNodeType.TRANSPOSE, x))));
+            assertEquals(ComputationNodeType.NEGATE, rewritten.getNodeType());
+            assertSame(x, rewritten.getChildren().get(0));
+        }
+
+        @Test
+        @DisplayName("Positive Test: Negations fold out of sums and products")
+        public void testNegationFolding() {
+            double[][] a = table(3, 3, 1, 7);
+            double[][] b = table(3, 3, 2, 7);
+            ExpressionRewriter rewriter = new ExpressionRewriter();
+            // -(A) + -(B) needs one negation, -(A) * -(B) none
+            ComputationNode sum = rewriter.rewrite(node(ComputationNodeType.ADD,
+                node(ComputationNodeType.NEGATE, new ComputationNode(a)), node(ComputationNodeType.NEGATE, new ComputationNode(b))));
+            assertEquals(ComputationNodeType.NEGATE, sum.getNodeType());
+            assertEquals(ComputationNodeType.ADD, sum.getChildren().get(0).getNodeType());
+
+            ComputationNode product = rewriter.rewrite(node(ComputationNodeType.MULTIPLY,
+                node(ComputationNodeType.NEGATE, new ComputationNode(a)), node(ComputationNodeType.NEGATE, new ComputationNode(b))));
+            assertEquals(ComputationNodeType.MULTIPLY, product.getNodeType());
+            assertEquals(1, rewriter.getReport().timesFired(ExpressionRewriter.NEGATED_PRODUCT));
+
+            double[][] result = new LinearAlgebraEngine(2).run(product).getMatrix();
+            assertArrayEquals(naiveMultiply(a, b), result);
+        }
+
+        @Test
+        @DisplayName("Positive Test: Transpose of a product is pushed down only when cheaper")
+        public void testTransposeOfProduct() {
+            double[][] a = table(40, 2, 1, 7);
+            double[][] b = table(2, 30, 2, 7);
+            ExpressionRewriter rewriter = new ExpressionRewriter();
+
+            // the 40x30 product is larger than both factors together
+            ComputationNode root = node(ComputationNodeType.TRANSPOSE,
+                node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b)));
+            LinearAlgebraEngine lae = new LinearAlgebraEngine(2);
+            double[][] result = lae.run(root).getMatrix();
+            assertEquals(1, lae.getRewriteReport().timesFired(ExpressionRewriter.TRANSPOSE_OF_PRODUCT));
+            double[][] product = naiveMultiply(a, b);
+            for (int i = 0; i < 30; i++) {
+                for (int j = 0; j < 40; j++) {
+                    assertEquals(product[j][i], result[i][j], "Element " + i + "," + j);
+                }
+            }
+
+            // the 2x2 product is smaller than its factors, so it is kept
+            rewriter.rewrite(node(ComputationNodeType.TRANSPOSE,
+                node(ComputationNodeType.MULTIPLY, new ComputationNode(table(2, 40, 3, 7)), new ComputationNode(table(40, 2, 4, 7)))));
+            assertEquals(0, rewriter.getReport().totalFired(), "No rule should fire");
+        }
+    }
+
+    @Nested
+    @DisplayName("Testing fused kernels")
+    class testFusion {
+
+        // evaluates the unfused pair step by step, each node with its own engine
+        private double[][] unfused(ComputationNodeType type, double[][] first, double[][] second) {
+            return new LinearAlgebraEngine(2).run(node(type, new ComputationNode(first), new ComputationNode(second))).getMatrix();
+        }
+
+        @Test
+        @DisplayName("Positive Test: Product plus matrix becomes MULTIPLY_ADD on either side")
+        public void testMultiplyAddPattern() {
+            KernelFusion fusion = new KernelFusion();
+            ComputationNode a = new ComputationNode(table(2, 3, 1, 19));
+            ComputationNode b = new ComputationNode(table(3, 2, 2, 19));
+            ComputationNode c = new ComputationNode(table(2, 2, 3, 19));
+
+            ComputationNode fused = fusion.fuse(node(ComputationNodeType.ADD, c, node(ComputationNodeType.MULTIPLY, a, b)));
+            assertEquals(ComputationNodeType.MULTIPLY_ADD, fused.getNodeType());
+            assertEquals(List.of(a, b, c), fused.getChildren(), "Operands should be A, B and the addend");
+            assertEquals(1, fusion.getFusedPairs());
+        }
+
+        @Test
+        @DisplayName("Positive Test: Sum with a negation becomes SUBTRACT on either side")
+        public void testSubtractPattern() {
+            KernelFusion fusion = new KernelFusion();
+            ComputationNode a = new ComputationNode(table(2, 2, 1, 19));
+            ComputationNode b = new ComputationNode(table(2, 2, 2, 19));
+
+            ComputationNode fused = fusion.fuse(node(ComputationNodeType.ADD, node(ComputationNodeType.NEGATE, b), a));
+            assertEquals(ComputationNodeType.SUBTRACT, fused.getNodeType());
+            assertEquals(List.of(a, b), fused.getChildren(), "Operands should be the minuend and the subtrahend");
+        }
+
+        @Test
+        @DisplayName("Positive Test: Fused results equal the unfused ones")
+        public void testFusedResults() {
+            // 150 x 90 output spans several tiles with partial edges
+            double[][] a = table(150, 70, 1, 19);
+            double[][] b = table(70, 90, 2, 19);
+            double[][] c = table(150, 90, 3, 19);
+            double[][] product = unfused(ComputationNodeType.MULTIPLY, a, b);
+            double[][] expected = unfused(ComputationNodeType.ADD, product, c);
+            double[][] result = new LinearAlgebraEngine(4).run(node(ComputationNodeType.ADD,
+                node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b)), new ComputationNode(c))).getMatrix();
+            assertArrayEquals(expected, result, "A*B + C should match exactly");
+
+            double[][] negated = new LinearAlgebraEngine(2).run(node(ComputationNodeType.NEGATE, new ComputationNode(c))).getMatrix();
+            expected = unfused(ComputationNodeType.ADD, product, negated);
+            result = new LinearAlgebraEngine(4).run(node(ComputationNodeType.ADD,
+                new ComputationNode(product), node(ComputationNodeType.NEGATE, new ComputationNode(c)))).getMatrix();
+            assertArrayEquals(expected, result, "A + -(B) should match exactly");
+        }
+
+        @Test
+        @DisplayName("Negative Test: Fused operands with mismatched shapes")
+        public void testFusedMismatch() {
+            ComputationNode root = node(ComputationNodeType.ADD,
+                node(ComputationNodeType.MULTIPLY, new ComputationNode(table(2, 3, 1, 19)), new ComputationNode(table(3, 2, 2, 19))),
+                new ComputationNode(table(3, 3, 3, 19)));
+            assertThrows(IllegalArgumentException.class, () -> new LinearAlgebraEngine(2).run(root));
+        }
+    }
+
+    @Nested
+    @DisplayName("Testing common-subexpression elimination")
+    class testSharedSubexpressions {
+
+        @Test
+        @DisplayName("Positive Test: Equal literals and subexpressions become one node")
+        public void testSharing() {
+            // T(X) + T(X'), where X' is a separate copy of X
+            ComputationNode root = node(ComputationNodeType.ADD,
+                node(ComputationNodeType.TRANSPOSE, new ComputationNode(table(2, 3, 1, 9))),
+                node(ComputationNodeType.TRANSPOSE, new ComputationNode(table(2, 3, 1, 9))));
+            CommonSubexpressions cse = new CommonSubexpressions();
+
+            ComputationNode shared = cse.eliminate(root);
+            assertSame(shared.getChildren().get(0), shared.getChildren().get(1), "Both transposes should be one node");
+            assertEquals(2, cse.getMergedNodes(), "The literal and the transpose should be merged");
+            assertEquals(1, shared.findAllResolvable().size(), "A shared node should be ready once");
+            assertEquals(2, CommonSubexpressions.countConsumers(shared).get(shared.getChildren().get(0)));
+        }
+
+        @Test
+        @DisplayName("Negative Test: Different literals stay separate")
+        public void testDifferentLiterals() {
+            double[][] zero = {{0.0}};
+            double[][] negativeZero = {{-0.0}};
+            ComputationNode root = node(ComputationNodeType.ADD, new ComputationNode(zero), new ComputationNode(negativeZero));
+            CommonSubexpressions cse = new CommonSubexpressions();
+
+            cse.eliminate(root);
+            assertEquals(0, cse.getMergedNodes(), "0.0 and -0.0 should not be merged");
+            assertNotSame(root.getChildren().get(0), root.getChildren().get(1));
+        }
+
+        @Test
+        @DisplayName("Positive Test: Shared results are not changed by in-place consumers")
+        public void testSharedResultConsumers() {
+            double[][] a = table(4, 3, 1, 9);
+            double[][] b = table(3, 4, 2, 9);
+            // -(A*B) + (A*B) * (A*B) + T(A*B): the product feeds a negation, an addition, a product and a transpose
+            ComputationNode product1 = node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b));
+            ComputationNode product2 = node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b));
+            ComputationNode product3 = node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b));
+            ComputationNode product4 = node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b));
+            ComputationNode product5 = node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b));
+            ComputationNode root = node(ComputationNodeType.ADD,
+                node(ComputationNodeType.NEGATE, product1),
+                node(ComputationNodeType.MULTIPLY, product2, product3),
+                node(ComputationNodeType.TRANSPOSE, product4),
+                product5);
+            LinearAlgebraEngine lae = new LinearAlgebraEngine(4);
+            double[][] result = lae.run(root).getMatrix();
+            assertTrue(lae.getSharedSubexpressions() > 0, "The products should be shared");
+
+            double[][] p = new double[4][4];
+            for (int i = 0; i < 4; i++)
+                for (int j = 0; j < 4; j++)
+                    for (int k = 0; k < 3; k++)
+                        p[i][j] += a[i][k] * b[k][j];
+            for (int i = 0; i < 4; i++) {
+                for (int j = 0; j < 4; j++) {
+                    double square = 0;
+                    for (int k = 0; k < 4; k++)
+                        square += p[i][k] * p[k][j];
+                    assertEquals(-p[i][j] + square + p[j][i] + p[i][j], result[i][j], 1e-9, "Element " + i + "," + j);
+                }
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Testing the reusable engine")
+    class testReusableEngine {
+
+        private ComputationNode sum(double[][] a, double[][] b) {
+            return node(ComputationNodeType.ADD, leaf(a), leaf(b));
+        }
+
+        private Thread[] workers(LinearAlgebraEngine lae) throws Exception {
+            Field executorField = LinearAlgebraEngine.class.getDeclaredField("executor");
+            executorField.setAccessible(true);
+            Object executor = executorField.get(lae);
+            Field workersField = executor.getClass().getDeclaredField("workers");
+            workersField.setAccessible(true);
+            return (Thread[]) workersField.get(executor);
+        }
+
+        @Test
+        @DisplayName("Positive Test: Workers survive across runs until close")
+        public void testWorkersStayWarm() throws Exception {
+            LinearAlgebraEngine lae = LinearAlgebraEngine.reusable(3);
+            Thread[] workers = workers(lae);
+            for (int run = 0; run < 50; run++) {
+                double[][] result = lae.run(sum(new double[][]{{run, 1}}, new double[][]{{1, run}})).getMatrix();
+                assertArrayEquals(new double[]{run + 1, run + 1}, result[0], "Run " + run);
+            }
+            assertSame(workers, workers(lae), "The same workers should serve every run");
+            for (Thread worker : workers) {
+                assertTrue(worker.isAlive(), "Workers should stay alive between runs");
+            }
+
+            lae.close();
+            for (Thread worker : workers) {
+                worker.join(2000);
+                assertFalse(worker.isAlive(), "close() should stop the workers");
+            }
+            assertThrows(IllegalStateException.class, () -> lae.run(sum(new double[][]{{1}}, new double[][]{{1}})));
+            lae.close(); // closing twice is harmless
+        }
+
+        @Test
+        @DisplayName("Positive Test: Per-run report covers the last run only")
+        public void testRunReport() {
+            double[][] big = new double[300][300];
+            try (LinearAlgebraEngine lae = LinearAlgebraEngine.reusable(2)) {
+                for (int run = 0; run < 3; run++) {
+                    lae.run(node(ComputationNodeType.MULTIPLY, leaf(big), leaf(big)));
+                }
+                assertTrue(lae.getRunReport().startsWith("Worker 0 Work: "), "Per-run report should use the worker report format");
+                assertTrue(totalWork(lae.getRunReport()) < totalWork(lae.getWorkerReport()), "Cumulative work should exceed the last run's");
+            }
+        }
+
+        private long totalWork(String report) {
+            long total = 0;
+            for (String line : report.split("\n")) {
+                if (line.startsWith("Worker ")) {
+                    total += Long.parseLong(line.split(" ")[3]);
+                }
+            }
+            return total;
+        }
+
+        @Test
+        @DisplayName("Negative Test: A one-shot engine cannot run twice")
+        public void testOneShotEngine() {
+            LinearAlgebraEngine lae = new LinearAlgebraEngine(2);
+            assertFalse(lae.isReusable());
+            lae.run(sum(new double[][]{{1}}, new double[][]{{2}}));
+            assertThrows(IllegalStateException.class, () -> lae.run(sum(new double[][]{{1}}, new double[][]{{2}})));
+        }
+    }
+
+    @Nested
+    @DisplayName("Testing sparse kernel selection")
+    class testSparse {
+
+        // small integer nonzeros at about the given density, so sparse and dense sums agree exactly
+        private double[][] sparseTable(int rows, int cols, double density, long seed) {
+            Random random = new Random(seed);
+            double[][] table = new double[rows][cols];
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    if (random.nextDouble() < density) {
+                        table[i][j] = random.nextInt(9) + 1;
+                    }
+                }
+            }
+            return table;
+        }
+
+        // builds the same tree twice, runs one sparse-enabled and one dense-only, and compares bit for bit
+        private void assertSameAsDense(java.util.function.Supplier<ComputationNode> tree, boolean expectSparse) {
+            LinearAlgebraEngine dense = new LinearAlgebraEngine(4);
+            dense.setSparseDensity(0);
+            double[][] expected = dense.run(tree.get()).getMatrix();
+            assertEquals(0, dense.getSparseNodes(), "Density 0 should turn the sparse kernels off");
+
+            LinearAlgebraEngine sparse = new LinearAlgebraEngine(4);
+            double[][] actual = sparse.run(tree.get()).getMatrix();
+            assertEquals(expected.length, actual.length);
+            for (int i = 0; i < expected.length; i++) {
+                //without a delta, -0.0 and 0.0 differ and NaN only equals NaN
+                assertArrayEquals(expected[i], actual[i], "Row " + i);
+            }
+            assertEquals(expectSparse, sparse.getSparseNodes() > 0);
+        }
+
+        @Test
+        @DisplayName("Positive Test: Signed zeros, infinities and NaN come out as from the dense kernels")
+        public void testSpecialValues() {
+            double[][] single = new double[64][64];
+            single[3][5] = 2;
+            double[][] a = sparseTable(120, 100, 0.02, 9);
+            double[][] b = sparseTable(100, 110, 0.02, 10);
+            double[][] special = sparseTable(100, 110, 1.0, 11);
+            special[0][0] = Double.POSITIVE_INFINITY;
+            special[7][3] = Double.NaN;
+            double[][] signed = sparseTable(120, 110, 1.0, 12);
+            signed[1][1] = -0.0;
+            signed[9][4] = -0.0;
+            double[][] c = sparseTable(120, 110, 0.02, 13);
+            double[][] zeros = new double[120][110];
+            zeros[2][2] = -0.0;
+
+            // the implicit zeros negate to -0.0
+            assertSameAsDense(() -> node(ComputationNodeType.NEGATE, new ComputationNode(single)), false);
+            // every row of a times a column of special, even its zeros, meets the infinity and NaN
+            assertSameAsDense(() -> node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(special)), false);
+            // -0.0 + 0.0 is 0.0 but -0.0 - 0.0 stays -0.0
+            assertSameAsDense(() -> node(ComputationNodeType.ADD, new ComputationNode(signed), new ComputationNode(c)), false);
+            assertSameAsDense(() -> node(ComputationNodeType.SUBTRACT, new ComputationNode(signed), new ComputationNode(c)), true);
+            assertSameAsDense(() -> node(ComputationNodeType.TRANSPOSE, new ComputationNode(zeros)), false);
+            // the addend is added after the product, -0.0 addend elements of empty rows become 0.0
+            assertSameAsDense(() -> node(ComputationNodeType.ADD,
+                node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b)), new ComputationNode(signed)), true);
+        }
+
+        @Test
+        @DisplayName("Positive Test: Sparse products, sums, negation and transposition match the dense kernels")
+        public void testSparseOperators() {
+            double[][] a = sparseTable(120, 100, 0.02, 1);
+            double[][] b = sparseTable(100, 110, 0.02, 2);
+            double[][] c = sparseTable(120, 110, 0.02, 3);
+            double[][] full = sparseTable(120, 110, 1.0, 4);
+
+            assertSameAsDense(() -> node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b)), true);
+            assertSameAsDense(() -> node(ComputationNodeType.ADD,
+                node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b)), new ComputationNode(c)), true);
+            assertSameAsDense(() -> node(ComputationNodeType.SUBTRACT, new ComputationNode(full), new ComputationNode(c)), true);
+            assertSameAsDense(() -> node(ComputationNodeType.ADD, new ComputationNode(c), new ComputationNode(full)), true);
+            assertSameAsDense(() -> node(ComputationNodeType.NEGATE,
+                node(ComputationNodeType.TRANSPOSE, new ComputationNode(c))), true);
+            assertSameAsDense(() -> node(ComputationNodeType.MULTIPLY,
+                new ComputationNode(full), node(ComputationNodeType.TRANSPOSE, new ComputationNode(c))), true);
+        }
+
+        @Test
+        @DisplayName("Negative Test: Dense and small matrices keep the dense kernels")
+        public void testDenseInputs() {
+            double[][] full = sparseTable(100, 100, 1.0, 5);
+            double[][] small = sparseTable(10, 10, 0.02, 6);
+            assertSameAsDense(() -> node(ComputationNodeType.MULTIPLY, new ComputationNode(full), new ComputationNode(full)), false);
+            assertSameAsDense(() -> node(ComputationNodeType.ADD, new ComputationNode(small), new ComputationNode(small)), false);
+        }
+
+        @Test
+        @DisplayName("Negative Test: Sparse operands report the same dimension errors")
+        public void testSparseMismatch() {
+            double[][] a = sparseTable(100, 100, 0.02, 7);
+            double[][] b = sparseTable(90, 100, 0.02, 8);
+            Exception product = assertThrows(IllegalArgumentException.class, () -> new LinearAlgebraEngine(2)
+                .run(node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b))));
+            assertEquals("Matrices dimensions do not match for multiplication", product.getMessage());
+            Exception sum = assertThrows(IllegalArgumentException.class, () -> new LinearAlgebraEngine(2)
+                .run(node(ComputationNodeType.ADD, new ComputationNode(a), new ComputationNode(b))));
+            assertEquals("Matrices dimensions do not match for addition", sum.getMessage());
+        }
+    }
+
+    @Nested
+    @DisplayName("Testing adaptive task granularity")
+    class testTaskGranularity {
+
+        private double[][] filled(int rows, int cols, double value) {
+            double[][] table = new double[rows][cols];
+            for (double[] row : table) {
+                java.util.Arrays.fill(row, value);
+            }
+            return table;
+        }
+
+        private void runAll(List<Runnable> tasks) {
+            for (Runnable task : tasks) {
+                task.run();
+            }
+        }
+
+        @Test
+        @DisplayName("Positive Test: Many short rows are grouped into a few ranges")
+        public void testShortRowsGrouped() {
+            LinearAlgebraEngine lae = new LinearAlgebraEngine(4);
+            SharedMatrix left = new SharedMatrix(filled(100000, 8, 1));
+            SharedMatrix right = new SharedMatrix(filled(100000, 8, 2));
+
+            List<Runnable> tasks = lae.createAddTasks(left, right);
+            assertTrue(tasks.size() <= 4 * 4, "Expected at most 4 tasks per worker but got " + tasks.size());
+            runAll(tasks);
+            double[][] sum = left.readRowMajor();
+            assertArrayEquals(filled(1, 8, 3)[0], sum[0]);
+            assertArrayEquals(filled(1, 8, 3)[0], sum[99999]);
+        }
+
+        @Test
+        @DisplayName("Positive Test: Too few long rows are split into column blocks")
+        public void testLongRowsSplit() {
+            LinearAlgebraEngine lae = new LinearAlgebraEngine(8);
+            SharedMatrix left = new SharedMatrix(filled(4, 200000, 1));
+            SharedMatrix right = new SharedMatrix(filled(4, 200000, 5));
+
+            List<Runnable> subtract = lae.createSubtractTasks(left, right);
+            assertTrue(subtract.size() > 4, "Rows should be split into column blocks");
+            runAll(subtract);
+            runAll(lae.createNegateTasks(left));
+            assertArrayEquals(filled(4, 200000, 4), left.readRowMajor());
+        }
+
+        @Test
+        @DisplayName("Positive Test: Two column blocks of one row run at the same time")
+        public void testColumnBlocksOverlap() throws Exception {
+            CountDownLatch inside = new CountDownLatch(2);
+            java.util.concurrent.atomic.AtomicBoolean armed = new java.util.concurrent.atomic.AtomicBoolean();
+            java.util.concurrent.atomic.AtomicInteger met = new java.util.concurrent.atomic.AtomicInteger();
+            SharedVector row = new SharedVector(filled(1, 200000, 1)[0], horizontal);
+            // locked after row, so a block waits here while it holds row's lock
+            SharedVector addend = new SharedVector(filled(1, 200000, 2)[0], horizontal) {
+                @Override
+                public void readLock() {
+                    super.readLock();
+                    if (armed.get()) {
+                        inside.countDown();
+                        try {
+                            if (inside.await(5, TimeUnit.SECONDS)) {
+                                met.incrementAndGet();
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+            };
+            LinearAlgebraEngine lae = new LinearAlgebraEngine(8);
+            List<Runnable> tasks = lae.createAddTasks(new MockSharedMatrix(1, horizontal, row), new MockSharedMatrix(1, horizontal, addend));
+            assertTrue(tasks.size() >= 2, "The row should be split into column blocks");
+
+            armed.set(true);
+            Thread first = new Thread(tasks.get(0));
+            Thread second = new Thread(tasks.get(1));
+            first.start();
+            second.start();
+            first.join();
+            second.join();
+            assertEquals(2, met.get(), "Both blocks should hold the row's lock at once");
+            assertEquals(3, row.get(0));
+            assertEquals(3, row.get(200000 / tasks.size()), "The second block should be added too");
+        }
+
+        @Test
+        @DisplayName("Positive Test: A product with one band of rows gets narrower tiles")
+        public void testNarrowProductTiles() {
+            double[][] a = randomTable(4, 4000, 1);
+            double[][] b = randomTable(4000, 64, 2);
+            LinearAlgebraEngine lae = new LinearAlgebraEngine(8);
+            SharedMatrix left = new SharedMatrix(a);
+            SharedMatrix right = new SharedMatrix();
+            right.loadColumnMajor(b);
+            SharedMatrix result = new SharedMatrix();
+
+            List<Runnable> tasks = lae.createTiledMultiplyTasks(left, right, result);
+            assertTrue(tasks.size() >= 8, "Expected a tile per worker but got " + tasks.size());
+            runAll(tasks);
+            double[][] product = result.readRowMajor();
+            for (int i = 0; i < 4; i++) {
+                for (int j = 0; j < 64; j++) {
+                    double expected = 0;
+                    for (int k = 0; k < 4000; k++)
+                        expected += a[i][k] * b[k][j];
+                    assertEquals(expected, product[i][j], 1e-9, "Element " + i + "," + j);
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("Positive Test: Row and fixed policies keep whole rows")
+        public void testFixedPolicies() {
+            LinearAlgebraEngine lae = new LinearAlgebraEngine(4);
+            SharedMatrix matrix = new SharedMatrix(filled(1000, 8, 1));
+            lae.setTaskGranularity(TaskGranularity.ROW);
+            assertEquals(1000, lae.createNegateTasks(matrix).size());
+            lae.setTaskGranularity(TaskGranularity.parse("300"));
+            assertEquals(4, lae.createNegateTasks(matrix).size());
+            lae.setTaskGranularity(TaskGranularity.ROW);
+            assertEquals(4, lae.createNegateTasks(new SharedMatrix(filled(4, 200000, 1))).size(),
+                "The row policy should never split rows");
+        }
+
+        @Test
+        @DisplayName("Negative Test: Invalid granularity settings are rejected")
+        public void testInvalidPolicies() {
+            assertThrows(IllegalArgumentException.class, () -> TaskGranularity.parse("fast"));
+            assertThrows(IllegalArgumentException.class, () -> TaskGranularity.rows(0));
+            assertThrows(NullPointerException.class, () -> new LinearAlgebraEngine(1).setTaskGranularity(null));
+        }
+    }
+
     // Mockup classes implemented as nested classes to avoid creating new files
     private static class MockSharedMatrix extends SharedMatrix {
         private int rowCount;
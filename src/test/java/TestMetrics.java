@@ -0,0 +1,207 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import metrics.Counter;
+import metrics.Histogram;
+import metrics.JmxSink;
+import metrics.JsonFileSink;
+import metrics.MetricsRegistry;
+import metrics.Timer;
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+import spl.lae.LinearAlgebraEngine;
+import tracing.Tracer;
+
+public class TestMetrics {
+
+    @TempDir
+    Path tempDir;
+
+    @Nested
+    @DisplayName("Registry")
+    class RegistryTests {
+
+        @Test
+        @DisplayName("Positive Test: Metrics are created once per name and summarized in the snapshot")
+        public void testSnapshot() {
+            MetricsRegistry registry = new MetricsRegistry();
+            Counter counter = registry.counter("bytes");
+            assertSame(counter, registry.counter("bytes"));
+            counter.add(40);
+            counter.increment();
+            for (long value = 1; value <= 100; value++) {
+                registry.histogram("sizes").record(value);
+            }
+            registry.timer("latency").record(3_000_000);
+
+            Map<String, Object> snapshot = registry.snapshot();
+            assertEquals(41L, ((Map<?, ?>) snapshot.get("counters")).get("bytes"));
+            Map<?, ?> sizes = (Map<?, ?>) ((Map<?, ?>) snapshot.get("histograms")).get("sizes");
+            assertEquals(100L, sizes.get("count"));
+            assertEquals(100L, sizes.get("max"));
+            assertTrue((Long) sizes.get("p50") >= 50 && (Long) sizes.get("p50") < 57, "p50 should be within a bucket of 50");
+            Map<?, ?> latency = (Map<?, ?>) ((Map<?, ?>) snapshot.get("timers")).get("latency");
+            assertEquals(3000L, latency.get("maxMicros"));
+            assertEquals(3.0, latency.get("totalMillis"));
+
+            Map<String, Number> flat = registry.flatten();
+            assertEquals(41L, flat.get("counters.bytes"));
+            assertEquals(1L, flat.get("timers.latency.count"));
+        }
+
+        @Test
+        @DisplayName("Positive Test: Reset clears the metrics but keeps them registered")
+        public void testReset() {
+            MetricsRegistry registry = new MetricsRegistry();
+            Counter counter = registry.counter("count");
+            Histogram histogram = registry.histogram("values");
+            Timer timer = registry.timer("time");
+            counter.add(5);
+            histogram.record(7);
+            timer.record(1000);
+
+            registry.reset();
+            assertEquals(0, counter.get());
+            assertEquals(0, histogram.getCount());
+            assertEquals(0, histogram.getPercentile(99));
+            assertEquals(0, timer.getTotalNanos());
+            assertSame(counter, registry.counter("count"));
+        }
+
+        @Test
+        @DisplayName("Negative Test: A failing sink does not stop the others")
+        public void testFailingSink() {
+            MetricsRegistry registry = new MetricsRegistry();
+            List<MetricsRegistry> published = new ArrayList<>();
+            registry.addSink(r -> { throw new java.io.IOException("disk full"); });
+            registry.addSink(published::add);
+            java.io.IOException e = assertThrows(java.io.IOException.class, registry::publish);
+            assertEquals("disk full", e.getMessage());
+            assertEquals(1, published.size());
+            assertThrows(NullPointerException.class, () -> registry.addSink(null));
+        }
+    }
+
+    @Nested
+    @DisplayName("Sinks")
+    class SinkTests {
+
+        @Test
+        @DisplayName("Positive Test: The JSON dump is written next to the output file")
+        public void testJsonFileSink() throws Exception {
+            MetricsRegistry registry = new MetricsRegistry();
+            registry.counter("memory.load.bytes").add(800);
+            JsonFileSink sink = JsonFileSink.nextTo(tempDir.resolve("out.json").toString());
+            assertEquals(tempDir.resolve("out.metrics.json"), sink.getPath());
+
+            registry.addSink(sink);
+            registry.publish();
+            JsonNode json = new ObjectMapper().readTree(Files.readString(sink.getPath()));
+            assertEquals(800, json.get("counters").get("memory.load.bytes").asLong());
+        }
+
+        @Test
+        @DisplayName("Positive Test: The MBean serves the live values")
+        public void testJmxSink() throws Exception {
+            MetricsRegistry registry = new MetricsRegistry();
+            registry.counter("requests").add(2);
+            JmxSink sink = new JmxSink("lae.test:type=Metrics");
+            try {
+                sink.publish(registry);
+                sink.publish(registry); // publishing again is harmless
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName("lae.test:type=Metrics");
+                assertEquals(2L, server.getAttribute(name, "counters.requests"));
+                registry.counter("requests").increment();
+                assertEquals(3L, server.getAttribute(name, "counters.requests"), "Attributes should be read live");
+
+                JmxSink duplicate = new JmxSink("lae.test:type=Metrics");
+                assertThrows(java.io.IOException.class, () -> duplicate.publish(registry));
+            } finally {
+                sink.unregister();
+            }
+            assertThrows(IllegalArgumentException.class, () -> new JmxSink("not a name"));
+        }
+    }
+
+    @Nested
+    @DisplayName("Engine metrics")
+    class EngineMetricsTests {
+
+        @Test
+        @DisplayName("Positive Test: A run records node latency, tasks, flops, copies and barrier waits")
+        public void testEngineRecords() {
+            MetricsRegistry registry = MetricsRegistry.global();
+            double[][] a = new double[40][30];
+            double[][] b = new double[30][20];
+            long flops = registry.counter("multiply.flops").get();
+            long loaded = registry.counter("memory.load.bytes").get();
+            long products = registry.timer("node.MULTIPLY.latency").getCount();
+            long negations = registry.timer("node.NEGATE.latency").getCount();
+            long waves = registry.timer("executor.barrier.wait").getCount();
+            long runs = registry.timer("engine.run").getCount();
+
+            // -(A * B): two waves, the product then the negation
+            new LinearAlgebraEngine(2).run(TestLAE.node(ComputationNodeType.NEGATE,
+                TestLAE.node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b)))).getMatrix();
+
+            //other tests may run engines at the same time, so only lower bounds are checked
+            assertTrue(registry.counter("multiply.flops").get() - flops >= 2L * 40 * 30 * 20);
+            assertTrue(registry.counter("memory.load.bytes").get() - loaded >= (40 * 30 + 30 * 20) * 8L);
+            assertTrue(registry.timer("node.MULTIPLY.latency").getCount() > products);
+            assertTrue(registry.timer("node.NEGATE.latency").getCount() > negations);
+            assertTrue(registry.timer("executor.barrier.wait").getCount() - waves >= 2);
+            assertTrue(registry.timer("engine.run").getCount() > runs);
+            assertTrue(registry.histogram("node.tasks").getCount() > 0);
+            assertTrue(registry.histogram("multiply.mflops").getCount() > 0);
+        }
+
+        @Test
+        @DisplayName("Negative Test: A node whose task throws is still recorded")
+        @SuppressWarnings("unchecked")
+        public void testFailingTask() throws Exception {
+            MetricsRegistry registry = new MetricsRegistry();
+            Tracer tracer = new Tracer();
+            tracer.start();
+            // EngineMetrics and the JFR event are package-private, reached through reflection like TestLAE's mocks
+            Class<?> metricsClass = Class.forName("spl.lae.EngineMetrics");
+            Class<?> eventClass = Class.forName("spl.lae.NodeResolutionEvent");
+            Constructor<?> metricsConstructor = metricsClass.getDeclaredConstructor(MetricsRegistry.class, Tracer.class);
+            metricsConstructor.setAccessible(true);
+            Constructor<?> eventConstructor = eventClass.getDeclaredConstructor();
+            eventConstructor.setAccessible(true);
+            Method instrument = metricsClass.getDeclaredMethod("instrument",
+                ComputationNodeType.class, List.class, long.class, long.class, eventClass);
+            instrument.setAccessible(true);
+
+            List<Runnable> tasks = List.of(() -> { throw new ArithmeticException("boom"); }, () -> {});
+            List<Runnable> wrapped = (List<Runnable>) instrument.invoke(metricsConstructor.newInstance(registry, tracer),
+                ComputationNodeType.MULTIPLY, tasks, System.nanoTime(), 1000L, eventConstructor.newInstance());
+            assertThrows(ArithmeticException.class, () -> wrapped.get(0).run());
+            wrapped.get(1).run();
+
+            assertEquals(1, registry.timer("node.MULTIPLY.latency").getCount());
+            assertEquals(1, registry.histogram("multiply.mflops").getCount());
+            //the prepare span, both task spans and the node's async span
+            assertEquals(4, tracer.spanCount());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+import parser.OutputWriter;
+import spl.lae.LinearAlgebraEngine;
+
+public class TestOutputWriter {
+
+    @TempDir
+    Path tempDir;
+
+    private double[][] randomTable(int rows, int cols, long seed) {
+        Random random = new Random(seed);
+        double[][] table = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                table[i][j] = (random.nextInt(2001) - 1000) / 8.0;
+            }
+        }
+        return table;
+    }
+
+    // the pretty and compact formats may only differ in whitespace
+    private String stripWhitespace(String json) {
+        return json.replaceAll("\\s", "");
+    }
+
+    @Nested
+    @DisplayName("Compact output format")
+    class CompactFormat {
+
+        @Test
+        @DisplayName("Positive Test: Compact output matches the pretty output without whitespace")
+        public void testCompactMatchesPretty() throws IOException {
+            double[][] matrix = randomTable(7, 5, 1);
+            matrix[0][0] = 1e-7;
+            matrix[0][1] = 123456789012.5;
+            matrix[0][2] = -0.0;
+            Path pretty = tempDir.resolve("pretty.json");
+            Path compact = tempDir.resolve("compact.json");
+
+            OutputWriter.write(matrix, pretty.toString());
+            OutputWriter.writeCompact(matrix, compact.toString());
+
+            String compactJson = Files.readString(compact);
+            assertEquals(stripWhitespace(Files.readString(pretty)), compactJson, "Only whitespace may differ");
+            assertFalse(compactJson.contains(" "), "Compact output should have no whitespace");
+        }
+
+        @Test
+        @DisplayName("Positive Test: Whole numbers are printed like Double.toString")
+        public void testWholeNumbers() throws IOException {
+            double[] values = {0.0, -0.0, 7, -42, 9_999_999, -9_999_999, 10_000_000, -10_000_000, 1e15, 0.5};
+            Path file = tempDir.resolve("whole.json");
+            OutputWriter.writeCompact(new double[][]{values}, file.toString());
+
+            StringBuilder expected = new StringBuilder("{\"result\":[[");
+            for (int i = 0; i < values.length; i++) {
+                expected.append(i == 0 ? "" : ",").append(Double.toString(values[i]));
+            }
+            assertEquals(expected.append("]]}").toString(), Files.readString(file));
+        }
+
+        @Test
+        @DisplayName("Positive Test: Rows written one at a time")
+        public void testRowWriter() throws IOException {
+            Path file = tempDir.resolve("rows.json");
+            try (OutputWriter.RowWriter rows = OutputWriter.openRows(file.toString())) {
+                rows.writeRow(new double[]{1, 2});
+                rows.writeRow(new double[]{0, 3, 4, 0}, 1, 2);
+            }
+            assertEquals("{\"result\":[[1.0,2.0],[3.0,4.0]]}", Files.readString(file));
+        }
+    }
+
+    @Nested
+    @DisplayName("Streaming the engine result")
+    class StreamingEngine {
+
+        // runs the tree both ways and compares the streamed file with the pretty output
+        private void assertStreamsLikeRun(ComputationNode streamed, ComputationNode computed) throws IOException {
+            Path pretty = tempDir.resolve("run.json");
+            Path compact = tempDir.resolve("streamed.json");
+            OutputWriter.write(new LinearAlgebraEngine(4).run(computed).getMatrix(), pretty.toString());
+            try (OutputWriter.RowWriter rows = OutputWriter.openRows(compact.toString())) {
+                new LinearAlgebraEngine(4).runStreaming(streamed, rows);
+            }
+            assertEquals(stripWhitespace(Files.readString(pretty)), Files.readString(compact), "Streamed result should match run()");
+        }
+
+        @Test
+        @DisplayName("Positive Test: Multiplication rows are streamed band by band")
+        public void testStreamMultiply() throws IOException {
+            // 200 rows give four bands of tiles, the last one partial
+            double[][] a = randomTable(200, 70, 2);
+            double[][] b = randomTable(70, 90, 3);
+            double[][] c = randomTable(200, 90, 4);
+            assertStreamsLikeRun(
+                TestLAE.node(ComputationNodeType.MULTIPLY, TestLAE.node(ComputationNodeType.ADD, new ComputationNode(a), new ComputationNode(a)), new ComputationNode(b)),
+                TestLAE.node(ComputationNodeType.MULTIPLY, TestLAE.node(ComputationNodeType.ADD, new ComputationNode(a), new ComputationNode(a)), new ComputationNode(b)));
+            assertStreamsLikeRun(
+                TestLAE.node(ComputationNodeType.ADD, TestLAE.node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b)), new ComputationNode(c)),
+                TestLAE.node(ComputationNodeType.ADD, TestLAE.node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b)), new ComputationNode(c)));
+        }
+
+        @Test
+        @DisplayName("Positive Test: Transposed and plain matrix roots")
+        public void testStreamOtherRoots() throws IOException {
+            double[][] a = randomTable(3, 5, 5);
+            assertStreamsLikeRun(TestLAE.node(ComputationNodeType.TRANSPOSE, new ComputationNode(a)),
+                TestLAE.node(ComputationNodeType.TRANSPOSE, new ComputationNode(a)));
+            assertStreamsLikeRun(new ComputationNode(a), new ComputationNode(a));
+        }
+    }
+}
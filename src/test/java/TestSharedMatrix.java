@@ -3,6 +3,7 @@ import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import static org.junit.jupiter.api.Assertions.*;
 
+import memory.ReadConcurrency;
 import memory.SharedMatrix;
 import memory.SharedVector;
 import memory.VectorOrientation;
@@ -452,5 +453,201 @@ public class TestSharedMatrix {
             assertThrows(NullPointerException.class, ()-> {nullMatrix.readRowMajor();}, "Expected readRowMajor() to throw, but it didn't");
         }
     }
-}
 
+    @Nested
+    @DisplayName("Matrix Flat Storage Tests")
+    class FlatStorageTests {
+        //test that row operations write through to the matrix storage
+        @Test public void testRowViewWritesThrough() {
+            double[][] table = { {1,2}, {3,4}, {5,6} };
+            SharedMatrix matrix = new SharedMatrix(table);
+
+            matrix.get(1).negate();
+            matrix.get(2).add(new SharedVector(new double[]{10, 20}, VectorOrientation.ROW_MAJOR));
+
+            double[][] expected = { {1,2}, {-3,-4}, {15,26} };
+            assertArrayEquals(expected, matrix.readRowMajor(), "Row view updates should be visible in readRowMajor");
+        }
+        //test that column views expose the right slices
+        @Test public void testColumnViewSlices() {
+            double[][] table = { {1,2,3}, {4,5,6} };
+            SharedMatrix matrix = new SharedMatrix();
+            matrix.loadColumnMajor(table);
+
+            assertEquals(3, matrix.length(), "Column-major matrix should hold one vector per column");
+            assertEquals(new SharedVector(new double[]{3,6}, VectorOrientation.COLUMN_MAJOR), matrix.get(2), "Last column view content");
+        }
+        //test that the input table is copied and not aliased
+        @Test public void testLoadDoesNotAliasInput() {
+            double[][] table = { {1,2}, {3,4} };
+            SharedMatrix matrix = new SharedMatrix(table);
+
+            table[0][0] = 99;
+            assertEquals(1.0, matrix.get(0).get(0), "Matrix should not be affected by changes to the source table");
+        }
+        //test that a row resized by vecMatMul is still read correctly
+        @Test public void testResizedRowAfterVecMatMul() {
+            double[][] left = { {1,2,3}, {4,5,6} };
+            double[][] right = { {1,0}, {0,1}, {1,1} };
+            SharedMatrix leftMatrix = new SharedMatrix(left);
+            SharedMatrix rightMatrix = new SharedMatrix();
+            rightMatrix.loadColumnMajor(right);
+
+            leftMatrix.get(0).vecMatMul(rightMatrix);
+            leftMatrix.get(1).vecMatMul(rightMatrix);
+
+            double[][] expected = { {4,5}, {10,11} };
+            assertArrayEquals(expected, leftMatrix.readRowMajor(), "Product rows should be read after detaching from the buffer");
+        }
+        //test that a matching contiguous layout is reused as is
+        @Test public void testToOrientationSameLayout() {
+            SharedMatrix matrix = new SharedMatrix(new double[][]{ {1,2}, {3,4} });
+
+            assertSame(matrix, matrix.toOrientation(VectorOrientation.ROW_MAJOR), "Matching layout should not be copied");
+        }
+        //test that converting between layouts keeps the content
+        @Test public void testToOrientationConverts() {
+            double[][] table = { {1,2,3}, {4,5,6} };
+            SharedMatrix matrix = new SharedMatrix(table);
+
+            SharedMatrix columns = matrix.toOrientation(VectorOrientation.COLUMN_MAJOR);
+            assertEquals(VectorOrientation.COLUMN_MAJOR, columns.getOrientation(), "Converted matrix orientation");
+            assertEquals(3, columns.length(), "Column-major matrix should hold one vector per column");
+            assertArrayEquals(table, columns.readRowMajor(), "Content should survive the conversion");
+            assertArrayEquals(table, columns.toOrientation(VectorOrientation.ROW_MAJOR).readRowMajor(), "Content should survive converting back");
+        }
+        //test that a matrix with a detached row is compacted into a new buffer
+        @Test public void testToOrientationCompactsDetachedRows() {
+            SharedMatrix matrix = new SharedMatrix(new double[][]{ {1,2}, {3,4} });
+            SharedMatrix identity = new SharedMatrix();
+            identity.loadColumnMajor(new double[][]{ {1,0,0}, {0,1,0} });
+            matrix.get(0).vecMatMul(identity);
+            matrix.get(1).vecMatMul(identity);
+
+            SharedMatrix compact = matrix.toOrientation(VectorOrientation.ROW_MAJOR);
+            assertNotSame(matrix, compact, "Detached rows should be copied into a contiguous buffer");
+            assertArrayEquals(new double[][]{ {1,2,0}, {3,4,0} }, compact.readRowMajor(), "Compacted content");
+        }
+    }
+
+    @Nested
+    @DisplayName("Matrix Optimistic Read Tests")
+    class OptimisticReadTests {
+        //test that accessors give the same answers in locked and optimistic mode
+        @Test public void testLockedAndOptimisticAgree() {
+            double[][] table = { {1,2,3}, {4,5,6} };
+            boolean previous = ReadConcurrency.isOptimistic();
+            try {
+                for (boolean optimistic : new boolean[]{true, false}) {
+                    ReadConcurrency.setOptimistic(optimistic);
+                    SharedMatrix matrix = new SharedMatrix();
+                    matrix.loadColumnMajor(table);
+                    assertEquals(3, matrix.length(), "Length in mode optimistic=" + optimistic);
+                    assertEquals(VectorOrientation.COLUMN_MAJOR, matrix.getOrientation(), "Orientation in mode optimistic=" + optimistic);
+                    assertEquals(6.0, matrix.get(2).get(1), "Content in mode optimistic=" + optimistic);
+                    assertThrows(IndexOutOfBoundsException.class, () -> matrix.get(3), "Bounds in mode optimistic=" + optimistic);
+                }
+            }
+            finally {
+                ReadConcurrency.setOptimistic(previous);
+            }
+        }
+        //test that optimistic readers never observe a half-loaded matrix
+        @Test public void testOptimisticReadsDuringLoads() throws InterruptedException {
+            double[][] small = { {1,1,1}, {1,1,1} };
+            double[][] large = { {2,2}, {2,2}, {2,2} };
+            SharedMatrix matrix = new SharedMatrix(small);
+            java.util.concurrent.atomic.AtomicBoolean failed = new java.util.concurrent.atomic.AtomicBoolean(false);
+            java.util.concurrent.atomic.AtomicBoolean running = new java.util.concurrent.atomic.AtomicBoolean(true);
+
+            Thread loader = new Thread(() -> {
+                for (int i = 0; i < 2000; i++) {
+                    matrix.loadRowMajor(i % 2 == 0 ? large : small);
+                }
+                running.set(false);
+            });
+            Thread reader = new Thread(() -> {
+                while (running.get()) {
+                    SharedVector row = matrix.get(0);
+                    double[] values = row.toArray();
+                    //a 2-wide row holds only 2s and a 3-wide row only 1s
+                    double expected = values.length == 2 ? 2.0 : 1.0;
+                    for (double value : values) {
+                        if (value != expected) failed.set(true);
+                    }
+                }
+            });
+            loader.start();
+            reader.start();
+            loader.join();
+            reader.join();
+            assertFalse(failed.get(), "Readers should only see complete matrices");
+        }
+    }
+
+    @Nested
+    @DisplayName("Matrix Transpose Tests")
+    class TransposeTests {
+
+        private double[][] table(int rows, int cols) {
+            double[][] table = new double[rows][cols];
+            for (int i = 0; i < rows; i++) {
+                for (int j = 0; j < cols; j++) {
+                    table[i][j] = i * cols + j;
+                }
+            }
+            return table;
+        }
+
+        @Test
+        @DisplayName("Positive Test: Transpose flips the layout and keeps the same vectors")
+        public void testTransposeIsAFlag() {
+            double[][] table = table(3, 5);
+            SharedMatrix matrix = new SharedMatrix(table);
+            SharedVector firstRow = matrix.get(0);
+
+            matrix.transpose();
+            assertEquals(VectorOrientation.COLUMN_MAJOR, matrix.getOrientation());
+            assertSame(firstRow, matrix.get(0), "No vector should be copied");
+            double[][] transposed = matrix.readRowMajor();
+            assertEquals(5, transposed.length);
+            for (int i = 0; i < 3; i++) {
+                for (int j = 0; j < 5; j++) {
+                    assertEquals(table[i][j], transposed[j][i]);
+                }
+            }
+
+            matrix.transpose();
+            assertArrayEquals(table, matrix.readRowMajor(), "Transposing twice should restore the matrix");
+        }
+
+        @Test
+        @DisplayName("Positive Test: Blocked transpose by column bands matches readRowMajor")
+        public void testTransposeInto() {
+            //larger than a block in both directions and not a multiple of it
+            double[][] table = table(70, 45);
+            SharedMatrix matrix = new SharedMatrix();
+            matrix.loadColumnMajor(table);
+
+            double[][] rows = new double[70][45];
+            matrix.transposeInto(rows, 0, 20);
+            matrix.transposeInto(rows, 20, 45);
+            assertArrayEquals(table, rows);
+            assertArrayEquals(table, matrix.readRowMajor());
+            assertArrayEquals(table, matrix.toOrientation(VectorOrientation.ROW_MAJOR).readRowMajor());
+        }
+
+        @Test
+        @DisplayName("Negative Test: Only column-major matrices transpose into rows of the right shape")
+        public void testTransposeIntoInvalid() {
+            SharedMatrix rowMajor = new SharedMatrix(table(2, 3));
+            assertThrows(IllegalStateException.class, () -> rowMajor.transposeInto(new double[2][3], 0, 2));
+
+            SharedMatrix columnMajor = new SharedMatrix();
+            columnMajor.loadColumnMajor(table(2, 3));
+            assertThrows(IllegalArgumentException.class, () -> columnMajor.transposeInto(new double[3][2], 0, 3));
+            assertThrows(IndexOutOfBoundsException.class, () -> columnMajor.transposeInto(new double[2][3], 0, 4));
+            assertThrows(IllegalStateException.class, () -> new SharedMatrix().transpose());
+        }
+    }
+}
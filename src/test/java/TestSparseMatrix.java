@@ -0,0 +1,241 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.Random;
+
+import memory.SharedMatrix;
+import memory.SparseMatrix;
+import memory.VectorOrientation;
+
+public class TestSparseMatrix {
+
+    // random matrix with about density * rows * cols small integer nonzeros, so every sum is exact
+    private static double[][] randomSparse(int rows, int cols, double density, long seed) {
+        Random random = new Random(seed);
+        double[][] table = new double[rows][cols];
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < cols; j++) {
+                if (random.nextDouble() < density) {
+                    table[i][j] = random.nextInt(19) - 9;
+                }
+            }
+        }
+        return table;
+    }
+
+    private static double[][] multiply(double[][] a, double[][] b) {
+        double[][] c = new double[a.length][b[0].length];
+        for (int i = 0; i < a.length; i++) {
+            for (int k = 0; k < b.length; k++) {
+                for (int j = 0; j < b[0].length; j++) {
+                    c[i][j] += a[i][k] * b[k][j];
+                }
+            }
+        }
+        return c;
+    }
+
+    private static double[][] transpose(double[][] a) {
+        double[][] t = new double[a[0].length][a.length];
+        for (int i = 0; i < a.length; i++) {
+            for (int j = 0; j < a[0].length; j++) {
+                t[j][i] = a[i][j];
+            }
+        }
+        return t;
+    }
+
+    @Nested
+    @DisplayName("Compressed storage")
+    class CompressedStorageTests {
+
+        @Test
+        @DisplayName("Positive Test: CSR and CSC both round-trip to the same dense matrix")
+        public void testRoundTrip() {
+            double[][] table = randomSparse(37, 53, 0.05, 1);
+            SparseMatrix csr = SparseMatrix.fromDense(table, VectorOrientation.ROW_MAJOR);
+            SparseMatrix csc = SparseMatrix.fromDense(table, VectorOrientation.COLUMN_MAJOR);
+
+            assertEquals(37, csr.majorLength());
+            assertEquals(53, csc.majorLength());
+            assertEquals(csr.nonZeros(), csc.nonZeros());
+            assertArrayEquals(table, csr.toDense());
+            assertArrayEquals(table, csc.toDense());
+            assertArrayEquals(table, csr.toOrientation(VectorOrientation.COLUMN_MAJOR).toDense());
+            assertArrayEquals(table, csc.toOrientation(VectorOrientation.ROW_MAJOR).toDense());
+            assertSame(csr, csr.toOrientation(VectorOrientation.ROW_MAJOR), "Same orientation needs no conversion");
+        }
+
+        @Test
+        @DisplayName("Positive Test: Density counts nonzeros only")
+        public void testDensity() {
+            double[][] table = {{0, 1, 0, 0}, {0, 0, 0, 2}};
+            assertEquals(0.25, SparseMatrix.density(table));
+            assertEquals(0.25, SparseMatrix.density(new SharedMatrix(table)));
+            assertEquals(0.25, SparseMatrix.fromDense(table, VectorOrientation.ROW_MAJOR).density());
+        }
+
+        @Test
+        @DisplayName("Positive Test: Only finite values other than -0.0 are plain")
+        public void testPlainValues() {
+            double[][] table = {{0, 1, 0, 0}, {0, 0, 0, 2}};
+            assertTrue(SparseMatrix.allMatch(table, SparseMatrix::isPlain));
+            table[0][0] = -0.0;
+            assertFalse(SparseMatrix.allMatch(table, SparseMatrix::isPlain));
+            assertFalse(SparseMatrix.allMatch(new SharedMatrix(table), SparseMatrix::isPlain));
+            table[0][0] = Double.NaN;
+            assertFalse(SparseMatrix.fromDense(table, VectorOrientation.ROW_MAJOR).allMatch(SparseMatrix::isPlain));
+            assertFalse(SparseMatrix.isPlain(Double.NEGATIVE_INFINITY));
+            assertTrue(SparseMatrix.isPlain(0.0));
+        }
+
+        @Test
+        @DisplayName("Positive Test: Compressing a column-major matrix keeps its orientation")
+        public void testFromShared() {
+            double[][] table = randomSparse(20, 30, 0.1, 2);
+            SharedMatrix columns = new SharedMatrix();
+            columns.loadColumnMajor(table);
+
+            SparseMatrix sparse = SparseMatrix.fromShared(columns);
+            assertEquals(VectorOrientation.COLUMN_MAJOR, sparse.getOrientation());
+            assertArrayEquals(table, sparse.toDense());
+            assertArrayEquals(table, sparse.toShared(VectorOrientation.ROW_MAJOR).readRowMajor());
+        }
+
+        @Test
+        @DisplayName("Positive Test: Transpose and negate")
+        public void testTransposeAndNegate() {
+            double[][] table = randomSparse(15, 40, 0.1, 3);
+            SparseMatrix sparse = SparseMatrix.fromDense(table, VectorOrientation.ROW_MAJOR);
+
+            SparseMatrix transposed = sparse.transpose();
+            assertEquals(VectorOrientation.COLUMN_MAJOR, transposed.getOrientation());
+            assertEquals(40, transposed.rows());
+            assertArrayEquals(transpose(table), transposed.toDense());
+
+            double[][] negated = sparse.negate().toDense();
+            for (int i = 0; i < table.length; i++) {
+                for (int j = 0; j < table[0].length; j++) {
+                    assertEquals(-table[i][j] + 0.0, negated[i][j] + 0.0);
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("Negative Test: Jagged and empty matrices are rejected")
+        public void testInvalidInput() {
+            assertThrows(IllegalArgumentException.class, () -> SparseMatrix.fromDense(new double[][]{{1, 2}, {3}}, VectorOrientation.ROW_MAJOR));
+            assertThrows(IllegalArgumentException.class, () -> SparseMatrix.fromDense(new double[][]{{}}, VectorOrientation.ROW_MAJOR));
+            assertThrows(NullPointerException.class, () -> SparseMatrix.fromDense(null, VectorOrientation.ROW_MAJOR));
+        }
+    }
+
+    @Nested
+    @DisplayName("Sparse kernels")
+    class SparseKernelTests {
+
+        @Test
+        @DisplayName("Positive Test: Sparse x sparse by bands matches the dense product")
+        public void testSparseProduct() {
+            double[][] a = randomSparse(70, 45, 0.08, 4);
+            double[][] b = randomSparse(45, 90, 0.08, 5);
+            SparseMatrix left = SparseMatrix.fromDense(a, VectorOrientation.ROW_MAJOR);
+            SparseMatrix right = SparseMatrix.fromDense(b, VectorOrientation.ROW_MAJOR);
+
+            SparseMatrix product = SparseMatrix.concat(List.of(
+                SparseMatrix.multiplyRows(left, right, 0, 30),
+                SparseMatrix.multiplyRows(left, right, 30, 70)));
+            assertEquals(70, product.rows());
+            assertEquals(90, product.columns());
+            assertArrayEquals(multiply(a, b), product.toDense());
+            assertThrows(IllegalArgumentException.class, () -> SparseMatrix.multiplyRows(right, right, 0, 1));
+        }
+
+        @Test
+        @DisplayName("Positive Test: Sparse sum and difference by bands, in both orientations")
+        public void testSparseSum() {
+            double[][] a = randomSparse(33, 21, 0.1, 6);
+            double[][] b = randomSparse(33, 21, 0.1, 7);
+            for (VectorOrientation orientation : VectorOrientation.values()) {
+                SparseMatrix left = SparseMatrix.fromDense(a, orientation);
+                SparseMatrix right = SparseMatrix.fromDense(b, orientation);
+                int majors = left.majorLength();
+                double[][] sum = SparseMatrix.concat(List.of(
+                    SparseMatrix.addVectors(left, right, 1.0, 0, 10),
+                    SparseMatrix.addVectors(left, right, 1.0, 10, majors))).toDense();
+                double[][] difference = SparseMatrix.addVectors(left, right, -1.0, 0, majors).toDense();
+                for (int i = 0; i < a.length; i++) {
+                    for (int j = 0; j < a[0].length; j++) {
+                        assertEquals(a[i][j] + b[i][j], sum[i][j], orientation + " sum");
+                        assertEquals(a[i][j] - b[i][j], difference[i][j], orientation + " difference");
+                    }
+                }
+            }
+            SparseMatrix left = SparseMatrix.fromDense(a, VectorOrientation.ROW_MAJOR);
+            SparseMatrix wrongShape = SparseMatrix.fromDense(randomSparse(21, 33, 0.1, 8), VectorOrientation.ROW_MAJOR);
+            assertThrows(IllegalArgumentException.class, () -> SparseMatrix.addVectors(left, wrongShape, 1.0, 0, 1));
+        }
+
+        @Test
+        @DisplayName("Positive Test: Sparse x dense and dense x sparse into dense rows, with and without addend")
+        public void testMixedProducts() {
+            double[][] a = randomSparse(50, 40, 0.05, 9);
+            double[][] b = randomSparse(40, 30, 0.9, 10);
+            double[][] c = randomSparse(50, 30, 0.9, 11);
+            double[][] expected = multiply(a, b);
+
+            SharedMatrix denseRight = new SharedMatrix(b);
+            SharedMatrix result = new SharedMatrix();
+            result.allocateRowMajor(50, 30);
+            SparseMatrix sparseLeft = SparseMatrix.fromDense(a, VectorOrientation.ROW_MAJOR);
+            result.multiplySparseRows(sparseLeft, denseRight, null, 0, 20);
+            result.multiplySparseRows(sparseLeft, denseRight, null, 20, 50);
+            assertArrayEquals(expected, result.readRowMajor());
+
+            //the same product with the sparse operand on the right: T(B) * T(A) = T(A * B)
+            SharedMatrix denseLeft = new SharedMatrix(transpose(b));
+            SharedMatrix transposed = new SharedMatrix();
+            transposed.allocateRowMajor(30, 50);
+            transposed.multiplyBySparseRows(denseLeft, sparseLeft.transpose(), null, 0, 30);
+            assertArrayEquals(transpose(expected), transposed.readRowMajor());
+
+            SharedMatrix fused = new SharedMatrix();
+            fused.allocateRowMajor(50, 30);
+            fused.multiplySparseRows(sparseLeft, denseRight, new SharedMatrix(c), 0, 50);
+            double[][] actual = fused.readRowMajor();
+            for (int i = 0; i < 50; i++) {
+                for (int j = 0; j < 30; j++) {
+                    assertEquals(expected[i][j] + c[i][j], actual[i][j]);
+                }
+            }
+        }
+
+        @Test
+        @DisplayName("Positive Test: Sparse nonzeros are added into a dense matrix in place")
+        public void testAddSparse() {
+            double[][] a = randomSparse(12, 9, 0.9, 12);
+            double[][] b = randomSparse(12, 9, 0.1, 13);
+            SharedMatrix dense = new SharedMatrix();
+            dense.loadColumnMajor(a);
+            SparseMatrix sparse = SparseMatrix.fromDense(b, VectorOrientation.COLUMN_MAJOR);
+            dense.addSparse(sparse, -1.0, 0, 9);
+
+            double[][] actual = dense.readRowMajor();
+            for (int i = 0; i < 12; i++) {
+                for (int j = 0; j < 9; j++) {
+                    assertEquals(a[i][j] - b[i][j], actual[i][j]);
+                }
+            }
+            assertThrows(IllegalArgumentException.class,
+                () -> dense.addSparse(SparseMatrix.fromDense(b, VectorOrientation.ROW_MAJOR), 1.0, 0, 1));
+
+            SharedMatrix square = new SharedMatrix();
+            square.loadColumnMajor(randomSparse(5, 5, 0.9, 14));
+            assertThrows(UnsupportedOperationException.class,
+                () -> square.addSparse(SparseMatrix.fromDense(randomSparse(5, 5, 0.3, 15), VectorOrientation.ROW_MAJOR), 1.0, 0, 1));
+        }
+    }
+}
@@ -0,0 +1,169 @@
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+import spl.lae.LinearAlgebraEngine;
+import tracing.Tracer;
+
+public class TestTracer {
+
+    @TempDir
+    Path tempDir;
+
+    // writes the trace and returns its traceEvents
+    private List<JsonNode> export(Tracer tracer) throws Exception {
+        Path file = tempDir.resolve("out.trace.json");
+        tracer.writeChromeTrace(file);
+        JsonNode root = new ObjectMapper().readTree(file.toFile());
+        List<JsonNode> events = new ArrayList<>();
+        root.get("traceEvents").forEach(events::add);
+        return events;
+    }
+
+    private static List<JsonNode> withCategory(List<JsonNode> events, String phase, String category) {
+        List<JsonNode> matching = new ArrayList<>();
+        for (JsonNode event : events) {
+            if (event.get("ph").asText().equals(phase) && event.has("cat") && event.get("cat").asText().equals(category)) {
+                matching.add(event);
+            }
+        }
+        return matching;
+    }
+
+    @Nested
+    @DisplayName("Recording")
+    class RecordingTests {
+
+        @Test
+        @DisplayName("Positive Test: Spans of every thread are kept, beyond one chunk")
+        public void testThreadBuffers() throws Exception {
+            Tracer tracer = new Tracer();
+            tracer.start();
+            int perThread = 3000;
+            List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                Thread thread = new Thread(() -> {
+                    for (int i = 0; i < perThread; i++) {
+                        long now = System.nanoTime();
+                        tracer.span("test", "span", now, now + 1000, "index", i);
+                    }
+                }, "recorder-" + t);
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            assertEquals(4 * perThread, tracer.spanCount());
+
+            List<JsonNode> events = export(tracer);
+            Map<Long, Integer> perTid = new HashMap<>();
+            for (JsonNode event : withCategory(events, "X", "test")) {
+                perTid.merge(event.get("tid").asLong(), 1, Integer::sum);
+                assertEquals(1.0, event.get("dur").asDouble(), 1e-9);
+            }
+            assertEquals(4, perTid.size());
+            perTid.values().forEach(count -> assertEquals(perThread, count));
+            long named = events.stream()
+                .filter(e -> e.get("ph").asText().equals("M") && e.get("args").get("name").asText().startsWith("recorder-"))
+                .count();
+            assertEquals(4, named);
+        }
+
+        @Test
+        @DisplayName("Positive Test: Async spans are exported as begin and end with their id")
+        public void testAsyncSpan() throws Exception {
+            Tracer tracer = new Tracer();
+            tracer.start();
+            long id = tracer.nextId();
+            long begin = System.nanoTime();
+            tracer.async("node", "ADD #" + id, id, begin, begin + 5000, "tasks", 3);
+
+            List<JsonNode> events = export(tracer);
+            JsonNode start = withCategory(events, "b", "node").get(0);
+            JsonNode end = withCategory(events, "e", "node").get(0);
+            assertEquals(start.get("id").asText(), end.get("id").asText());
+            assertEquals(3, start.get("args").get("tasks").asInt());
+            assertEquals(5.0, end.get("ts").asDouble() - start.get("ts").asDouble(), 1e-6);
+        }
+
+        @Test
+        @DisplayName("Negative Test: Nothing is recorded before start, after stop or before a clear")
+        public void testDisabledAndClear() {
+            Tracer tracer = new Tracer();
+            tracer.span("test", "ignored", 0, 1);
+            assertEquals(0, tracer.spanCount());
+            tracer.start();
+            tracer.span("test", "kept", 0, 1);
+            tracer.clear();
+            assertEquals(0, tracer.spanCount());
+            tracer.span("test", "after clear", 0, 1);
+            assertEquals(1, tracer.spanCount(), "The thread should record into a fresh buffer");
+            tracer.stop();
+            tracer.span("test", "ignored", 0, 1);
+            assertEquals(1, tracer.spanCount());
+            assertThrows(IllegalArgumentException.class, () -> tracer.async("node", "no id", 0, 0, 1, null, 0));
+        }
+    }
+
+    @Nested
+    @DisplayName("Engine timeline")
+    class EngineTimelineTests {
+
+        @Test
+        @DisplayName("Positive Test: A run traces its nodes, tasks, preparation and barriers")
+        public void testEngineTrace() throws Exception {
+            Tracer tracer = Tracer.global();
+            tracer.clear();
+            tracer.start();
+            try {
+                double[][] a = new double[64][64];
+                double[][] b = new double[64][64];
+                // -(A * B): two waves, the product then the negation
+                new LinearAlgebraEngine(3).run(TestLAE.node(ComputationNodeType.NEGATE,
+                    TestLAE.node(ComputationNodeType.MULTIPLY, new ComputationNode(a), new ComputationNode(b)))).getMatrix();
+            } finally {
+                tracer.stop();
+            }
+            List<JsonNode> events = export(tracer);
+            tracer.clear();
+
+            List<JsonNode> nodes = withCategory(events, "b", "node");
+            Set<String> operators = new HashSet<>();
+            for (JsonNode node : nodes) {
+                operators.add(node.get("name").asText().split(" ")[0]);
+            }
+            assertEquals(Set.of("MULTIPLY", "NEGATE"), operators);
+            assertEquals(nodes.size(), withCategory(events, "e", "node").size());
+            assertEquals(nodes.size(), withCategory(events, "X", "engine").size(), "Every node should have a prepare span");
+
+            //every node's tasks are traced under the node's name, on the workers
+            int tasks = 0;
+            for (JsonNode node : nodes) {
+                tasks += node.get("args").get("tasks").asInt();
+            }
+            List<JsonNode> taskSpans = withCategory(events, "X", "task");
+            assertEquals(tasks, taskSpans.size());
+            long planner = withCategory(events, "X", "engine").get(0).get("tid").asLong();
+            assertTrue(taskSpans.stream().noneMatch(e -> e.get("tid").asLong() == planner));
+
+            List<JsonNode> executor = withCategory(events, "X", "executor");
+            assertTrue(executor.stream().filter(e -> e.get("name").asText().equals("barrier")).count() >= 2);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Nested;
 
 import memory.SharedMatrix;
 import memory.SharedVector;
+import memory.VectorKernels;
 import memory.VectorOrientation;
 
 public class TestVector {
@@ -1087,4 +1088,140 @@ public class TestVector {
             assertEquals("| 1.0 | 2.0 | 3.0 |", result, "Column-major vector toString format");
         }
     }
+
+    @Nested
+    @DisplayName("Vector Kernel Backend Tests")
+    class vectorKernelTests {
+        // Test that the active backend agrees with the scalar one, including tails shorter than a SIMD register
+        @Test public void testActiveKernelsMatchScalar() {
+            VectorKernels active = VectorKernels.active();
+            VectorKernels scalar = VectorKernels.scalar();
+            java.util.Random random = new java.util.Random(7);
+            for (int length = 1; length <= 37; length++) {
+                double[] a = new double[length + 3];
+                double[] b = new double[length + 5];
+                for (int i = 0; i < a.length; i++) a[i] = random.nextInt(11) - 5;
+                for (int i = 0; i < b.length; i++) b[i] = random.nextInt(11) - 5;
+
+                assertEquals(scalar.dot(a, 3, b, 5, length), active.dot(a, 3, b, 5, length), "Dot product of length " + length);
+
+                double[] sumScalar = a.clone();
+                double[] sumActive = a.clone();
+                scalar.add(sumScalar, 1, b, 2, length);
+                active.add(sumActive, 1, b, 2, length);
+                assertArrayEquals(sumScalar, sumActive, "Addition of length " + length);
+
+                double[] diffScalar = a.clone();
+                double[] diffActive = a.clone();
+                scalar.subtract(diffScalar, 1, b, 2, length);
+                active.subtract(diffActive, 1, b, 2, length);
+                assertArrayEquals(diffScalar, diffActive, "Subtraction of length " + length);
+
+                double[] negScalar = b.clone();
+                double[] negActive = b.clone();
+                scalar.negate(negScalar, 4, length);
+                active.negate(negActive, 4, length);
+                assertArrayEquals(negScalar, negActive, "Negation of length " + length);
+            }
+        }
+        // Test that subtract gives the same result as adding the negation
+        @Test public void testSubtractMatchesAddNegated() {
+            SharedVector fused = new SharedVector(new double[]{1.5, -2, 3, 0.1}, VectorOrientation.ROW_MAJOR);
+            SharedVector unfused = new SharedVector(new double[]{1.5, -2, 3, 0.1}, VectorOrientation.ROW_MAJOR);
+            SharedVector other = new SharedVector(new double[]{0.2, 4, -3, 7}, VectorOrientation.ROW_MAJOR);
+            SharedVector negated = new SharedVector(new double[]{0.2, 4, -3, 7}, VectorOrientation.ROW_MAJOR);
+            negated.negate();
+
+            fused.subtract(other);
+            unfused.add(negated);
+            assertEquals(unfused, fused, "a - b should equal a + (-b)");
+            assertThrows(IllegalArgumentException.class,
+                () -> fused.subtract(new SharedVector(new double[]{1}, VectorOrientation.ROW_MAJOR)));
+        }
+        // Test the 4x4 block of dot products against single dot products
+        @Test public void testDot4x4MatchesDot() {
+            VectorKernels active = VectorKernels.active();
+            int k = 19;
+            double[] a = new double[4 * k];
+            double[] b = new double[4 * k];
+            for (int i = 0; i < a.length; i++) {
+                a[i] = i % 7 - 3;
+                b[i] = i % 5 - 2;
+            }
+            double[] out = new double[16];
+            active.dot4x4(a, 0, k, b, 0, k, 2, k, out);
+            for (int r = 0; r < 4; r++) {
+                for (int c = 0; c < 4; c++) {
+                    assertEquals(active.dot(a, r * k + 2, b, c * k + 2, k - 2), out[r * 4 + c], "Entry " + r + "," + c);
+                }
+            }
+        }
+    }
+
+    @Nested
+    @DisplayName("Vector Bulk Access Tests")
+    class vectorBulkAccessTests {
+        // Test that withReadView exposes exactly the vector's slice
+        @Test public void testWithReadViewOnMatrixRow() {
+            SharedMatrix matrix = new SharedMatrix(new double[][]{ {1,2}, {3,4}, {5,6} });
+            double sum = matrix.get(1).withReadView((data, offset, length) -> {
+                double s = 0;
+                for (int i = offset; i < offset + length; i++) s += data[i];
+                return s;
+            });
+            assertEquals(7.0, sum, "withReadView should only see the second row");
+        }
+        // Test copyInto and toArray
+        @Test public void testCopyIntoAndToArray() {
+            SharedVector vector = new SharedVector(new double[]{1.0, 2.0, 3.0}, VectorOrientation.ROW_MAJOR);
+            double[] dst = new double[5];
+            vector.copyInto(dst, 2);
+            assertArrayEquals(new double[]{0, 0, 1, 2, 3}, dst, "copyInto should copy at the given offset");
+            assertArrayEquals(new double[]{1, 2, 3}, vector.toArray(), "toArray should return the elements");
+            assertThrows(IndexOutOfBoundsException.class, () -> vector.copyInto(dst, 3), "Expected exception for a too small destination");
+        }
+        // Test that opposite-direction additions do not deadlock thanks to the global lock order
+        @Test public void testOppositeAdditionsDoNotDeadlock() {
+            SharedVector a = new SharedVector(new double[]{1.0, 1.0}, VectorOrientation.ROW_MAJOR);
+            SharedVector b = new SharedVector(new double[]{1.0, 1.0}, VectorOrientation.ROW_MAJOR);
+            assertTimeoutPreemptively(java.time.Duration.ofSeconds(10), () -> {
+                Thread t1 = new Thread(() -> { for (int i = 0; i < 20000; i++) { a.add(b); a.negate(); } });
+                Thread t2 = new Thread(() -> { for (int i = 0; i < 20000; i++) { b.add(a); b.negate(); } });
+                t1.start();
+                t2.start();
+                t1.join();
+                t2.join();
+            }, "a.add(b) and b.add(a) running concurrently should never deadlock");
+        }
+    }
+
+    @Nested
+    @DisplayName("Vector Range Operation Tests")
+    class vectorRangeTests {
+
+        @Test
+        @DisplayName("Positive Test: Range operations touch only their elements")
+        public void testRangeOperations() {
+            SharedVector a = new SharedVector(new double[]{1, 2, 3, 4, 5}, VectorOrientation.ROW_MAJOR);
+            SharedVector b = new SharedVector(new double[]{10, 10, 10, 10, 10}, VectorOrientation.ROW_MAJOR);
+            a.add(b, 1, 3);
+            assertArrayEquals(new double[]{1, 12, 13, 4, 5}, a.toArray());
+            a.subtract(b, 3, 5);
+            assertArrayEquals(new double[]{1, 12, 13, -6, -5}, a.toArray());
+            a.negate(0, 2);
+            assertArrayEquals(new double[]{-1, -12, 13, -6, -5}, a.toArray());
+        }
+
+        @Test
+        @DisplayName("Negative Test: Out of bounds ranges and mismatched vectors are rejected")
+        public void testInvalidRanges() {
+            SharedVector a = new SharedVector(new double[]{1, 2, 3}, VectorOrientation.ROW_MAJOR);
+            SharedVector shorter = new SharedVector(new double[]{1, 2}, VectorOrientation.ROW_MAJOR);
+            assertThrows(IndexOutOfBoundsException.class, () -> a.negate(2, 4));
+            assertThrows(IndexOutOfBoundsException.class, () -> a.add(a, 2, 2));
+            assertThrows(IllegalArgumentException.class, () -> a.add(shorter, 0, 2));
+            assertThrows(NullPointerException.class, () -> a.subtract(null, 0, 1));
+            assertArrayEquals(new double[]{1, 2, 3}, a.toArray(), "A rejected range should not change the vector");
+        }
+    }
 }
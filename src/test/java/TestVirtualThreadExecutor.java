@@ -0,0 +1,156 @@
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+import scheduling.SchedulingMode;
+import scheduling.TaskExecutor;
+import scheduling.TiredExecutor;
+import scheduling.VirtualThreadExecutor;
+import spl.lae.LinearAlgebraEngine;
+
+/**
+ * Unit Test for VirtualThreadExecutor.
+ */
+public class TestVirtualThreadExecutor {
+
+    private VirtualThreadExecutor executor; //Object Under Test (OUT)
+    private final int PERMITS = 3;
+
+    @BeforeEach
+    public void setUp() {
+        executor = new VirtualThreadExecutor(PERMITS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Positive Test: submitAll runs every task before returning")
+    public void testSubmitAllRunsEverything() {
+        AtomicInteger counter = new AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            tasks.add(counter::incrementAndGet);
+        }
+        executor.submitAll(tasks);
+        assertEquals(500, counter.get(), "All tasks should be done when submitAll returns.");
+        assertTrue(executor.getWorkerReport().startsWith("Virtual threads: 500 tasks"));
+    }
+
+    @Test
+    @DisplayName("Positive Test: Tasks run on virtual threads, at most one per permit at once")
+    public void testBoundedConcurrency() {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        AtomicInteger virtual = new AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            tasks.add(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                if (Thread.currentThread().isVirtual()) {
+                    virtual.incrementAndGet();
+                }
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+            });
+        }
+        executor.submitBatch(tasks);
+        assertEquals(30, virtual.get());
+        assertTrue(peak.get() <= PERMITS, "No more than " + PERMITS + " tasks should run at once, saw " + peak.get());
+        assertEquals(PERMITS, executor.getWorkerCount());
+    }
+
+    @Test
+    @DisplayName("Positive Test: submit does not block while every permit is taken")
+    public void testSubmitNeverBlocks() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(PERMITS * 2);
+        // take every permit, then queue as many tasks again
+        for (int i = 0; i < PERMITS * 2; i++) {
+            executor.submit(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        // reaching this line at all means submit returned while all permits were taken
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS), "Waiting tasks should run once permits free up.");
+    }
+
+    @Test
+    @DisplayName("Negative Test: A failing task is rethrown once the rest of the batch ran")
+    public void testFailingTask() {
+        AtomicInteger counter = new AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+        tasks.add(() -> { throw new ArithmeticException("boom"); });
+        for (int i = 0; i < 5; i++) {
+            tasks.add(counter::incrementAndGet);
+        }
+        ArithmeticException e = assertThrows(ArithmeticException.class, () -> executor.submitBatch(tasks));
+        assertEquals("boom", e.getMessage());
+        assertEquals(5, counter.get());
+
+        e = assertThrows(ArithmeticException.class, () -> executor.submitAll(tasks));
+        assertEquals(10, counter.get());
+        executor.submitBatch(List.of(counter::incrementAndGet));
+        assertEquals(11, counter.get(), "A later batch should not see the earlier failure");
+    }
+
+    @Test
+    @DisplayName("Positive Test: The report since a snapshot only counts the later tasks")
+    public void testReportSinceSnapshot() {
+        executor.submitAll(List.of(() -> {}, () -> {}));
+        TaskExecutor.Snapshot snapshot = executor.snapshot();
+        executor.submitAll(List.of(() -> {}));
+        assertTrue(executor.getWorkerReport(snapshot).startsWith("Virtual threads: 1 tasks"));
+        assertTrue(executor.getWorkerReport().startsWith("Virtual threads: 3 tasks"));
+    }
+
+    @Test
+    @DisplayName("Negative Test: Invalid arguments and a shut down executor are refused")
+    public void testInvalid() throws InterruptedException {
+        assertThrows(IllegalArgumentException.class, () -> new VirtualThreadExecutor(0));
+        assertThrows(IllegalArgumentException.class, () -> executor.submit(null));
+        assertThrows(NullPointerException.class, () -> executor.getWorkerReport(null));
+        TiredExecutor other = new TiredExecutor(1);
+        try {
+            assertThrows(IllegalArgumentException.class, () -> executor.getWorkerReport(other.snapshot()));
+            assertThrows(IllegalArgumentException.class, () -> other.getWorkerReport(executor.snapshot()));
+        } finally {
+            other.shutdown();
+        }
+        assertThrows(IllegalArgumentException.class, () -> new TiredExecutor(2, SchedulingMode.VIRTUAL_THREADS));
+        executor.shutdown();
+        assertThrows(IllegalStateException.class, () -> executor.submit(() -> {}));
+    }
+
+    @Test
+    @DisplayName("Positive Test: The engine computes the same results on virtual threads")
+    public void testEngine() {
+        double[][] a = {{1, 2}, {3, 4}, {5, 6}};
+        double[][] b = {{1, 0, 2}, {0, 1, 3}};
+        ComputationNode root = TestLAE.node(ComputationNodeType.NEGATE,
+            TestLAE.node(ComputationNodeType.MULTIPLY, TestLAE.leaf(a), TestLAE.leaf(b)));
+        double[][] result = new LinearAlgebraEngine(2, SchedulingMode.VIRTUAL_THREADS).run(root).getMatrix();
+        assertArrayEquals(new double[]{-1, -2, -8}, result[0]);
+        assertArrayEquals(new double[]{-3, -4, -18}, result[1]);
+        assertArrayEquals(new double[]{-5, -6, -28}, result[2]);
+    }
+}
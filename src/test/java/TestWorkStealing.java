@@ -0,0 +1,118 @@
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import scheduling.SchedulingMode;
+import scheduling.TiredExecutor;
+
+/**
+ * Unit Test for TiredExecutor in work-stealing mode.
+ */
+public class TestWorkStealing {
+
+    private TiredExecutor executor; //Object Under Test (OUT)
+    private final int NUM_THREADS = 3;
+
+    @BeforeEach
+    public void setUp() {
+        executor = new TiredExecutor(NUM_THREADS, SchedulingMode.WORK_STEALING);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Test
+    @DisplayName("Positive Test: submitAll runs every task before returning")
+    public void testSubmitAllRunsEverything() {
+        AtomicInteger counter = new AtomicInteger();
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            tasks.add(counter::incrementAndGet);
+        }
+        executor.submitAll(tasks);
+        assertEquals(500, counter.get(), "All tasks should be done when submitAll returns.");
+    }
+
+    @Test
+    @DisplayName("Positive Test: submit does not block while every worker is busy")
+    public void testSubmitNeverBlocks() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(NUM_THREADS * 2);
+        // occupy every worker, then queue as many tasks again
+        for (int i = 0; i < NUM_THREADS * 2; i++) {
+            executor.submit(() -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            });
+        }
+        // reaching this line at all means submit returned while all workers were blocked
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS), "Queued tasks should run once workers free up.");
+    }
+
+    @Test
+    @DisplayName("Positive Test: Idle workers steal queued work")
+    public void testIdleWorkersSteal() {
+        // submit() puts every task on the least tired worker's deque, only stealing spreads them
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            tasks.add(() -> {
+                long start = System.nanoTime();
+                while (System.nanoTime() - start < 2_000_000) {
+                    //busy wait 2ms so every worker gets a chance to steal
+                }
+            });
+        }
+        for (Runnable task : tasks) {
+            executor.submit(task);
+        }
+        executor.submitAll(new ArrayList<>());
+
+        int workersWithWork = 0;
+        for (String line : executor.getWorkerReport().split("\n")) {
+            if (line.contains("Work:") && !line.contains("Work: 0 ")) {
+                workersWithWork++;
+            }
+        }
+        assertTrue(workersWithWork > 1, "Tasks queued on one worker should have been stolen by others.");
+    }
+
+    @Test
+    @DisplayName("Positive Test: Shutdown stops all worker threads")
+    public void testShutdownStopsWorkers() throws Exception {
+        java.lang.reflect.Field field = executor.getClass().getDeclaredField("workers");
+        field.setAccessible(true);
+        Thread[] workers = (Thread[]) field.get(executor);
+
+        executor.shutdown();
+        for (Thread worker : workers) {
+            worker.join(1000);
+            assertFalse(worker.isAlive(), "Worker thread should not be alive after shutdown.");
+        }
+        assertThrows(IllegalStateException.class, () -> executor.submit(() -> {}), "Submitting after shutdown should fail.");
+    }
+
+    @Test
+    @DisplayName("Positive Test: Engine computes correctly on a work-stealing executor")
+    public void testEngineOnWorkStealing() {
+        spl.lae.LinearAlgebraEngine engine = new spl.lae.LinearAlgebraEngine(NUM_THREADS, SchedulingMode.WORK_STEALING);
+        parser.ComputationNode sum = new parser.ComputationNode(parser.ComputationNodeType.ADD, new ArrayList<>(List.of(
+            new parser.ComputationNode(new double[][]{{1, 2}, {3, 4}}),
+            new parser.ComputationNode(parser.ComputationNodeType.NEGATE, new ArrayList<>(List.of(
+                new parser.ComputationNode(new double[][]{{1, 1}, {1, 1}})))))));
+
+        double[][] result = engine.run(sum).getMatrix();
+        assertArrayEquals(new double[][]{{0, 1}, {2, 3}}, result, "A + (-B) on the work-stealing executor");
+    }
+}
@@ -0,0 +1,97 @@
+package benchmarks;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+
+import memory.ReadConcurrency;
+import memory.SharedMatrix;
+import memory.SharedVector;
+import memory.VectorOrientation;
+
+/**
+ * Measures read throughput of SharedMatrix/SharedVector accessors under contention,
+ * once with locked reads and once with optimistic StampedLock reads.
+ * Reader threads mimic the engine's task lambdas (matrix.length(), matrix.get(i),
+ * getOrientation(), vector.get(j)), a few writer threads keep adding into rows.
+ * Usage: ContentionBenchmark [readers] [writers] [size] [seconds]
+ */
+public class ContentionBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int readers = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int writers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+        double seconds = args.length > 3 ? Double.parseDouble(args[3]) : 2;
+
+        System.out.println("readers=" + readers + " writers=" + writers + " size=" + size);
+        for (boolean optimistic : new boolean[]{false, true, false, true}) {
+            ReadConcurrency.setOptimistic(optimistic);
+            long[] ops = run(readers, writers, size, (long) (seconds * 1e9));
+            System.out.printf("%-10s reads %8.2f Mops/s, writes %8.2f Kops/s%n",
+                optimistic ? "optimistic" : "locked", ops[0] / seconds / 1e6, ops[1] / seconds / 1e3);
+        }
+    }
+
+    private static long[] run(int readers, int writers, int size, long durationNanos) throws InterruptedException {
+        double[][] table = new double[size][size];
+        SharedMatrix matrix = new SharedMatrix(table);
+        SharedVector ones = new SharedVector(new double[size], VectorOrientation.ROW_MAJOR);
+        LongAdder reads = new LongAdder();
+        LongAdder writes = new LongAdder();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[readers + writers];
+        long[] deadline = new long[1];
+
+        for (int t = 0; t < readers; t++) {
+            final int seed = t;
+            threads[t] = new Thread(() -> {
+                awaitQuietly(start);
+                int i = seed;
+                long local = 0;
+                while (System.nanoTime() < deadline[0]) {
+                    for (int rep = 0; rep < 256; rep++) {
+                        int row = i % matrix.length();
+                        if (matrix.getOrientation() == VectorOrientation.ROW_MAJOR) {
+                            matrix.get(row).get(i % size);
+                        }
+                        i += 7;
+                        local += 4;
+                    }
+                }
+                reads.add(local);
+            });
+        }
+        for (int t = 0; t < writers; t++) {
+            final int seed = t;
+            threads[readers + t] = new Thread(() -> {
+                awaitQuietly(start);
+                int i = seed;
+                long local = 0;
+                while (System.nanoTime() < deadline[0]) {
+                    matrix.get(i % size).add(ones);
+                    i += 13;
+                    local++;
+                }
+                writes.add(local);
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        deadline[0] = System.nanoTime() + durationNanos;
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return new long[]{reads.sum(), writes.sum()};
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import memory.GemmKernel;
+import memory.SharedMatrix;
+import scheduling.TiredExecutor;
+
+/**
+ * Compares the row-task multiplication path (one vecMatMul task per left row)
+ * against the cache-blocked tile tasks used by LinearAlgebraEngine.
+ * Usage: MultiplyBenchmark [size] [threads] [repetitions]
+ */
+public class MultiplyBenchmark {
+
+    public static void main(String[] args) throws InterruptedException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        int repetitions = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+        double[][] a = randomTable(size, 1);
+        double[][] b = randomTable(size, 2);
+        TiredExecutor executor = new TiredExecutor(threads);
+        try {
+            System.out.println("size=" + size + " threads=" + threads);
+            // first round of each path is JIT warmup
+            for (int rep = 0; rep <= repetitions; rep++) {
+                long rowTime = timeRowTasks(executor, a, b);
+                long tileTime = timeTileTasks(executor, a, b);
+                if (rep > 0) {
+                    System.out.printf("rep %d: row tasks %.1f ms, tile tasks %.1f ms, speedup %.2fx, tile GFLOP/s %.2f%n",
+                        rep, rowTime / 1e6, tileTime / 1e6, (double) rowTime / tileTime,
+                        2.0 * size * size * size / tileTime);
+                }
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static long timeRowTasks(TiredExecutor executor, double[][] a, double[][] b) {
+        SharedMatrix left = new SharedMatrix(a);
+        SharedMatrix right = new SharedMatrix();
+        right.loadColumnMajor(b);
+        List<Runnable> tasks = new ArrayList<>();
+        for (int i = 0; i < left.length(); i++) {
+            final int index = i;
+            tasks.add(() -> left.get(index).vecMatMul(right));
+        }
+        long start = System.nanoTime();
+        executor.submitAll(tasks);
+        return System.nanoTime() - start;
+    }
+
+    private static long timeTileTasks(TiredExecutor executor, double[][] a, double[][] b) {
+        SharedMatrix left = new SharedMatrix(a);
+        SharedMatrix right = new SharedMatrix();
+        right.loadColumnMajor(b);
+        SharedMatrix result = new SharedMatrix();
+        result.allocateRowMajor(a.length, b[0].length);
+        List<Runnable> tasks = new ArrayList<>();
+        for (int row = 0; row < a.length; row += GemmKernel.TILE_ROWS) {
+            for (int col = 0; col < b[0].length; col += GemmKernel.TILE_COLS) {
+                final int rowFrom = row, rowTo = Math.min(row + GemmKernel.TILE_ROWS, a.length);
+                final int colFrom = col, colTo = Math.min(col + GemmKernel.TILE_COLS, b[0].length);
+                tasks.add(() -> result.multiplyTile(left, right, rowFrom, rowTo, colFrom, colTo));
+            }
+        }
+        long start = System.nanoTime();
+        executor.submitAll(tasks);
+        return System.nanoTime() - start;
+    }
+
+    private static double[][] randomTable(int size, long seed) {
+        Random random = new Random(seed);
+        double[][] table = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                table[i][j] = random.nextDouble();
+            }
+        }
+        return table;
+    }
+}
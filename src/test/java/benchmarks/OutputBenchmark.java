@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import parser.OutputWriter;
+
+/**
+ * Compares the pretty-printed ResultMatrix output against the compact streaming writer
+ * on a random size x size result, reporting time and file size.
+ * Results of integer inputs are whole numbers, which the compact writer formats itself.
+ * Usage: OutputBenchmark [size] [repetitions] [whole|fractional]
+ */
+public class OutputBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        boolean whole = args.length <= 2 || args[2].equals("whole");
+
+        Random random = new Random(1);
+        double[][] matrix = new double[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                matrix[i][j] = whole ? random.nextInt(200001) - 100000 : random.nextGaussian() * 1000;
+            }
+        }
+        Path pretty = Files.createTempFile("lae-pretty", ".json");
+        Path compact = Files.createTempFile("lae-compact", ".json");
+        try {
+            System.out.println("size=" + size + (whole ? " whole numbers" : " fractional numbers"));
+            // first round of each path is JIT warmup
+            for (int rep = 0; rep <= repetitions; rep++) {
+                long start = System.nanoTime();
+                OutputWriter.write(matrix, pretty.toString());
+                long prettyTime = System.nanoTime() - start;
+                start = System.nanoTime();
+                OutputWriter.writeCompact(matrix, compact.toString());
+                long compactTime = System.nanoTime() - start;
+                if (rep > 0) {
+                    System.out.printf("rep %d: pretty %.1f ms %.1f MB, compact %.1f ms %.1f MB, speedup %.2fx%n",
+                        rep, prettyTime / 1e6, Files.size(pretty) / 1e6, compactTime / 1e6, Files.size(compact) / 1e6,
+                        (double) prettyTime / compactTime);
+                }
+            }
+        }
+        finally {
+            Files.deleteIfExists(pretty);
+            Files.deleteIfExists(compact);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package benchmarks;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.util.Random;
+
+import parser.InputParser;
+
+/**
+ * Compares the streaming input parser against the JsonNode tree parser on a generated
+ * input of two size x size matrices, reporting time and bytes allocated by the parsing thread.
+ * Usage: ParserBenchmark [size] [repetitions]
+ */
+public class ParserBenchmark {
+
+    public static void main(String[] args) throws IOException, ParseException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 1500;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        Path input = Files.createTempFile("lae-parser", ".json");
+        try {
+            writeInput(input, size);
+            System.out.printf("size=%d file=%.1f MB%n", size, Files.size(input) / 1e6);
+            InputParser parser = new InputParser();
+            // first round of each path is JIT warmup
+            for (int rep = 0; rep <= repetitions; rep++) {
+                long[] tree = measure(() -> parser.parseTree(input.toString()));
+                long[] stream = measure(() -> parser.parse(input.toString()));
+                if (rep > 0) {
+                    System.out.printf("rep %d: tree %.1f ms %.1f MB allocated, streaming %.1f ms %.1f MB allocated, speedup %.2fx%n",
+                        rep, tree[0] / 1e6, tree[1] / 1e6, stream[0] / 1e6, stream[1] / 1e6, (double) tree[0] / stream[0]);
+                }
+            }
+        }
+        finally {
+            Files.deleteIfExists(input);
+        }
+    }
+
+    private interface Parse {
+        Object run() throws ParseException;
+    }
+
+    // returns {elapsed nanos, bytes allocated by this thread}
+    private static long[] measure(Parse parse) throws ParseException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        parse.run();
+        long elapsed = System.nanoTime() - start;
+        return new long[]{elapsed, threads.getThreadAllocatedBytes(threadId) - allocatedBefore};
+    }
+
+    private static void writeInput(Path input, int size) throws IOException {
+        Random random = new Random(1);
+        try (BufferedWriter out = Files.newBufferedWriter(input)) {
+            out.write("{\"operator\": \"*\", \"operands\": [");
+            for (int m = 0; m < 2; m++) {
+                out.write(m == 0 ? "[" : ",[");
+                for (int i = 0; i < size; i++) {
+                    out.write(i == 0 ? "[" : ",[");
+                    for (int j = 0; j < size; j++) {
+                        if (j > 0) {
+                            out.write(',');
+                        }
+                        out.write(Double.toString(random.nextInt(2001) / 100.0 - 10));
+                    }
+                    out.write(']');
+                }
+                out.write(']');
+            }
+            out.write("]}");
+        }
+    }
+}
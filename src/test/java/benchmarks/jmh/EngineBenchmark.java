@@ -0,0 +1,142 @@
+package benchmarks.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import parser.ComputationNode;
+import parser.ComputationNodeType;
+import spl.lae.LinearAlgebraEngine;
+
+/**
+ * Full LinearAlgebraEngine.run on generated trees, planning included, on a reusable engine.
+ * The engine resolves the tree in place, so a fresh tree over the same matrices is built
+ * before every call, outside the measurement.
+ * Operator mixes:
+ * add: a sum of 8 matrices.
+ * multiply: a chain of 4 products.
+ * mixed: a random tree of depth 4 over +, *, - and T.
+ * sparse: products and sums of matrices with 1% nonzeros.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EngineBenchmark {
+
+    @Param({"64", "256", "512"})
+    int size;
+
+    @Param({"1", "4"})
+    int threads;
+
+    @Param({"add", "multiply", "mixed", "sparse"})
+    String mix;
+
+    LinearAlgebraEngine engine;
+    List<double[][]> matrices;
+    ComputationNode tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = LinearAlgebraEngine.reusable(threads);
+        Random random = new Random(42);
+        double density = mix.equals("sparse") ? 0.01 : 1.0;
+        matrices = new ArrayList<>();
+        for (int m = 0; m < 8; m++) {
+            double[][] table = new double[size][size];
+            for (double[] row : table) {
+                for (int j = 0; j < size; j++) {
+                    if (random.nextDouble() < density) {
+                        //small values keep chains of products finite
+                        row[j] = random.nextDouble() / size;
+                    }
+                }
+            }
+            matrices.add(table);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void buildTree() {
+        switch (mix) {
+            case "add":
+                tree = node(ComputationNodeType.ADD, leaves(8));
+                break;
+            case "multiply":
+                tree = node(ComputationNodeType.MULTIPLY, leaves(4));
+                break;
+            case "mixed":
+                tree = randomTree(new Random(7), 4);
+                break;
+            case "sparse":
+                tree = node(ComputationNodeType.ADD,
+                    node(ComputationNodeType.MULTIPLY, leaf(0), leaf(1)),
+                    node(ComputationNodeType.MULTIPLY, leaf(2), node(ComputationNodeType.TRANSPOSE, leaf(3))),
+                    leaf(4));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown operator mix: " + mix);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public double[][] run() {
+        return engine.run(tree).getMatrix();
+    }
+
+    // square operands keep every operator of the tree well-formed
+    private ComputationNode randomTree(Random random, int depth) {
+        if (depth == 0) {
+            return leaf(random.nextInt(matrices.size()));
+        }
+        switch (random.nextInt(4)) {
+            case 0:
+                return node(ComputationNodeType.ADD, randomTree(random, depth - 1), randomTree(random, depth - 1));
+            case 1:
+                return node(ComputationNodeType.MULTIPLY, randomTree(random, depth - 1), randomTree(random, depth - 1));
+            case 2:
+                return node(ComputationNodeType.NEGATE, randomTree(random, depth - 1));
+            default:
+                return node(ComputationNodeType.TRANSPOSE, randomTree(random, depth - 1));
+        }
+    }
+
+    private ComputationNode leaf(int index) {
+        return new ComputationNode(matrices.get(index));
+    }
+
+    private ComputationNode[] leaves(int count) {
+        ComputationNode[] leaves = new ComputationNode[count];
+        for (int i = 0; i < count; i++) {
+            leaves[i] = leaf(i);
+        }
+        return leaves;
+    }
+
+    private static ComputationNode node(ComputationNodeType type, ComputationNode... children) {
+        return new ComputationNode(type, new ArrayList<>(List.of(children)));
+    }
+}
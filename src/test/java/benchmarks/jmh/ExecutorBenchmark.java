@@ -0,0 +1,102 @@
+package benchmarks.jmh;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import scheduling.SchedulingMode;
+import scheduling.TaskExecutor;
+import scheduling.TiredExecutor;
+import scheduling.VirtualThreadExecutor;
+
+/**
+ * Scheduling cost of the executors: the latency of one task through submitBatch, and the
+ * throughput of a batch of BATCH small tasks, reported per task. The tasks burn a few
+ * hundred nanoseconds each so the hand-off dominates, like the per-row tasks of a small matrix.
+ * blockingThroughput mixes in tasks that block for BLOCK_MICROS, like I/O in server mode,
+ * where virtual threads can keep running the other tasks.
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExecutorBenchmark {
+
+    static final int BATCH = 1000;
+    static final int TASK_TOKENS = 100;
+    static final int BLOCK_MICROS = 50;
+
+    @Param({"1", "4", "8"})
+    int threads;
+
+    @Param({"HANDOFF", "WORK_STEALING", "VIRTUAL_THREADS"})
+    SchedulingMode mode;
+
+    TaskExecutor executor;
+    List<Runnable> single;
+    List<Runnable> batch;
+    List<Runnable> blocking;
+
+    @Setup
+    public void setUp() {
+        executor = mode == SchedulingMode.VIRTUAL_THREADS
+            ? new VirtualThreadExecutor(threads)
+            : new TiredExecutor(threads, mode);
+        Runnable task = () -> Blackhole.consumeCPU(TASK_TOKENS);
+        single = List.of(task);
+        batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            batch.add(task);
+        }
+        //every fourth task blocks
+        Runnable blocks = () -> LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(BLOCK_MICROS));
+        blocking = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            blocking.add(i % 4 == 0 ? blocks : task);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void submitLatency() {
+        executor.submitBatch(single);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void batchThroughput() {
+        executor.submitBatch(batch);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @OperationsPerInvocation(BATCH)
+    public void blockingThroughput() {
+        executor.submitBatch(blocking);
+    }
+}
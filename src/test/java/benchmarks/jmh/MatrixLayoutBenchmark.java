@@ -0,0 +1,83 @@
+package benchmarks.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import memory.SharedMatrix;
+import memory.VectorOrientation;
+
+/**
+ * Loading a double[][] into a SharedMatrix in both layouts, reading it back row-major,
+ * and relaying it out, the copies the engine pays around every kernel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MatrixLayoutBenchmark {
+
+    @Param({"64", "256", "1024"})
+    int size;
+
+    double[][] table;
+    SharedMatrix target;
+    SharedMatrix rowMajor;
+    SharedMatrix columnMajor;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        table = new double[size][size];
+        for (double[] row : table) {
+            for (int j = 0; j < size; j++) {
+                row[j] = random.nextDouble();
+            }
+        }
+        target = new SharedMatrix();
+        rowMajor = new SharedMatrix(table);
+        columnMajor = new SharedMatrix();
+        columnMajor.loadColumnMajor(table);
+    }
+
+    @Benchmark
+    public SharedMatrix loadRowMajor() {
+        target.loadRowMajor(table);
+        return target;
+    }
+
+    @Benchmark
+    public SharedMatrix loadColumnMajor() {
+        target.loadColumnMajor(table);
+        return target;
+    }
+
+    @Benchmark
+    public double[][] readRowMajor() {
+        return rowMajor.readRowMajor();
+    }
+
+    // the blocked physical transpose
+    @Benchmark
+    public double[][] readColumnMajor() {
+        return columnMajor.readRowMajor();
+    }
+
+    @Benchmark
+    public SharedMatrix relayout() {
+        return rowMajor.toOrientation(VectorOrientation.COLUMN_MAJOR);
+    }
+}
@@ -0,0 +1,72 @@
+package benchmarks.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import memory.SharedVector;
+import memory.VectorOrientation;
+
+/**
+ * SharedVector kernels, locking included, at lengths from L1-resident to memory-bound.
+ * The backend is chosen at startup, add -jvmArgsAppend -Dlae.kernels=scalar to the
+ * JMH options to measure the scalar one.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VectorKernelBenchmark {
+
+    @Param({"64", "1024", "65536"})
+    int length;
+
+    SharedVector row;
+    SharedVector column;
+    SharedVector other;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        double[] a = new double[length];
+        double[] b = new double[length];
+        for (int i = 0; i < length; i++) {
+            a[i] = random.nextDouble();
+            b[i] = random.nextDouble();
+        }
+        row = new SharedVector(a, VectorOrientation.ROW_MAJOR);
+        column = new SharedVector(b, VectorOrientation.COLUMN_MAJOR);
+        other = new SharedVector(b, VectorOrientation.ROW_MAJOR);
+    }
+
+    @Benchmark
+    public double dot() {
+        return row.dot(column);
+    }
+
+    // each pair maps the row to -(row + b) or b - row, two calls restore it, so the values stay bounded
+    @Benchmark
+    public void addThenNegate() {
+        row.add(other);
+        row.negate();
+    }
+
+    @Benchmark
+    public void subtract() {
+        row.subtract(other);
+        row.negate();
+    }
+}